@@ -0,0 +1,126 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.hql.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.query.seqpoc.hql.internal.HqlParseTreeBuilder;
+import org.hibernate.query.seqpoc.hql.internal.HqlParser;
+import org.hibernate.query.seqpoc.hql.internal.SemanticQueryBuilder;
+import org.hibernate.query.seqpoc.hql.internal.SemanticQueryInterpreter;
+import org.hibernate.query.seqpoc.sqm.tree.SqmSelectStatement;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures query compilation latency against a {@link SyntheticDomainModel} while
+ * growing one {@link Dimension dimension} of the model or the query at a time, the
+ * others staying at their baseline.
+ * <p/>
+ * The dimension doubles with each {@code scale}, so linear behavior shows as the
+ * latency (at most) doubling from one scale to the next - anything more is
+ * super-linear.  Use `-PjmhResultFormat=CSV` to get the results in a form which can
+ * be plotted per dimension
+ *
+ * @author Steve Ebersole
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+public class HqlCompileScalingBenchmark {
+	private static final int BASELINE_ENTITIES = 256;
+	private static final int BASELINE_ATTRIBUTES = 16;
+	private static final int BASELINE_INHERITANCE_DEPTH = 1;
+	private static final int BASELINE_FROM_WIDTH = 2;
+	private static final int BASELINE_JOIN_DEPTH = 2;
+	private static final int BASELINE_PATH_LENGTH = 3;
+
+	public enum Dimension {
+		/**
+		 * The number of entities in the model - 256 per scale
+		 */
+		ENTITIES,
+
+		/**
+		 * The number of basic attributes per entity - 16 per scale
+		 */
+		ATTRIBUTES,
+
+		/**
+		 * The depth of the inheritance hierarchies
+		 */
+		INHERITANCE_DEPTH,
+
+		/**
+		 * The number of roots in the from-clause
+		 */
+		FROM_WIDTH,
+
+		/**
+		 * The length of the join chain from each root
+		 */
+		JOIN_DEPTH,
+
+		/**
+		 * The length of the selected paths, through as many levels of embeddables
+		 */
+		PATH_LENGTH
+	}
+
+	@Param
+	public Dimension dimension;
+
+	@Param( { "1", "2", "4", "8", "16" } )
+	public int scale;
+
+	private SemanticQueryInterpreter interpreter;
+	private String hql;
+	private HqlParser.SelectStatementContext parseTree;
+
+	@Setup
+	public void setUp() {
+		final int entities = dimension == Dimension.ENTITIES ? BASELINE_ENTITIES * scale : BASELINE_ENTITIES;
+		final int attributes = dimension == Dimension.ATTRIBUTES ? BASELINE_ATTRIBUTES * scale : BASELINE_ATTRIBUTES;
+		final int inheritanceDepth = dimension == Dimension.INHERITANCE_DEPTH ? scale : BASELINE_INHERITANCE_DEPTH;
+		final int fromWidth = dimension == Dimension.FROM_WIDTH ? scale : BASELINE_FROM_WIDTH;
+		final int joinDepth = dimension == Dimension.JOIN_DEPTH ? scale : BASELINE_JOIN_DEPTH;
+		final int pathLength = dimension == Dimension.PATH_LENGTH ? scale : BASELINE_PATH_LENGTH;
+
+		final SyntheticDomainModel domainModel = new SyntheticDomainModel(
+				entities,
+				attributes,
+				Math.max( pathLength - 1, 1 ),
+				inheritanceDepth
+		);
+		interpreter = new SemanticQueryInterpreter( domainModel.getMetamodel() );
+		hql = new SyntheticQueryGenerator( domainModel ).generate( fromWidth, joinDepth, pathLength );
+		parseTree = HqlParseTreeBuilder.INSTANCE.parseSelectStatement( hql );
+	}
+
+	/**
+	 * Parse and interpret the query
+	 */
+	@Benchmark
+	public SqmSelectStatement compile() {
+		return interpreter.interpret( hql );
+	}
+
+	/**
+	 * Interpret the (already parsed) query
+	 */
+	@Benchmark
+	public SqmSelectStatement interpret() {
+		return new SemanticQueryBuilder( interpreter ).visitSelectStatement( parseTree );
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.hql.jmh;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Access to the benchmark query corpus ({@code hql-corpus.txt})
+ *
+ * @author Steve Ebersole
+ */
+public final class HqlCorpus {
+	private static final String RESOURCE_NAME = "hql-corpus.txt";
+
+	private HqlCorpus() {
+	}
+
+	public static List<String> load() {
+		try ( InputStream stream = HqlCorpus.class.getResourceAsStream( RESOURCE_NAME ) ) {
+			if ( stream == null ) {
+				throw new IllegalStateException( "Could not locate benchmark corpus : " + RESOURCE_NAME );
+			}
+
+			final List<String> queries = new ArrayList<>();
+			final BufferedReader reader = new BufferedReader( new InputStreamReader( stream, StandardCharsets.UTF_8 ) );
+			String line;
+			while ( ( line = reader.readLine() ) != null ) {
+				line = line.trim();
+				if ( !line.isEmpty() && !line.startsWith( "#" ) ) {
+					queries.add( line );
+				}
+			}
+			return Collections.unmodifiableList( queries );
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException( e );
+		}
+	}
+}
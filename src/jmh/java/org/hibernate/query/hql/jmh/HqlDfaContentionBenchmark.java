@@ -0,0 +1,89 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.hql.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.query.seqpoc.hql.internal.FrozenHqlDfa;
+import org.hibernate.query.seqpoc.hql.internal.HqlGrammarWarmUp;
+import org.hibernate.query.seqpoc.hql.internal.HqlParseTreeBuilder;
+import org.hibernate.query.seqpoc.hql.internal.HqlParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Measures parse throughput with all threads sharing the warmed lexer and parser
+ * DFAs, either as Antlr leaves them or frozen ({@link FrozenHqlDfa}).
+ * <p/>
+ * With {@code NON_ASCII} literals, the string literals of the corpus contain a
+ * non-ASCII character.  The lexer never caches those transitions, so with the
+ * {@code SHARED} DFA each such character is a synchronized state lookup.
+ * <p/>
+ * Runs with as many threads as there are processors; use the JMH {@code -t} option
+ * (or `-PjmhThreads`) to compare different levels of contention.  The frozen DFA is
+ * JVM-wide, so each combination of parameters needs its own forks (the default)
+ *
+ * @author Steve Ebersole
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Threads( Threads.MAX )
+public class HqlDfaContentionBenchmark {
+	@Param( { "SHARED", "FROZEN" } )
+	public String dfa;
+
+	@Param( { "ASCII", "NON_ASCII" } )
+	public String literals;
+
+	private HqlParseTreeBuilder parseTreeBuilder;
+	private String[] queries;
+
+	@Setup
+	public void setUp() {
+		final List<String> corpus = new ArrayList<>();
+		for ( String query : HqlCorpus.load() ) {
+			corpus.add( "NON_ASCII".equals( literals ) ? query.replaceAll( "'(?=\\p{Alpha})", "'\u00e9" ) : query );
+		}
+		queries = corpus.toArray( new String[0] );
+
+		parseTreeBuilder = new HqlParseTreeBuilder( HqlParseTreeBuilder.PredictionStrategy.TWO_STAGE );
+		new HqlGrammarWarmUp( parseTreeBuilder ).warmUp( corpus );
+
+		if ( "FROZEN".equals( dfa ) ) {
+			FrozenHqlDfa.freeze();
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		FrozenHqlDfa.thaw();
+	}
+
+	@State( Scope.Thread )
+	public static class Cursor {
+		private int next;
+	}
+
+	@Benchmark
+	public HqlParser.SelectStatementContext parse(Cursor cursor) {
+		final String query = queries[ cursor.next ];
+		cursor.next = ( cursor.next + 1 ) % queries.length;
+		return parseTreeBuilder.parseSelectStatement( query );
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.hql.jmh;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.query.seqpoc.hql.internal.HqlLexer;
+import org.hibernate.query.seqpoc.hql.internal.HqlParseTreeBuilder;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.Token;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the generated lexer with perfect-hash keyword recognition
+ * ({@link HqlParseTreeBuilder.LexerStrategy}) tokenizing the whole corpus.
+ * <p/>
+ * Each strategy runs in its own forks, so neither benefits from the lexer DFA
+ * warmed by the other
+ *
+ * @author Steve Ebersole
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+public class HqlLexerBenchmark {
+	@Param( { "GENERATED", "PERFECT_HASH_KEYWORDS" } )
+	public HqlParseTreeBuilder.LexerStrategy lexerStrategy;
+
+	private List<String> corpus;
+
+	@Setup
+	public void setUp() {
+		corpus = HqlCorpus.load();
+	}
+
+	@Benchmark
+	public void lexCorpus(Blackhole blackhole) {
+		for ( String query : corpus ) {
+			final HqlLexer lexer = lexerStrategy.createLexer( CharStreams.fromString( query ) );
+			Token token;
+			while ( ( token = lexer.nextToken() ).getType() != Token.EOF ) {
+				blackhole.consume( token.getType() );
+			}
+		}
+	}
+}
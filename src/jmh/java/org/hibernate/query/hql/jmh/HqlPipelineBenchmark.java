@@ -0,0 +1,105 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.hql.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.query.seqpoc.hql.internal.HqlLexer;
+import org.hibernate.query.seqpoc.hql.internal.HqlParseTreeBuilder;
+import org.hibernate.query.seqpoc.hql.internal.HqlParser;
+import org.hibernate.query.seqpoc.hql.internal.SemanticQueryBuilder;
+import org.hibernate.query.seqpoc.hql.internal.SemanticQueryInterpreter;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.Token;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures each phase of turning HQL into SQM, and the whole of it, over the benchmark
+ * corpus ({@link HqlCorpus}) against the {@link RetailDomainModel RETAIL} model :<ul>
+ *     <li>{@link #lex} - tokenizing only</li>
+ *     <li>{@link #parse} - tokenizing and parsing ({@link HqlParseTreeBuilder#parseHql})</li>
+ *     <li>{@link #interpret} - building the SQM from already built parse trees
+ *     ({@link SemanticQueryBuilder#visitSelectStatement})</li>
+ *     <li>{@link #endToEnd} - the whole of it as a cache miss would
+ *     ({@link SemanticQueryInterpreter#interpret(String)})</li>
+ * </ul>
+ * One operation is one pass over the whole corpus.  The GC profiler is enabled by
+ * default (see `build.gradle`) : `gc.alloc.rate.norm` is the bytes allocated per pass
+ *
+ * @author Steve Ebersole
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+public class HqlPipelineBenchmark {
+	private SessionFactoryImplementor sessionFactory;
+	private SemanticQueryInterpreter interpreter;
+
+	private List<String> corpus;
+	private List<HqlParser.SelectStatementContext> parseTrees;
+
+	@Setup
+	public void setUp() {
+		sessionFactory = RetailDomainModel.buildSessionFactory();
+		interpreter = new SemanticQueryInterpreter( sessionFactory.getMetamodel() );
+
+		corpus = HqlCorpus.load();
+		parseTrees = new ArrayList<>( corpus.size() );
+		for ( String query : corpus ) {
+			parseTrees.add( HqlParseTreeBuilder.INSTANCE.parseHql( query ).selectStatement() );
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		sessionFactory.close();
+	}
+
+	@Benchmark
+	public void lex(Blackhole blackhole) {
+		for ( String query : corpus ) {
+			final HqlLexer lexer = new HqlLexer( CharStreams.fromString( query ) );
+			Token token;
+			while ( ( token = lexer.nextToken() ).getType() != Token.EOF ) {
+				blackhole.consume( token );
+			}
+		}
+	}
+
+	@Benchmark
+	public void parse(Blackhole blackhole) {
+		for ( String query : corpus ) {
+			blackhole.consume( HqlParseTreeBuilder.INSTANCE.parseHql( query ).selectStatement() );
+		}
+	}
+
+	@Benchmark
+	public void interpret(Blackhole blackhole) {
+		for ( HqlParser.SelectStatementContext parseTree : parseTrees ) {
+			blackhole.consume( new SemanticQueryBuilder( interpreter ).visitSelectStatement( parseTree ) );
+		}
+	}
+
+	@Benchmark
+	public void endToEnd(Blackhole blackhole) {
+		for ( String query : corpus ) {
+			blackhole.consume( interpreter.interpret( query ) );
+		}
+	}
+}
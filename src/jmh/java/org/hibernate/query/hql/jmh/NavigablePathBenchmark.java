@@ -0,0 +1,80 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.hql.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.query.NavigablePath;
+import org.hibernate.query.NavigablePathFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures creating a NavigablePath of the given depth, one {@link NavigablePath#append}
+ * per level, with and without rendering its full path.
+ * <p/>
+ * The GC profiler (enabled by default, see `build.gradle`) gives the memory per path -
+ * `gc.alloc.rate.norm` is the number of bytes allocated per (depth-long) path.  The
+ * canonical variant ({@link NavigablePathFactory}, {@link NavigablePath#appendResolved})
+ * only allocates the first time around
+ *
+ * @author Steve Ebersole
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+public class NavigablePathBenchmark {
+	@Param( { "2", "4", "8" } )
+	public int depth;
+
+	private String[] localNames;
+	private NavigablePathFactory navigablePathFactory;
+
+	@Setup
+	public void setUp() {
+		localNames = new String[depth];
+		for ( int i = 0; i < depth; i++ ) {
+			localNames[i] = "attribute" + i;
+		}
+		navigablePathFactory = new NavigablePathFactory();
+	}
+
+	@Benchmark
+	public NavigablePath append() {
+		NavigablePath path = new NavigablePath( "Order" );
+		for ( String localName : localNames ) {
+			path = path.append( localName );
+		}
+		return path;
+	}
+
+	@Benchmark
+	public String appendAndRender() {
+		return append().getFullPath();
+	}
+
+	@Benchmark
+	public int appendAndHash() {
+		return append().hashCode();
+	}
+
+	@Benchmark
+	public NavigablePath appendCanonical() {
+		NavigablePath path = navigablePathFactory.getRootPath( "Order" );
+		for ( String localName : localNames ) {
+			path = path.appendResolved( localName );
+		}
+		return path;
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.hql.jmh;
+
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import org.hibernate.testing.orm.domain.StandardDomainModel;
+
+/**
+ * Builds a SessionFactory for the {@link StandardDomainModel#RETAIL RETAIL} domain
+ * model, which the benchmark corpus ({@link HqlCorpus}) is written against - the
+ * same model the functional tests use through {@code @DomainModel}
+ *
+ * @author Steve Ebersole
+ */
+public final class RetailDomainModel {
+	private RetailDomainModel() {
+	}
+
+	/**
+	 * Build the SessionFactory.  The caller is responsible for closing it
+	 */
+	public static SessionFactoryImplementor buildSessionFactory() {
+		final StandardServiceRegistry serviceRegistry = new StandardServiceRegistryBuilder()
+				.applySetting( AvailableSettings.DIALECT, "org.hibernate.dialect.H2Dialect" )
+				.applySetting( AvailableSettings.DRIVER, "org.h2.Driver" )
+				.applySetting( AvailableSettings.URL, "jdbc:h2:mem:jmh;DB_CLOSE_DELAY=-1" )
+				.applySetting( AvailableSettings.USER, "sa" )
+				.applySetting( "javax.persistence.validation.mode", "NONE" )
+				.build();
+
+		try {
+			final MetadataSources metadataSources = new MetadataSources( serviceRegistry );
+			StandardDomainModel.RETAIL.getDescriptor().applyDomainModel( metadataSources );
+			return (SessionFactoryImplementor) metadataSources.buildMetadata().buildSessionFactory();
+		}
+		catch (RuntimeException e) {
+			StandardServiceRegistryBuilder.destroy( serviceRegistry );
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,355 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.hql.jmh;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.hibernate.metamodel.model.domain.NavigableRole;
+import org.hibernate.metamodel.model.domain.spi.EntityTypeDescriptor;
+import org.hibernate.metamodel.model.domain.spi.Navigable;
+import org.hibernate.metamodel.model.domain.spi.NavigableContainer;
+import org.hibernate.metamodel.model.domain.spi.PluralPersistentAttribute;
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+
+/**
+ * Generates a domain model of arbitrary size, for benchmarking how query
+ * interpretation scales with it :<ul>
+ *     <li>{@code entityCount} entities, {@code Entity0} .. {@code EntityN}</li>
+ *     <li>each declaring {@code attributeCount} basic attributes, named for the entity -
+ *     {@code e0a0} .. {@code e0aN} - so that they can be referenced unqualified</li>
+ *     <li>in inheritance hierarchies {@code inheritanceDepth} subclasses deep; each
+ *     hierarchy root declares {@code id}, the embedded {@code embedded}, the to-one
+ *     {@code next} and the collection {@code children}.  The associations refer to the
+ *     most specific entity of the next hierarchy</li>
+ *     <li>with {@code embedded} nested {@code embeddableDepth} levels deep, each level
+ *     declaring a basic {@code value} and (but the last) the embedded {@code nested}</li>
+ * </ul>
+ * The model only implements the parts of the metamodel contracts that query interpretation
+ * uses (entity lookup and navigable resolution); anything else fails with an
+ * UnsupportedOperationException naming the method, so that benchmarks do not silently
+ * measure against a model missing something.
+ * <p/>
+ * Build queries against the model using {@link SyntheticQueryGenerator}
+ *
+ * @author Steve Ebersole
+ */
+public class SyntheticDomainModel {
+	/**
+	 * The (package) prefix of the generated entity names
+	 */
+	public static final String ENTITY_NAME_PREFIX = "org.hibernate.query.hql.jmh.synthetic.";
+
+	private final int entityCount;
+	private final int attributeCount;
+	private final int embeddableDepth;
+	private final int inheritanceDepth;
+
+	private final MetamodelImplementor metamodel;
+
+	/**
+	 * @param entityCount The number of entities; rounded up to a multiple of the hierarchy size
+	 * ({@code inheritanceDepth + 1})
+	 * @param attributeCount The number of basic attributes declared by each entity
+	 * @param embeddableDepth The levels of embeddable nesting, at least 1
+	 * @param inheritanceDepth The number of subclass levels, 0 for no inheritance
+	 */
+	public SyntheticDomainModel(int entityCount, int attributeCount, int embeddableDepth, int inheritanceDepth) {
+		if ( entityCount < 1 || attributeCount < 0 || embeddableDepth < 1 || inheritanceDepth < 0 ) {
+			throw new IllegalArgumentException(
+					"Invalid synthetic domain model dimensions : " + entityCount + ", " + attributeCount
+							+ ", " + embeddableDepth + ", " + inheritanceDepth
+			);
+		}
+
+		final int hierarchySize = inheritanceDepth + 1;
+		this.entityCount = ( ( entityCount + hierarchySize - 1 ) / hierarchySize ) * hierarchySize;
+		this.attributeCount = attributeCount;
+		this.embeddableDepth = embeddableDepth;
+		this.inheritanceDepth = inheritanceDepth;
+
+		this.metamodel = buildMetamodel();
+	}
+
+	public int getEntityCount() {
+		return entityCount;
+	}
+
+	public int getAttributeCount() {
+		return attributeCount;
+	}
+
+	public int getEmbeddableDepth() {
+		return embeddableDepth;
+	}
+
+	public int getInheritanceDepth() {
+		return inheritanceDepth;
+	}
+
+	/**
+	 * The number of inheritance hierarchies - the number of entities when there is no inheritance
+	 */
+	public int getHierarchyCount() {
+		return entityCount / ( inheritanceDepth + 1 );
+	}
+
+	public MetamodelImplementor getMetamodel() {
+		return metamodel;
+	}
+
+	/**
+	 * The JPA (unqualified) name of the entity with the given index
+	 */
+	public String getJpaEntityName(int entityIndex) {
+		return "Entity" + entityIndex;
+	}
+
+	/**
+	 * The name of the {@code attributeIndex}-th basic attribute declared by the entity
+	 * with the given index
+	 */
+	public String getAttributeName(int entityIndex, int attributeIndex) {
+		return "e" + entityIndex + "a" + attributeIndex;
+	}
+
+	/**
+	 * The index of the most specific entity of the given hierarchy - the entity queries
+	 * should generally use, as it inherits the most
+	 */
+	public int getLeafEntityIndex(int hierarchyIndex) {
+		final int hierarchySize = inheritanceDepth + 1;
+		return ( ( hierarchyIndex * hierarchySize ) % entityCount ) + inheritanceDepth;
+	}
+
+	private MetamodelImplementor buildMetamodel() {
+		final int hierarchySize = inheritanceDepth + 1;
+
+		final Node[] entities = new Node[ entityCount ];
+		for ( int i = 0; i < entityCount; i++ ) {
+			final String jpaEntityName = getJpaEntityName( i );
+			final Node entity = Node.entity( ENTITY_NAME_PREFIX + jpaEntityName, jpaEntityName );
+			entities[i] = entity;
+
+			final int level = i % hierarchySize;
+			if ( level > 0 ) {
+				entity.superType = entities[i - 1];
+			}
+			else {
+				entity.declare( Node.basic( entity.role, "id" ) );
+				entity.declare( embeddable( entity.role.append( "embedded" ), 1 ) );
+			}
+
+			for ( int j = 0; j < attributeCount; j++ ) {
+				entity.declare( Node.basic( entity.role, getAttributeName( i, j ) ) );
+			}
+		}
+
+		// the associations, now that all of the entities exist
+		for ( int i = 0; i < entityCount; i += hierarchySize ) {
+			final Node target = entities[ getLeafEntityIndex( i / hierarchySize + 1 ) ];
+			entities[i].declare( Node.association( entities[i].role.append( "next" ), target, false ) );
+			entities[i].declare( Node.association( entities[i].role.append( "children" ), target, true ) );
+		}
+
+		final Map<String, EntityTypeDescriptor<?>> entitiesByName = new HashMap<>();
+		final List<EntityTypeDescriptor<?>> entityDescriptors = new ArrayList<>( entityCount );
+		for ( Node entity : entities ) {
+			final EntityTypeDescriptor<?> descriptor = (EntityTypeDescriptor<?>) entity.proxy;
+			entityDescriptors.add( descriptor );
+			entitiesByName.put( entity.entityName, descriptor );
+			entitiesByName.put( entity.jpaEntityName, descriptor );
+		}
+
+		return (MetamodelImplementor) Proxy.newProxyInstance(
+				SyntheticDomainModel.class.getClassLoader(),
+				new Class[] { MetamodelImplementor.class },
+				new MetamodelHandler( entitiesByName, entityDescriptors )
+		);
+	}
+
+	private Node embeddable(NavigableRole role, int level) {
+		final Node embeddable = Node.container( role, NavigableContainer.class );
+		embeddable.declare( Node.basic( role, "value" ) );
+		if ( level < embeddableDepth ) {
+			embeddable.declare( embeddable( role.append( "nested" ), level + 1 ) );
+		}
+		return embeddable;
+	}
+
+	private static class MetamodelHandler implements InvocationHandler {
+		private final Map<String, EntityTypeDescriptor<?>> entitiesByName;
+		private final List<EntityTypeDescriptor<?>> entityDescriptors;
+
+		private MetamodelHandler(
+				Map<String, EntityTypeDescriptor<?>> entitiesByName,
+				List<EntityTypeDescriptor<?>> entityDescriptors) {
+			this.entitiesByName = entitiesByName;
+			this.entityDescriptors = entityDescriptors;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			switch ( method.getName() ) {
+				case "findEntityDescriptor": {
+					return entitiesByName.get( (String) args[0] );
+				}
+				case "visitEntityDescriptors": {
+					entityDescriptors.forEach( (Consumer<EntityTypeDescriptor<?>>) args[0] );
+					return null;
+				}
+				case "getTypeConfiguration": {
+					// not built through a service registry
+					return null;
+				}
+				default: {
+					return identityMethod( proxy, method, args, "SyntheticMetamodel" );
+				}
+			}
+		}
+	}
+
+	/**
+	 * An entity, embeddable, association or basic attribute
+	 */
+	private static class Node implements InvocationHandler {
+		private static Node entity(String entityName, String jpaEntityName) {
+			final Node node = new Node( new NavigableRole( entityName ), EntityTypeDescriptor.class );
+			node.entityName = entityName;
+			node.jpaEntityName = jpaEntityName;
+			return node;
+		}
+
+		private static Node container(NavigableRole role, Class<?> contract) {
+			return new Node( role, contract );
+		}
+
+		private static Node association(NavigableRole role, Node target, boolean plural) {
+			final Node node = new Node( role, plural ? PluralPersistentAttribute.class : NavigableContainer.class );
+			node.target = target;
+			return node;
+		}
+
+		private static Node basic(NavigableRole containerRole, String name) {
+			return new Node( containerRole.append( name ), Navigable.class );
+		}
+
+		private final NavigableRole role;
+		private final Object proxy;
+
+		private String entityName;
+		private String jpaEntityName;
+
+		private Node superType;
+		private Node target;
+		private final Map<String, Navigable<?>> declaredNavigables = new LinkedHashMap<>();
+		private List<Navigable<?>> navigables;
+
+		private Node(NavigableRole role, Class<?> contract) {
+			this.role = role;
+			this.proxy = Proxy.newProxyInstance(
+					SyntheticDomainModel.class.getClassLoader(),
+					new Class[] { contract },
+					this
+			);
+		}
+
+		private void declare(Node navigable) {
+			declaredNavigables.put( navigable.role.getNavigableName(), (Navigable<?>) navigable.proxy );
+		}
+
+		private Navigable<?> findNavigable(String name) {
+			if ( target != null ) {
+				return target.findNavigable( name );
+			}
+
+			final Navigable<?> navigable = declaredNavigables.get( name );
+			if ( navigable == null && superType != null ) {
+				return superType.findNavigable( name );
+			}
+			return navigable;
+		}
+
+		private List<Navigable<?>> getNavigables() {
+			if ( target != null ) {
+				return target.getNavigables();
+			}
+
+			if ( navigables == null ) {
+				final List<Navigable<?>> all = new ArrayList<>();
+				if ( superType != null ) {
+					all.addAll( superType.getNavigables() );
+				}
+				all.addAll( declaredNavigables.values() );
+				navigables = Collections.unmodifiableList( all );
+			}
+			return navigables;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			switch ( method.getName() ) {
+				case "getNavigableRole": {
+					return role;
+				}
+				case "getNavigableName": {
+					return entityName != null ? entityName : role.getNavigableName();
+				}
+				case "getEntityName": {
+					return entityName;
+				}
+				case "getJpaEntityName": {
+					return jpaEntityName;
+				}
+				case "findNavigable": {
+					return findNavigable( (String) args[0] );
+				}
+				case "getNavigables": {
+					return getNavigables();
+				}
+				case "getSuperclassType": {
+					return superType == null ? null : superType.proxy;
+				}
+				case "getHierarchy": {
+					// `id` is modeled as a plain attribute of the hierarchy root
+					return null;
+				}
+				default: {
+					return identityMethod( proxy, method, args, role.getFullPath() );
+				}
+			}
+		}
+	}
+
+	private static Object identityMethod(Object proxy, Method method, Object[] args, String description) {
+		switch ( method.getName() ) {
+			case "equals": {
+				return proxy == args[0];
+			}
+			case "hashCode": {
+				return System.identityHashCode( proxy );
+			}
+			case "toString": {
+				return description;
+			}
+			default: {
+				throw new UnsupportedOperationException(
+						"Not supported by the synthetic domain model : " + method + " [" + description + "]"
+				);
+			}
+		}
+	}
+}
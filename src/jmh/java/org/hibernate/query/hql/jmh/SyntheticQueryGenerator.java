@@ -0,0 +1,99 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.hql.jmh;
+
+/**
+ * Generates queries against a {@link SyntheticDomainModel}, of a given size :<ul>
+ *     <li>{@code fromWidth} - the number of roots in the from-clause, each the most
+ *     specific entity of a different hierarchy</li>
+ *     <li>{@code joinDepth} - the length of the chain of {@code next} joins from each root</li>
+ *     <li>{@code pathLength} - the number of attributes in the path selected for each root -
+ *     {@code id} for 1, otherwise a path down through the embeddables, e.g.
+ *     {@code r0.embedded.nested.value} for 3</li>
+ * </ul>
+ * The select-clause also references an attribute of the first root unqualified, which
+ * has to be checked against every from-element.  For example, for 2, 1 and 2 :
+ * <pre>
+ * select r0.embedded.value, r0j1.id, r1.embedded.value, r1j1.id, e1a0
+ * from Entity1 r0 join r0.next r0j1, Entity3 r1 join r1.next r1j1
+ * </pre>
+ *
+ * @author Steve Ebersole
+ */
+public class SyntheticQueryGenerator {
+	private final SyntheticDomainModel domainModel;
+
+	public SyntheticQueryGenerator(SyntheticDomainModel domainModel) {
+		this.domainModel = domainModel;
+	}
+
+	public String generate(int fromWidth, int joinDepth, int pathLength) {
+		if ( fromWidth < 1 || joinDepth < 0 || pathLength < 1 ) {
+			throw new IllegalArgumentException(
+					"Invalid query dimensions : " + fromWidth + ", " + joinDepth + ", " + pathLength
+			);
+		}
+		if ( fromWidth + joinDepth > domainModel.getHierarchyCount() ) {
+			// the from-elements would start to repeat entities, making the unqualified reference ambiguous
+			throw new IllegalArgumentException(
+					"From width " + fromWidth + " and join depth " + joinDepth + " need more than the "
+							+ domainModel.getHierarchyCount() + " hierarchies of the domain model"
+			);
+		}
+		if ( pathLength - 1 > domainModel.getEmbeddableDepth() ) {
+			throw new IllegalArgumentException(
+					"Path length " + pathLength + " exceeds the embeddable depth of the domain model : "
+							+ domainModel.getEmbeddableDepth()
+			);
+		}
+
+		final StringBuilder select = new StringBuilder( "select " );
+		final StringBuilder from = new StringBuilder( " from " );
+
+		for ( int root = 0; root < fromWidth; root++ ) {
+			final String rootAlias = "r" + root;
+
+			if ( root > 0 ) {
+				select.append( ", " );
+				from.append( ", " );
+			}
+
+			select.append( rootAlias ).append( '.' ).append( path( pathLength ) );
+			from.append( domainModel.getJpaEntityName( domainModel.getLeafEntityIndex( root ) ) )
+					.append( ' ' )
+					.append( rootAlias );
+
+			String joinedAlias = rootAlias;
+			for ( int join = 1; join <= joinDepth; join++ ) {
+				final String joinAlias = rootAlias + "j" + join;
+				from.append( " join " ).append( joinedAlias ).append( ".next " ).append( joinAlias );
+				joinedAlias = joinAlias;
+			}
+			if ( joinDepth > 0 ) {
+				select.append( ", " ).append( joinedAlias ).append( ".id" );
+			}
+		}
+
+		if ( domainModel.getAttributeCount() > 0 ) {
+			select.append( ", " ).append( domainModel.getAttributeName( domainModel.getLeafEntityIndex( 0 ), 0 ) );
+		}
+
+		return select.append( from ).toString();
+	}
+
+	private static String path(int pathLength) {
+		if ( pathLength == 1 ) {
+			return "id";
+		}
+
+		final StringBuilder path = new StringBuilder( "embedded" );
+		for ( int i = 2; i < pathLength; i++ ) {
+			path.append( ".nested" );
+		}
+		return path.append( ".value" ).toString();
+	}
+}
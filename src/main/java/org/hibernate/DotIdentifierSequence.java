@@ -26,24 +26,33 @@ public interface DotIdentifierSequence {
 	}
 
 	default DotIdentifierSequence getRoot() {
-		if ( getParent() == null ) {
-			return this;
+		DotIdentifierSequence root = this;
+		while ( root.getParent() != null ) {
+			root = root.getParent();
 		}
-		return getParent().getRoot();
+		return root;
 	}
 
 	default void visitPartsTerminalFirst(Consumer<String> consumer) {
-		consumer.accept( getLocalName() );
-		if ( getParent() != null ) {
-			getParent().visitPartsTerminalFirst( consumer );
+		for ( DotIdentifierSequence part = this; part != null; part = part.getParent() ) {
+			consumer.accept( part.getLocalName() );
 		}
 	}
 
 	default void visitPartsRootFirst(Consumer<String> consumer) {
-		if ( getParent() != null ) {
-			getParent().visitPartsRootFirst( consumer );
+		int depth = 0;
+		for ( DotIdentifierSequence part = this; part != null; part = part.getParent() ) {
+			depth++;
+		}
+
+		final String[] localNames = new String[depth];
+		for ( DotIdentifierSequence part = this; part != null; part = part.getParent() ) {
+			localNames[--depth] = part.getLocalName();
+		}
+
+		for ( String localName : localNames ) {
+			consumer.accept( localName );
 		}
-		consumer.accept( getLocalName() );
 	}
 
 	default String toLoggableFragment() {
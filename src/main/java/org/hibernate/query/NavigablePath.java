@@ -6,39 +6,61 @@
  */
 package org.hibernate.query;
 
-import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.hibernate.DotIdentifierSequence;
-import org.hibernate.internal.util.StringHelper;
 
 /**
+ * A path relative to a "query root".
+ * <p/>
+ * Only the parent and local name are stored; the full path is rendered the first
+ * time it is requested and cached.  The hash-code (the full path's) is computed
+ * from the local name and the parent's hash-code, without rendering the full path.
+ * <p/>
+ * Paths created through a {@link NavigablePathFactory} are canonical - see
+ * {@link #appendResolved}
+ *
  * @author Steve Ebersole
  */
 public class NavigablePath implements DotIdentifierSequence {
 
 	private final NavigablePath parent;
 	private final String localName;
-	private final String fullPath;
+	// length and hash-code of the full path
+	private final int length;
+	private final int hash;
+	// the number of local names
+	private final int depth;
+
+	// rendered lazily - see `#getFullPath`
+	private String fullPath;
+
+	// only for canonical paths
+	private final NavigablePathFactory factory;
+	private volatile ConcurrentHashMap<String, NavigablePath> children;
 
 	public NavigablePath(NavigablePath parent, String navigableName) {
+		this( parent, navigableName, null );
+	}
+
+	NavigablePath(NavigablePath parent, String navigableName, NavigablePathFactory factory) {
 		this.parent = parent;
 		this.localName = navigableName;
-
-		final String prefix;
-		if ( parent != null ) {
-			final String resolvedParent = parent.getFullPath();
-			if ( StringHelper.isEmpty( resolvedParent ) ) {
-				prefix = "";
-			}
-			else {
-				prefix = resolvedParent + '.';
-			}
+		this.factory = factory;
+
+		// same as `fullPath.hashCode()` : the parent's full path (unless empty), a dot and the local name
+		int hash = 0;
+		int length = navigableName.length();
+		if ( parent != null && parent.length > 0 ) {
+			hash = 31 * parent.hash + '.';
+			length += parent.length + 1;
 		}
-		else {
-			prefix = "";
+		for ( int i = 0; i < navigableName.length(); i++ ) {
+			hash = 31 * hash + navigableName.charAt( i );
 		}
-
-		this.fullPath = prefix + navigableName;
+		this.hash = hash;
+		this.length = length;
+		this.depth = parent == null ? 1 : parent.depth + 1;
 	}
 
 	public NavigablePath(String localName) {
@@ -49,10 +71,63 @@ public class NavigablePath implements DotIdentifierSequence {
 		this( "" );
 	}
 
+	/**
+	 * The path to the given property relative to this path.  For a canonical path, the
+	 * result is the canonical path for that property if there already is one; otherwise
+	 * it is a plain path - a property is only made canonical once it has been resolved,
+	 * see {@link #appendResolved}
+	 */
 	public NavigablePath append(String property) {
+		if ( factory != null ) {
+			final ConcurrentHashMap<String, NavigablePath> children = this.children;
+			final NavigablePath existing = children == null ? null : children.get( property );
+			if ( existing != null ) {
+				return existing;
+			}
+		}
 		return new NavigablePath( this, property );
 	}
 
+	/**
+	 * The path to the given property - which has been resolved to a Navigable - relative
+	 * to this path.  For a canonical path, the result is the canonical path for that property,
+	 * unless the factory's limits have been reached (see {@link NavigablePathFactory}), in
+	 * which case it is a plain path
+	 */
+	public NavigablePath appendResolved(String property) {
+		if ( factory == null ) {
+			return new NavigablePath( this, property );
+		}
+
+		ConcurrentHashMap<String, NavigablePath> children = this.children;
+		if ( children == null ) {
+			synchronized ( this ) {
+				children = this.children;
+				if ( children == null ) {
+					children = new ConcurrentHashMap<>();
+					this.children = children;
+				}
+			}
+		}
+
+		NavigablePath child = children.get( property );
+		if ( child == null ) {
+			child = children.computeIfAbsent(
+					property,
+					name -> factory.reservePath( depth + 1 ) ? new NavigablePath( this, name, factory ) : null
+			);
+		}
+		return child != null ? child : new NavigablePath( this, property );
+	}
+
+	/**
+	 * Whether this path is the canonical instance for its full path, created through a
+	 * {@link NavigablePathFactory}
+	 */
+	public boolean isCanonical() {
+		return factory != null;
+	}
+
 	public NavigablePath getParent() {
 		return parent;
 	}
@@ -61,18 +136,38 @@ public class NavigablePath implements DotIdentifierSequence {
 		return localName;
 	}
 
+	@Override
 	public String getFullPath() {
+		String fullPath = this.fullPath;
+		if ( fullPath == null ) {
+			// fill in the local names from the terminal back to the root.  Racing threads
+			// render equal Strings, so no need to synchronize
+			final char[] chars = new char[length];
+			int end = length;
+			NavigablePath path = this;
+			while ( end > 0 ) {
+				final int start = end - path.localName.length();
+				path.localName.getChars( 0, path.localName.length(), chars, start );
+				if ( start > 0 ) {
+					chars[start - 1] = '.';
+				}
+				end = start - 1;
+				path = path.parent;
+			}
+			fullPath = new String( chars );
+			this.fullPath = fullPath;
+		}
 		return fullPath;
 	}
 
 	@Override
 	public String toString() {
-		return getClass().getSimpleName() + '[' + fullPath + ']';
+		return getClass().getSimpleName() + '[' + getFullPath() + ']';
 	}
 
 	@Override
 	public int hashCode() {
-		return fullPath.hashCode();
+		return hash;
 	}
 
 	@Override
@@ -84,6 +179,13 @@ public class NavigablePath implements DotIdentifierSequence {
 			return false;
 		}
 		NavigablePath path = (NavigablePath) o;
-		return Objects.equals( getFullPath(), path.getFullPath() );
+		if ( factory != null && factory == path.factory ) {
+			// canonical paths from the same factory are equal only if they are the same instance
+			return false;
+		}
+		if ( hash != path.hash || length != path.length ) {
+			return false;
+		}
+		return getFullPath().equals( path.getFullPath() );
 	}
 }
@@ -0,0 +1,111 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+
+/**
+ * Creates canonical NavigablePaths - one instance per distinct path.  Appending
+ * to a canonical path (see {@link NavigablePath#append}) returns the canonical
+ * child, so equal paths created through the same factory are the same instance:
+ * they share their full-path String and compare by identity.
+ * <p/>
+ * A factory is kept per domain model (see {@link #forDomainModel}).  The paths only
+ * hold Strings, so the factory does not keep the domain model reachable and is
+ * released along with it.  Paths are only made canonical for resolved Navigables (see
+ * {@link NavigablePath#appendResolved}), so the canonical paths are those of the domain
+ * model queries actually use rather than anything a query names.  As the paths through
+ * cyclic associations are unbounded, so is the depth of the canonical paths (see
+ * {@link #DEFAULT_MAX_DEPTH}), and so is their number ({@link #DEFAULT_MAX_SIZE}).  Past
+ * those limits, plain (equal, but not canonical) paths are created instead.
+ *
+ * @author Steve Ebersole
+ */
+public class NavigablePathFactory {
+	/**
+	 * The default maximum number of local names of a canonical path
+	 */
+	public static final int DEFAULT_MAX_DEPTH = 16;
+
+	/**
+	 * The default maximum number of canonical paths
+	 */
+	public static final int DEFAULT_MAX_SIZE = 1 << 16;
+
+	private static final Map<MetamodelImplementor, NavigablePathFactory> FACTORIES = new WeakHashMap<>();
+
+	/**
+	 * The factory for the given domain model.  The factory is released along with the domain model
+	 */
+	public static NavigablePathFactory forDomainModel(MetamodelImplementor domainModel) {
+		synchronized ( FACTORIES ) {
+			return FACTORIES.computeIfAbsent( domainModel, key -> new NavigablePathFactory() );
+		}
+	}
+
+	private final int maxDepth;
+	private final int maxSize;
+
+	private final ConcurrentHashMap<String, NavigablePath> rootPaths = new ConcurrentHashMap<>();
+	private final AtomicInteger pathCount = new AtomicInteger();
+
+	public NavigablePathFactory() {
+		this( DEFAULT_MAX_DEPTH, DEFAULT_MAX_SIZE );
+	}
+
+	public NavigablePathFactory(int maxDepth, int maxSize) {
+		this.maxDepth = maxDepth;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * The canonical path for the given root name (generally an entity name), or a plain
+	 * path if the maximum number of canonical paths has been reached
+	 */
+	public NavigablePath getRootPath(String rootName) {
+		NavigablePath rootPath = rootPaths.get( rootName );
+		if ( rootPath == null ) {
+			rootPath = rootPaths.computeIfAbsent(
+					rootName,
+					name -> reservePath( 1 ) ? new NavigablePath( null, name, this ) : null
+			);
+		}
+		return rootPath != null ? rootPath : new NavigablePath( rootName );
+	}
+
+	/**
+	 * Account for a new canonical path of the given depth
+	 *
+	 * @return Whether it can be created, within the limits
+	 */
+	boolean reservePath(int depth) {
+		if ( depth > maxDepth ) {
+			return false;
+		}
+
+		int count;
+		do {
+			count = pathCount.get();
+			if ( count >= maxSize ) {
+				return false;
+			}
+		} while ( !pathCount.compareAndSet( count, count + 1 ) );
+		return true;
+	}
+
+	/**
+	 * The number of canonical paths created so far
+	 */
+	public int getPathCount() {
+		return pathCount.get();
+	}
+}
@@ -0,0 +1,22 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query;
+
+/**
+ * Represents a syntax error in the passed query
+ *
+ * @author Steve Ebersole
+ */
+public class SyntaxException extends QueryException {
+	public SyntaxException(String message) {
+		super( message );
+	}
+
+	public SyntaxException(String message, Exception cause) {
+		super( message, cause );
+	}
+}
@@ -11,14 +11,15 @@ import java.util.function.Supplier;
 
 import org.hibernate.metamodel.model.domain.spi.Navigable;
 import org.hibernate.metamodel.model.domain.spi.NavigableContainer;
+import org.hibernate.query.NavigablePath;
 import org.hibernate.query.QueryLogger;
 import org.hibernate.query.SemanticException;
 import org.hibernate.query.seqpoc.hql.spi.DotIdentifierHandler;
-import org.hibernate.query.seqpoc.hql.spi.SqmCreationContext;
 import org.hibernate.query.seqpoc.hql.spi.StatementProcessingState;
 import org.hibernate.query.seqpoc.sqm.tree.domain.SqmFrom;
 import org.hibernate.query.seqpoc.sqm.tree.domain.SqmPath;
 import org.hibernate.query.seqpoc.sqm.tree.domain.SqmPathImpl;
+import org.hibernate.query.seqpoc.sqm.tree.expression.SqmLiteral;
 
 /**
  * @asciidoc
@@ -38,16 +39,17 @@ import org.hibernate.query.seqpoc.sqm.tree.domain.SqmPathImpl;
  */
 public class BasicDotIdentifierHandler implements DotIdentifierHandler {
 	private final Supplier<StatementProcessingState> processingStateSupplier;
-	private final SqmCreationContext sqmCreationContext;
+	private final SemanticQueryInterpreter interpreter;
 
-	private String pathSoFar;
+	// built incrementally; only rendered when tracing or resolving a Java constant
+	private final StringBuilder pathSoFar = new StringBuilder();
 	private LocalSequencePart currentPart;
 
 	public BasicDotIdentifierHandler(
 			Supplier<StatementProcessingState> processingStateSupplier,
-			SqmCreationContext sqmCreationContext) {
+			SemanticQueryInterpreter interpreter) {
 		this.processingStateSupplier = processingStateSupplier;
-		this.sqmCreationContext = sqmCreationContext;
+		this.interpreter = interpreter;
 	}
 
 	@Override
@@ -56,6 +58,10 @@ public class BasicDotIdentifierHandler implements DotIdentifierHandler {
 			return ( (DomainReferenceSequencePart) currentPart ).getDomainPath();
 		}
 
+		if ( currentPart instanceof JavaConstantSequencePart ) {
+			return ( (JavaConstantSequencePart) currentPart ).getLiteral();
+		}
+
 		return currentPart;
 	}
 
@@ -66,26 +72,111 @@ public class BasicDotIdentifierHandler implements DotIdentifierHandler {
 			reset();
 		}
 
-		if ( pathSoFar == null ) {
-			pathSoFar = identifier;
-		}
-		else {
-			pathSoFar += ( '.' + identifier );
+		final boolean traceEnabled = QueryLogger.QUERY_LOGGER.isTraceEnabled();
+
+		// only an unresolved sequence (a potential Java constant) needs the path rendered;
+		// once resolved to a domain path, the NavigablePath tracks it
+		if ( traceEnabled || currentPart instanceof BaseLocalSequencePart ) {
+			if ( pathSoFar.length() > 0 ) {
+				pathSoFar.append( '.' );
+			}
+			pathSoFar.append( identifier );
 		}
 
-		QueryLogger.QUERY_LOGGER.tracef(
-				"BasicDotIdentifierHandler#consumeIdentifier( %s, %s, %s ) - %s",
-				identifier,
-				isBase,
-				isTerminal,
-				pathSoFar
-		);
+		if ( traceEnabled ) {
+			QueryLogger.QUERY_LOGGER.tracef(
+					"BasicDotIdentifierHandler#consumeIdentifier( %s, %s, %s ) - %s",
+					identifier,
+					isBase,
+					isTerminal,
+					pathSoFar
+			);
+		}
 
 		currentPart = currentPart.consumeIdentifier( identifier, isBase, isTerminal );
 	}
 
+	/**
+	 * The identifiers consumed (via {@link #consumeIdentifier}) into the current sequence
+	 * before it resolved to a domain path, or all of them when tracing
+	 */
+	public String getPathSoFar() {
+		return pathSoFar.toString();
+	}
+
+	@Override
+	public void consumeIdentifierSequence(String[] identifiers) {
+		reset();
+
+		if ( QueryLogger.QUERY_LOGGER.isTraceEnabled() ) {
+			QueryLogger.QUERY_LOGGER.tracef(
+					"BasicDotIdentifierHandler#consumeIdentifierSequence( %s )",
+					String.join( ".", identifiers )
+			);
+		}
+
+		final SqmFrom pathRootByAlias = findPathRootByAlias( identifiers[0] );
+		if ( pathRootByAlias != null ) {
+			// the base is an alias (identification variable) - resolve the rest against it
+			currentPart = resolveSequence( new DomainReferenceSequencePart( pathRootByAlias ), identifiers, 1 );
+			return;
+		}
+
+		final SqmFrom pathRootByExposedNavigable = findPathRootByExposedNavigable( identifiers[0] );
+		if ( pathRootByExposedNavigable != null ) {
+			// the base is an "unqualified attribute reference" - resolve the whole sequence against its exposer
+			currentPart = resolveSequence( new DomainReferenceSequencePart( pathRootByExposedNavigable ), identifiers, 0 );
+			return;
+		}
+
+		final SqmLiteral<?> javaConstant = resolveJavaConstant( String.join( ".", identifiers ) );
+		if ( javaConstant != null ) {
+			currentPart = new JavaConstantSequencePart( javaConstant );
+			return;
+		}
+
+		// todo (6.0) : class (entity-type) references, etc.  See `BaseLocalSequencePart`
+		throw new UnsupportedOperationException( "Not yet implemented" );
+	}
+
+	private SqmLiteral<?> resolveJavaConstant(String path) {
+		return interpreter.getJavaConstantIndex().resolveLiteral( path );
+	}
+
+	private LocalSequencePart resolveSequence(DomainReferenceSequencePart base, String[] identifiers, int start) {
+		if ( start < identifiers.length ) {
+			final SqmPath basePath = base.getDomainPath();
+			final Navigable<?>[] navigables = interpreter.getNavigablePathIndex()
+					.resolve( basePath.getReferencedNavigable(), identifiers, start );
+			if ( navigables != null ) {
+				// the complete (remaining) path is indexed - no need to resolve it identifier by identifier
+				NavigablePath navigablePath = basePath.getNavigablePath();
+				for ( int i = start; i < identifiers.length; i++ ) {
+					navigablePath = navigablePath.appendResolved( identifiers[i] );
+				}
+				return new DomainReferenceSequencePart(
+						new SqmPathImpl( navigables[navigables.length - 1], navigablePath )
+				);
+			}
+		}
+
+		LocalSequencePart part = base;
+		for ( int i = start; i < identifiers.length; i++ ) {
+			part = part.consumeIdentifier( identifiers[i], i == 0, i == identifiers.length - 1 );
+		}
+		return part;
+	}
+
+	private SqmFrom findPathRootByAlias(String identifier) {
+		return processingStateSupplier.get().getPathRootLocator().findPathRootByAlias( identifier );
+	}
+
+	private SqmFrom findPathRootByExposedNavigable(String identifier) {
+		return processingStateSupplier.get().getPathRootLocator().findPathRootByExposedNavigable( identifier );
+	}
+
 	private void reset() {
-		pathSoFar = null;
+		pathSoFar.setLength( 0 );
 		currentPart = new BaseLocalSequencePart();
 	}
 
@@ -97,16 +188,13 @@ public class BasicDotIdentifierHandler implements DotIdentifierHandler {
 		@Override
 		public LocalSequencePart consumeIdentifier(String identifier, boolean isBase, boolean isTerminal) {
 			if ( isBase ) {
-				final StatementProcessingState processingState = processingStateSupplier.get();
-
-				final SqmFrom pathRootByAlias = processingState.getPathRootLocator().findPathRootByAlias( identifier );
+				final SqmFrom pathRootByAlias = findPathRootByAlias( identifier );
 				if ( pathRootByAlias != null ) {
 					// identifier is an alias (identification variable)
 					return new DomainReferenceSequencePart( pathRootByAlias );
 				}
 
-				final SqmFrom pathRootByExposedNavigable = processingState.getPathRootLocator()
-						.findPathRootByExposedNavigable( identifier );
+				final SqmFrom pathRootByExposedNavigable = findPathRootByExposedNavigable( identifier );
 				if ( pathRootByExposedNavigable != null ) {
 					// identifier is an "unqualified attribute reference"
 					final DomainReferenceSequencePart part = new DomainReferenceSequencePart( pathRootByExposedNavigable );
@@ -125,15 +213,43 @@ public class BasicDotIdentifierHandler implements DotIdentifierHandler {
 			// resolving these at the terminal
 			//
 			// todo (6.0) : finish this logic.  and see above note in `! isTerminal` block
+			//
+			// Java constants (enum values and static fields) are resolved via JavaConstantIndex,
+			// which only looks up the candidate class-names for the complete path (and caches them)
 
 			if ( !isTerminal ) {
 				return this;
 			}
 
+			final SqmLiteral<?> javaConstant = resolveJavaConstant( pathSoFar.toString() );
+			if ( javaConstant != null ) {
+				return new JavaConstantSequencePart( javaConstant );
+			}
+
 			throw new UnsupportedOperationException( "Not yet implemented" );
 		}
 	}
 
+	/**
+	 * A sequence resolved as a Java constant - an enum value or static field
+	 */
+	public static class JavaConstantSequencePart implements LocalSequencePart {
+		private final SqmLiteral<?> literal;
+
+		public JavaConstantSequencePart(SqmLiteral<?> literal) {
+			this.literal = literal;
+		}
+
+		public SqmLiteral<?> getLiteral() {
+			return literal;
+		}
+
+		@Override
+		public LocalSequencePart consumeIdentifier(String identifier, boolean isBase, boolean isTerminal) {
+			throw new SemanticException( "Java constant cannot be de-referenced - " + identifier );
+		}
+	}
+
 	public class DomainReferenceSequencePart implements LocalSequencePart {
 		private SqmPath domainPath;
 
@@ -171,7 +287,7 @@ public class BasicDotIdentifierHandler implements DotIdentifierHandler {
 				);
 			}
 
-			domainPath = new SqmPathImpl( navigable, domainPath.getNavigablePath().append( identifier ) );
+			domainPath = new SqmPathImpl( navigable, domainPath.getNavigablePath().appendResolved( identifier ) );
 
 			return this;
 		}
@@ -0,0 +1,130 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.seqpoc.hql.internal;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.hibernate.metamodel.model.domain.spi.EntityTypeDescriptor;
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+
+/**
+ * Trie of the entity names of a domain model, one node per dot-separated segment.
+ * Allows resolving a dot-identifier sequence as an entity name by stepping through
+ * the trie identifier by identifier, without building the dotted String.
+ * <p/>
+ * Each entity is reachable by its entity name, its JPA entity name and its unqualified
+ * entity name - the names the domain model may accept for it.  Whether it does (e.g.
+ * whether the unqualified name is imported) is still decided by the domain model, so
+ * callers resolve a node's {@link Node#getPath() path} through
+ * {@link MetamodelImplementor#findEntityDescriptor}.  A sequence leaving the trie
+ * names no entity.
+ * <p/>
+ * A trie is built once per domain model (see {@link #forDomainModel}).  It only holds
+ * the names, not the entity descriptors, so it does not keep the domain model reachable.
+ *
+ * @author Steve Ebersole
+ */
+public class EntityNameTrie {
+	private static final Map<MetamodelImplementor, EntityNameTrie> TRIES = new WeakHashMap<>();
+
+	/**
+	 * The trie for the given domain model.  The trie is released along with the domain model
+	 */
+	public static EntityNameTrie forDomainModel(MetamodelImplementor domainModel) {
+		synchronized ( TRIES ) {
+			return TRIES.computeIfAbsent( domainModel, EntityNameTrie::new );
+		}
+	}
+
+	private final Node root = new Node( null );
+
+	public EntityNameTrie(MetamodelImplementor domainModel) {
+		domainModel.visitEntityDescriptors( this::addEntity );
+	}
+
+	private void addEntity(EntityTypeDescriptor<?> entityDescriptor) {
+		final String entityName = entityDescriptor.getEntityName();
+
+		addName( entityName, entityName, true );
+		if ( entityDescriptor.getJpaEntityName() != null ) {
+			addName( entityDescriptor.getJpaEntityName(), entityName, true );
+		}
+		// explicit names win over an (ambiguous) unqualified name
+		addName( entityName.substring( entityName.lastIndexOf( '.' ) + 1 ), entityName, false );
+	}
+
+	private void addName(String name, String entityName, boolean explicit) {
+		Node node = root;
+		int segmentStart = 0;
+		while ( true ) {
+			final int segmentEnd = name.indexOf( '.', segmentStart );
+			node = node.addChild(
+					segmentEnd < 0 ? name.substring( segmentStart ) : name.substring( segmentStart, segmentEnd ),
+					segmentEnd < 0 ? name : name.substring( 0, segmentEnd )
+			);
+
+			if ( segmentEnd < 0 ) {
+				break;
+			}
+			segmentStart = segmentEnd + 1;
+		}
+
+		if ( explicit || node.entityName == null ) {
+			node.entityName = entityName;
+		}
+	}
+
+	/**
+	 * The root of the trie, the empty name
+	 */
+	public Node getRoot() {
+		return root;
+	}
+
+	public static class Node {
+		private final String path;
+		private Map<String, Node> children = Collections.emptyMap();
+		private String entityName;
+
+		private Node(String path) {
+			this.path = path;
+		}
+
+		private Node addChild(String segment, String childPath) {
+			if ( children.isEmpty() ) {
+				children = new HashMap<>();
+			}
+			return children.computeIfAbsent( segment, key -> new Node( childPath ) );
+		}
+
+		/**
+		 * The node for this node's name followed by the given segment, or {@code null}
+		 * if no entity name starts with that
+		 */
+		public Node getChild(String segment) {
+			return children.get( segment );
+		}
+
+		/**
+		 * The (dotted) name this node represents, {@code null} for the root
+		 */
+		public String getPath() {
+			return path;
+		}
+
+		/**
+		 * The entity name of the entity this node's name refers to, or {@code null}
+		 * if it is only a prefix of entity names
+		 */
+		public String getEntityName() {
+			return entityName;
+		}
+	}
+}
@@ -0,0 +1,240 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.seqpoc.hql.internal;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jboss.logging.Logger;
+
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.atn.LexerATNSimulator;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.atn.PredictionContextCache;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAState;
+
+/**
+ * A read-only snapshot of the DFA states shared by all {@link HqlLexer} and
+ * {@link HqlParser} instances, taken once the DFA has been warmed (see
+ * {@link HqlGrammarWarmUp}).
+ * <p/>
+ * Antlr reads existing DFA edges without locking, but every time prediction reaches
+ * a state through an edge it has not cached yet it looks the state up in the decision's
+ * {@link DFA#states} map while holding that map's monitor - the map is the one
+ * structure shared by all threads.  The lexer does not cache edges for characters
+ * outside of ASCII at all, so this happens for every such character in a query
+ * (e.g. in a string literal), no matter how warm the DFA is.  Under load, threads
+ * queue up on those monitors.
+ * <p/>
+ * Once frozen (see {@link #freeze}), the lexers and parsers used by
+ * {@link HqlParseTreeBuilder} look states up in the snapshot first, which is
+ * immutable and needs no locking.  Only a state which is not in the snapshot - a true
+ * cache miss - goes through Antlr's (synchronized) write path, which still extends the
+ * shared DFA.  Those misses are counted (see {@link #getMissCount}); a steady stream of
+ * them means the warm-up corpus is missing queries, or that the DFA should be frozen
+ * again.
+ *
+ * @author Steve Ebersole
+ */
+public class FrozenHqlDfa {
+	private static final Logger log = Logger.getLogger( FrozenHqlDfa.class );
+
+	private static volatile FrozenHqlDfa current;
+
+	/**
+	 * Snapshot the current state of the shared lexer and parser DFAs and use it from
+	 * now on.  Freezing again replaces the snapshot, including any states added since
+	 */
+	public static FrozenHqlDfa freeze() {
+		final FrozenHqlDfa frozen = new FrozenHqlDfa( HqlParser._decisionToDFA, HqlLexer._decisionToDFA );
+		current = frozen;
+		log.debugf( "Froze HQL grammar DFA : %s", frozen );
+		return frozen;
+	}
+
+	/**
+	 * Drop the snapshot, going back to Antlr's own (synchronized) state lookups
+	 */
+	public static void thaw() {
+		current = null;
+	}
+
+	/**
+	 * The snapshot in use, or {@code null} if the DFA is not frozen
+	 */
+	public static FrozenHqlDfa getCurrent() {
+		return current;
+	}
+
+	/**
+	 * Have the given parser consult the snapshot before the shared DFA.  Does nothing
+	 * if the DFA is not frozen, or if the parser already consults the snapshot - so
+	 * long-lived (pooled) parsers are installed again whenever they are re-used
+	 */
+	public static <P extends Parser> P install(P parser) {
+		final ParserATNSimulator shared = parser.getInterpreter();
+		if ( current == null || shared instanceof FrozenDfaParserATNSimulator ) {
+			return parser;
+		}
+		parser.setInterpreter(
+				new FrozenDfaParserATNSimulator( parser, shared.decisionToDFA, shared.getSharedContextCache() )
+		);
+		return parser;
+	}
+
+	/**
+	 * Have the given lexer consult the snapshot before the shared DFA.  Does nothing
+	 * if the DFA is not frozen, or if the lexer already consults the snapshot
+	 */
+	public static <L extends Lexer> L install(L lexer) {
+		final LexerATNSimulator shared = lexer.getInterpreter();
+		if ( current == null || shared instanceof FrozenDfaLexerATNSimulator ) {
+			return lexer;
+		}
+		lexer.setInterpreter(
+				new FrozenDfaLexerATNSimulator( lexer, shared.decisionToDFA, shared.getSharedContextCache() )
+		);
+		return lexer;
+	}
+
+	private final DFA[] parserDfas;
+	private final Map<DFAState, DFAState>[] parserStates;
+	private final DFA[] lexerDfas;
+	private final Map<DFAState, DFAState>[] lexerStates;
+
+	private final int parserStateCount;
+	private final int lexerStateCount;
+
+	private final LongAdder missCount = new LongAdder();
+
+	private FrozenHqlDfa(DFA[] parserDfas, DFA[] lexerDfas) {
+		this.parserDfas = parserDfas.clone();
+		this.parserStates = snapshot( this.parserDfas );
+		this.lexerDfas = lexerDfas.clone();
+		this.lexerStates = snapshot( this.lexerDfas );
+
+		this.parserStateCount = count( parserStates );
+		this.lexerStateCount = count( lexerStates );
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<DFAState, DFAState>[] snapshot(DFA[] dfas) {
+		final Map<DFAState, DFAState>[] states = new Map[ dfas.length ];
+		for ( int i = 0; i < dfas.length; i++ ) {
+			// Antlr itself guards the states map this way
+			synchronized ( dfas[i].states ) {
+				states[i] = new HashMap<>( dfas[i].states );
+			}
+		}
+		return states;
+	}
+
+	private static int count(Map<DFAState, DFAState>[] states) {
+		int count = 0;
+		for ( Map<DFAState, DFAState> decisionStates : states ) {
+			count += decisionStates.size();
+		}
+		return count;
+	}
+
+	private DFAState findParserState(DFA dfa, DFAState proposed) {
+		return find( parserDfas, parserStates, dfa, proposed );
+	}
+
+	private DFAState findLexerState(DFA dfa, DFAState proposed) {
+		return find( lexerDfas, lexerStates, dfa, proposed );
+	}
+
+	private DFAState find(DFA[] dfas, Map<DFAState, DFAState>[] states, DFA dfa, DFAState proposed) {
+		final int decision = dfa.decision;
+		if ( decision < 0 || decision >= dfas.length || dfas[decision] != dfa ) {
+			// not one of the shared DFAs (e.g. a private DFA)
+			return null;
+		}
+
+		final DFAState existing = states[decision].get( proposed );
+		if ( existing == null ) {
+			missCount.increment();
+		}
+		return existing;
+	}
+
+	public int getParserStateCount() {
+		return parserStateCount;
+	}
+
+	public int getLexerStateCount() {
+		return lexerStateCount;
+	}
+
+	/**
+	 * The number of state lookups which missed the snapshot (and so went through
+	 * Antlr's synchronized write path) since it was taken
+	 */
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				Locale.ROOT,
+				"FrozenHqlDfa(parser: %s states; lexer: %s states; %s misses)",
+				parserStateCount,
+				lexerStateCount,
+				getMissCount()
+		);
+	}
+
+	private static class FrozenDfaParserATNSimulator extends ParserATNSimulator {
+		private FrozenDfaParserATNSimulator(
+				Parser parser,
+				DFA[] decisionToDFA,
+				PredictionContextCache sharedContextCache) {
+			super( parser, parser.getATN(), decisionToDFA, sharedContextCache );
+		}
+
+		@Override
+		protected DFAState addDFAState(DFA dfa, DFAState D) {
+			final FrozenHqlDfa frozen = current;
+			if ( frozen != null && D != ERROR ) {
+				final DFAState existing = frozen.findParserState( dfa, D );
+				if ( existing != null ) {
+					return existing;
+				}
+			}
+			return super.addDFAState( dfa, D );
+		}
+	}
+
+	private static class FrozenDfaLexerATNSimulator extends LexerATNSimulator {
+		private FrozenDfaLexerATNSimulator(
+				Lexer lexer,
+				DFA[] decisionToDFA,
+				PredictionContextCache sharedContextCache) {
+			super( lexer, lexer.getATN(), decisionToDFA, sharedContextCache );
+		}
+
+		@Override
+		protected DFAState addDFAState(ATNConfigSet configs) {
+			final FrozenHqlDfa frozen = current;
+			if ( frozen != null ) {
+				// DFAState equality is that of the config sets
+				final DFAState existing = frozen.findLexerState( decisionToDFA[mode], new DFAState( configs ) );
+				if ( existing != null ) {
+					return existing;
+				}
+			}
+			return super.addDFAState( configs );
+		}
+	}
+}
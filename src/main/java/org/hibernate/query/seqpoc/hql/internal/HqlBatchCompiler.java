@@ -0,0 +1,243 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.seqpoc.hql.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.hibernate.HibernateException;
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+import org.hibernate.query.seqpoc.sqm.tree.SqmSelectStatement;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Compiles (parses and interprets) a batch of HQL queries in parallel against a
+ * single domain model - e.g. to validate an application's named queries at boot.
+ * <p/>
+ * The queries are independent of each other; the only shared (mutable) state is
+ * the Antlr DFA cache and the parser pool, so the batch is simply spread over
+ * {@code parallelism} workers on the given {@link Executor}.  Rather than one task
+ * per query, each worker keeps claiming the next query from a shared cursor until
+ * none are left - this balances long and short queries between the workers without
+ * per-query task overhead.  The calling thread acts as one of the workers, so the
+ * batch completes even if the executor is saturated (or rejects the tasks).
+ * <p/>
+ * Failing queries do not fail the batch - the errors are collected per query in
+ * the returned {@link Result}.  Syntax errors are not recovered from, but reported
+ * as a {@link org.hibernate.query.SyntaxException}.
+ *
+ * @author Steve Ebersole
+ */
+public class HqlBatchCompiler {
+	private static final Logger log = Logger.getLogger( HqlBatchCompiler.class );
+
+	private final MetamodelImplementor domainModel;
+	// shared by all workers - only holds immutable / thread-safe state
+	private final SemanticQueryInterpreter interpreter;
+	private final Executor executor;
+	private final int parallelism;
+
+	/**
+	 * Compile using the {@link ForkJoinPool#commonPool() common fork-join pool}
+	 */
+	public HqlBatchCompiler(MetamodelImplementor domainModel) {
+		this( domainModel, ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism() + 1 );
+	}
+
+	/**
+	 * @param domainModel The domain model to interpret the queries against
+	 * @param executor The executor on which to run the workers
+	 * @param parallelism The number of workers, including the calling thread
+	 */
+	public HqlBatchCompiler(MetamodelImplementor domainModel, Executor executor, int parallelism) {
+		this(
+				domainModel,
+				executor,
+				parallelism,
+				new HqlParseTreeBuilder(
+						HqlParseTreeBuilder.PredictionStrategy.TWO_STAGE,
+						HqlParseTreeBuilder.LexerStrategy.GENERATED,
+						parallelism,
+						HqlParseTreeBuilder.SyntaxErrorHandling.FAIL
+				)
+		);
+	}
+
+	/**
+	 * @param domainModel The domain model to interpret the queries against
+	 * @param executor The executor on which to run the workers
+	 * @param parallelism The number of workers, including the calling thread
+	 * @param parseTreeBuilder The builder to parse with.  Should pool at least
+	 * {@code parallelism} parsers, and fail on syntax errors (see
+	 * {@link HqlParseTreeBuilder.SyntaxErrorHandling#FAIL}) for them to be reported
+	 * as errors of the query
+	 */
+	public HqlBatchCompiler(
+			MetamodelImplementor domainModel,
+			Executor executor,
+			int parallelism,
+			HqlParseTreeBuilder parseTreeBuilder) {
+		assert domainModel != null;
+		assert executor != null;
+		assert parseTreeBuilder != null;
+
+		if ( parallelism < 1 ) {
+			throw new IllegalArgumentException( "Parallelism must be at least 1 : " + parallelism );
+		}
+
+		this.domainModel = domainModel;
+		this.executor = executor;
+		this.parallelism = parallelism;
+		this.interpreter = new SemanticQueryInterpreter( domainModel, parseTreeBuilder );
+	}
+
+	public MetamodelImplementor getDomainModel() {
+		return domainModel;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Compile the given queries, blocking until all are compiled.  Duplicate queries
+	 * are compiled once.
+	 */
+	public Result compile(Collection<String> hqls) {
+		final List<String> queries = new ArrayList<>( new LinkedHashSet<>( hqls ) );
+		final Batch batch = new Batch( queries );
+
+		final int workerCount = Math.min( parallelism, queries.size() );
+		log.debugf( "Compiling %s HQL queries using %s workers", queries.size(), workerCount );
+
+		for ( int i = 1; i < workerCount; i++ ) {
+			try {
+				executor.execute( batch::work );
+			}
+			catch (RejectedExecutionException e) {
+				log.debugf( "Executor rejected batch compilation worker; continuing with %s workers", i );
+				break;
+			}
+		}
+
+		// the calling thread works too
+		batch.work();
+		batch.await();
+
+		return batch.toResult();
+	}
+
+	private class Batch {
+		private final List<String> queries;
+		private final SqmSelectStatement[] statements;
+		private final RuntimeException[] errors;
+
+		private final AtomicInteger cursor = new AtomicInteger();
+		private final CountDownLatch remaining;
+		private final AtomicReference<Throwable> fatal = new AtomicReference<>();
+
+		private Batch(List<String> queries) {
+			this.queries = queries;
+			this.statements = new SqmSelectStatement[ queries.size() ];
+			this.errors = new RuntimeException[ queries.size() ];
+			this.remaining = new CountDownLatch( queries.size() );
+		}
+
+		private void work() {
+			int index;
+			while ( ( index = cursor.getAndIncrement() ) < queries.size() ) {
+				try {
+					statements[index] = interpreter.interpret( queries.get( index ) );
+				}
+				catch (RuntimeException e) {
+					errors[index] = e;
+				}
+				catch (Throwable t) {
+					// e.g. StackOverflowError - not a problem with this query as such, so fail the batch
+					fatal.compareAndSet( null, t );
+				}
+				finally {
+					remaining.countDown();
+				}
+			}
+		}
+
+		private void await() {
+			try {
+				remaining.await();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new HibernateException( "Interrupted while compiling HQL queries", e );
+			}
+
+			if ( fatal.get() != null ) {
+				throw new HibernateException( "Unexpected error compiling HQL queries", fatal.get() );
+			}
+		}
+
+		private Result toResult() {
+			final Map<String, SqmSelectStatement> statementMap = new LinkedHashMap<>();
+			final Map<String, RuntimeException> errorMap = new LinkedHashMap<>();
+
+			for ( int i = 0; i < queries.size(); i++ ) {
+				if ( errors[i] != null ) {
+					errorMap.put( queries.get( i ), errors[i] );
+				}
+				else {
+					statementMap.put( queries.get( i ), statements[i] );
+				}
+			}
+
+			return new Result( statementMap, errorMap );
+		}
+	}
+
+	/**
+	 * The outcome of compiling a batch of queries.  Both maps are keyed by the HQL and
+	 * iterate in the order the queries were passed
+	 */
+	public static class Result {
+		private final Map<String, SqmSelectStatement> statements;
+		private final Map<String, RuntimeException> errors;
+
+		private Result(Map<String, SqmSelectStatement> statements, Map<String, RuntimeException> errors) {
+			this.statements = Collections.unmodifiableMap( statements );
+			this.errors = Collections.unmodifiableMap( errors );
+		}
+
+		/**
+		 * The SQM of each query which compiled successfully
+		 */
+		public Map<String, SqmSelectStatement> getStatements() {
+			return statements;
+		}
+
+		/**
+		 * The error of each query which failed to compile
+		 */
+		public Map<String, RuntimeException> getErrors() {
+			return errors;
+		}
+
+		public boolean hasErrors() {
+			return !errors.isEmpty();
+		}
+	}
+}
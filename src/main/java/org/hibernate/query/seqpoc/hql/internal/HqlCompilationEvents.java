@@ -0,0 +1,530 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.seqpoc.hql.internal;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.hibernate.HibernateException;
+
+import org.jboss.logging.Logger;
+
+import org.antlr.v4.runtime.Token;
+
+/**
+ * JDK Flight Recorder events for compiling HQL queries, for always-on profiling of
+ * query compilation in production :<ul>
+ *     <li>{@link #PARSE} - tokenizing and parsing a query</li>
+ *     <li>{@link #INTERPRETATION} - interpreting a query's parse tree into SQM</li>
+ *     <li>{@link #ROOT_RESOLUTION} - resolving a from-clause root to its entity</li>
+ *     <li>{@link #JOIN_RESOLUTION} - resolving a qualified join</li>
+ *     <li>{@link #CACHE_LOOKUP} - resolving a query through the interpretation cache,
+ *     including interpreting it on a miss</li>
+ * </ul>
+ * Each event carries the hash of the query's {@link HqlQueryShape shape} rather than
+ * the query itself - the query text may contain literal values which should not end
+ * up in recordings - plus the entity names or paths involved, and its duration.
+ * <p/>
+ * The events are named {@code org.hibernate.query.hql.*}, in the Hibernate / HQL
+ * category, and are enabled with a threshold of {@value #DEFAULT_THRESHOLD} by default,
+ * so that a recording gets a stack trace for each slow compilation without recording
+ * all of them.  Both can be changed through the recording settings as for any other
+ * event, e.g. {@code org.hibernate.query.hql.Parse#threshold=0 ms}.
+ * <p/>
+ * This code base targets Java 8, where the JFR API is not (necessarily) available, so
+ * the events are defined at runtime through {@code jdk.jfr.EventFactory} and accessed
+ * reflectively.  Where JFR is not available the events are never
+ * {@link EventType#isEnabled() enabled}.  Nothing is recorded, nor any event data
+ * gathered, unless a recording with the event enabled is running.
+ *
+ * @author Steve Ebersole
+ */
+public final class HqlCompilationEvents {
+	private static final Logger log = Logger.getLogger( HqlCompilationEvents.class );
+
+	/**
+	 * The default duration above which events are recorded
+	 */
+	public static final String DEFAULT_THRESHOLD = "1 ms";
+
+	private static final String NAME_PREFIX = "org.hibernate.query.hql.";
+
+	// declared before the event types using it
+	private static final Field QUERY_SHAPE_HASH = new Field( int.class, "queryShapeHash", "Query Shape Hash" );
+
+	/**
+	 * Tokenizing and parsing a query.  Values : {@code queryShapeHash}
+	 */
+	public static final EventType PARSE = new EventType(
+			"Parse",
+			"HQL Parse",
+			"Tokenizing and parsing an HQL query",
+			QUERY_SHAPE_HASH
+	);
+
+	/**
+	 * Interpreting a query's parse tree into SQM.  Values : {@code queryShapeHash},
+	 * {@code entityNames} - the names of the root entities, comma separated
+	 */
+	public static final EventType INTERPRETATION = new EventType(
+			"Interpretation",
+			"HQL Interpretation",
+			"Interpreting the parse tree of an HQL query into SQM",
+			QUERY_SHAPE_HASH,
+			new Field( String.class, "entityNames", "Entity Names" )
+	);
+
+	/**
+	 * Resolving a from-clause root.  Values : {@code queryShapeHash}, {@code entityName},
+	 * {@code alias}
+	 */
+	public static final EventType ROOT_RESOLUTION = new EventType(
+			"RootResolution",
+			"HQL Root Resolution",
+			"Resolving a from-clause root of an HQL query",
+			QUERY_SHAPE_HASH,
+			new Field( String.class, "entityName", "Entity Name" ),
+			new Field( String.class, "alias", "Alias" )
+	);
+
+	/**
+	 * Resolving a qualified join.  Values : {@code queryShapeHash}, {@code path} - the
+	 * navigable path of the join, which starts with the name of the root entity,
+	 * {@code alias}
+	 */
+	public static final EventType JOIN_RESOLUTION = new EventType(
+			"JoinResolution",
+			"HQL Join Resolution",
+			"Resolving a qualified join of an HQL query",
+			QUERY_SHAPE_HASH,
+			new Field( String.class, "path", "Path" ),
+			new Field( String.class, "alias", "Alias" )
+	);
+
+	/**
+	 * Resolving a query through the interpretation cache.  Values : {@code queryShapeHash},
+	 * {@code outcome} - one of {@link CacheOutcome}
+	 */
+	public static final EventType CACHE_LOOKUP = new EventType(
+			"CacheLookup",
+			"HQL Cache Lookup",
+			"Resolving an HQL query through the interpretation cache, interpreting it on a miss",
+			QUERY_SHAPE_HASH,
+			new Field( String.class, "outcome", "Outcome" )
+	);
+
+	/**
+	 * The outcome of a {@link #CACHE_LOOKUP}
+	 */
+	public enum CacheOutcome {
+		/**
+		 * The interpretation was cached
+		 */
+		HIT,
+
+		/**
+		 * The query was interpreted
+		 */
+		MISS,
+
+		/**
+		 * The query was being interpreted (by another request) - the lookup waited for it
+		 */
+		IN_FLIGHT
+	}
+
+	private HqlCompilationEvents() {
+	}
+
+	/**
+	 * Whether the JFR API is available, and so whether the events can ever be enabled
+	 */
+	public static boolean isAvailable() {
+		return Jfr.AVAILABLE;
+	}
+
+	/**
+	 * The hash of the given query shape - see {@link HqlQueryShape#getKey()}
+	 */
+	public static int queryShapeHash(HqlQueryShape queryShape) {
+		return queryShape.getKey().hashCode();
+	}
+
+	/**
+	 * The hash of the shape of the query already tokenized into the given tokens - see
+	 * {@link HqlQueryShape#keyOf}
+	 */
+	public static int queryShapeHash(List<? extends Token> tokens) {
+		return HqlQueryShape.keyOf( tokens ).hashCode();
+	}
+
+	/**
+	 * The hash of the shape of one query (not interpreted as a shape), shared by the events
+	 * of compiling it so that it is computed at most once.  Whatever has the query's tokens
+	 * at hand (e.g. the parser) computes it from those; only if nothing did is the query
+	 * tokenized for it.
+	 * <p/>
+	 * Not thread-safe : it is meant for a single compilation of a query
+	 */
+	public static final class QueryShapeHash {
+		private boolean computed;
+		private int hash;
+
+		/**
+		 * The hash, computed from the tokens of the query (as supplied) unless already known
+		 */
+		public int get(Supplier<? extends List<? extends Token>> tokens) {
+			if ( !computed ) {
+				hash = queryShapeHash( tokens.get() );
+				computed = true;
+			}
+			return hash;
+		}
+
+		/**
+		 * The hash, computed by tokenizing the given query unless already known
+		 */
+		public int get(String hql) {
+			if ( !computed ) {
+				hash = queryShapeHash( HqlQueryShape.of( hql ) );
+				computed = true;
+			}
+			return hash;
+		}
+	}
+
+	/**
+	 * A type of event
+	 */
+	public static final class EventType {
+		private final String name;
+		private final Object eventFactory;
+		private final Object jfrEventType;
+
+		private EventType(String name, String label, String description, Field... fields) {
+			Object eventFactory = null;
+			Object jfrEventType = null;
+			if ( Jfr.AVAILABLE ) {
+				try {
+					eventFactory = Jfr.createEventFactory( NAME_PREFIX + name, label, description, fields );
+					jfrEventType = Jfr.getEventType( eventFactory );
+				}
+				catch (RuntimeException | LinkageError e) {
+					log.debugf( e, "Unable to define JFR event %s%s; it will not be recorded", NAME_PREFIX, name );
+					eventFactory = null;
+					jfrEventType = null;
+				}
+			}
+
+			this.name = NAME_PREFIX + name;
+			this.eventFactory = eventFactory;
+			this.jfrEventType = jfrEventType;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Whether a recording is running with this event enabled
+		 */
+		public boolean isEnabled() {
+			return jfrEventType != null && Jfr.isEnabled( jfrEventType );
+		}
+
+		/**
+		 * Begin timing an event of this type
+		 *
+		 * @return The event, or {@code null} if this event is not {@link #isEnabled() enabled}
+		 */
+		public Event begin() {
+			if ( !isEnabled() ) {
+				return null;
+			}
+
+			final Object jfrEvent = Jfr.newEvent( eventFactory );
+			Jfr.begin( jfrEvent );
+			return new Event( jfrEvent );
+		}
+
+		@Override
+		public String toString() {
+			return "HqlCompilationEvents.EventType(" + name + ")";
+		}
+	}
+
+	/**
+	 * An event being timed.  {@link #end() Ended} when whatever it times completes, and
+	 * then {@link #commit committed} with its values if it should be recorded
+	 */
+	public static final class Event {
+		private final Object jfrEvent;
+
+		private Event(Object jfrEvent) {
+			this.jfrEvent = jfrEvent;
+		}
+
+		/**
+		 * End timing the event
+		 *
+		 * @return Whether the event should be {@link #commit committed} - it is still
+		 * enabled and its duration is above the threshold
+		 */
+		public boolean end() {
+			Jfr.end( jfrEvent );
+			return Jfr.shouldCommit( jfrEvent );
+		}
+
+		/**
+		 * Record the (ended) event with the given values, in the order documented
+		 * for its type
+		 */
+		public void commit(Object... values) {
+			for ( int i = 0; i < values.length; i++ ) {
+				Jfr.set( jfrEvent, i, values[i] );
+			}
+			Jfr.commit( jfrEvent );
+		}
+	}
+
+	private static class Field {
+		private final Class<?> type;
+		private final String name;
+		private final String label;
+
+		private Field(Class<?> type, String name, String label) {
+			this.type = type;
+			this.name = name;
+			this.label = label;
+		}
+	}
+
+	/**
+	 * Reflective access to the JFR API
+	 */
+	private static class Jfr {
+		private static final boolean AVAILABLE;
+
+		private static final Constructor<?> ANNOTATION_ELEMENT_CONSTRUCTOR;
+		private static final Constructor<?> VALUE_DESCRIPTOR_CONSTRUCTOR;
+		private static final MethodHandle CREATE_EVENT_FACTORY;
+		private static final MethodHandle GET_EVENT_TYPE;
+		private static final MethodHandle IS_ENABLED;
+		private static final MethodHandle NEW_EVENT;
+		private static final MethodHandle BEGIN;
+		private static final MethodHandle END;
+		private static final MethodHandle SHOULD_COMMIT;
+		private static final MethodHandle SET;
+		private static final MethodHandle COMMIT;
+
+		static {
+			Constructor<?> annotationElementConstructor = null;
+			Constructor<?> valueDescriptorConstructor = null;
+			MethodHandle createEventFactory = null;
+			MethodHandle getEventType = null;
+			MethodHandle isEnabled = null;
+			MethodHandle newEvent = null;
+			MethodHandle begin = null;
+			MethodHandle end = null;
+			MethodHandle shouldCommit = null;
+			MethodHandle set = null;
+			MethodHandle commit = null;
+
+			boolean available;
+			try {
+				final Class<?> annotationElementClass = Class.forName( "jdk.jfr.AnnotationElement" );
+				final Class<?> valueDescriptorClass = Class.forName( "jdk.jfr.ValueDescriptor" );
+				final Class<?> eventFactoryClass = Class.forName( "jdk.jfr.EventFactory" );
+				final Class<?> eventTypeClass = Class.forName( "jdk.jfr.EventType" );
+				final Class<?> eventClass = Class.forName( "jdk.jfr.Event" );
+
+				annotationElementConstructor = annotationElementClass.getConstructor( Class.class, Object.class );
+				valueDescriptorConstructor = valueDescriptorClass.getConstructor( Class.class, String.class, List.class );
+
+				final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+				createEventFactory = lookup.findStatic(
+						eventFactoryClass,
+						"create",
+						MethodType.methodType( eventFactoryClass, List.class, List.class )
+				).asType( MethodType.methodType( Object.class, List.class, List.class ) );
+				getEventType = lookup.findVirtual( eventFactoryClass, "getEventType", MethodType.methodType( eventTypeClass ) )
+						.asType( MethodType.methodType( Object.class, Object.class ) );
+				isEnabled = lookup.findVirtual( eventTypeClass, "isEnabled", MethodType.methodType( boolean.class ) )
+						.asType( MethodType.methodType( boolean.class, Object.class ) );
+				newEvent = lookup.findVirtual( eventFactoryClass, "newEvent", MethodType.methodType( eventClass ) )
+						.asType( MethodType.methodType( Object.class, Object.class ) );
+				begin = lookup.findVirtual( eventClass, "begin", MethodType.methodType( void.class ) )
+						.asType( MethodType.methodType( void.class, Object.class ) );
+				end = lookup.findVirtual( eventClass, "end", MethodType.methodType( void.class ) )
+						.asType( MethodType.methodType( void.class, Object.class ) );
+				shouldCommit = lookup.findVirtual( eventClass, "shouldCommit", MethodType.methodType( boolean.class ) )
+						.asType( MethodType.methodType( boolean.class, Object.class ) );
+				set = lookup.findVirtual( eventClass, "set", MethodType.methodType( void.class, int.class, Object.class ) )
+						.asType( MethodType.methodType( void.class, Object.class, int.class, Object.class ) );
+				commit = lookup.findVirtual( eventClass, "commit", MethodType.methodType( void.class ) )
+						.asType( MethodType.methodType( void.class, Object.class ) );
+
+				available = true;
+			}
+			catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+				log.debugf( "JFR is not available; HQL compilation events will not be recorded : %s", e );
+				available = false;
+			}
+
+			AVAILABLE = available;
+			ANNOTATION_ELEMENT_CONSTRUCTOR = annotationElementConstructor;
+			VALUE_DESCRIPTOR_CONSTRUCTOR = valueDescriptorConstructor;
+			CREATE_EVENT_FACTORY = createEventFactory;
+			GET_EVENT_TYPE = getEventType;
+			IS_ENABLED = isEnabled;
+			NEW_EVENT = newEvent;
+			BEGIN = begin;
+			END = end;
+			SHOULD_COMMIT = shouldCommit;
+			SET = set;
+			COMMIT = commit;
+		}
+
+		private static Object createEventFactory(String name, String label, String description, Field[] fields) {
+			final List<Object> annotations = new ArrayList<>();
+			annotations.add( annotationElement( "jdk.jfr.Name", name ) );
+			annotations.add( annotationElement( "jdk.jfr.Label", label ) );
+			annotations.add( annotationElement( "jdk.jfr.Description", description ) );
+			annotations.add( annotationElement( "jdk.jfr.Category", new String[] { "Hibernate", "HQL" } ) );
+			annotations.add( annotationElement( "jdk.jfr.Threshold", DEFAULT_THRESHOLD ) );
+
+			final List<Object> valueDescriptors = new ArrayList<>( fields.length );
+			for ( Field field : fields ) {
+				valueDescriptors.add(
+						newInstance(
+								VALUE_DESCRIPTOR_CONSTRUCTOR,
+								field.type,
+								field.name,
+								Collections.singletonList( annotationElement( "jdk.jfr.Label", field.label ) )
+						)
+				);
+			}
+
+			try {
+				return (Object) CREATE_EVENT_FACTORY.invokeExact( annotations, valueDescriptors );
+			}
+			catch (Throwable t) {
+				throw failure( t );
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private static Object annotationElement(String annotationClassName, Object value) {
+			final Class<? extends Annotation> annotationClass;
+			try {
+				annotationClass = (Class<? extends Annotation>) Class.forName( annotationClassName );
+			}
+			catch (ClassNotFoundException e) {
+				throw new HibernateException( "Unable to load JFR annotation : " + annotationClassName, e );
+			}
+			return newInstance( ANNOTATION_ELEMENT_CONSTRUCTOR, annotationClass, value );
+		}
+
+		private static Object newInstance(Constructor<?> constructor, Object... arguments) {
+			try {
+				return constructor.newInstance( arguments );
+			}
+			catch (ReflectiveOperationException e) {
+				throw new HibernateException( "Unable to create JFR event definition", e );
+			}
+		}
+
+		private static Object getEventType(Object eventFactory) {
+			try {
+				return (Object) GET_EVENT_TYPE.invokeExact( eventFactory );
+			}
+			catch (Throwable t) {
+				throw failure( t );
+			}
+		}
+
+		private static boolean isEnabled(Object eventType) {
+			try {
+				return (boolean) IS_ENABLED.invokeExact( eventType );
+			}
+			catch (Throwable t) {
+				throw failure( t );
+			}
+		}
+
+		private static Object newEvent(Object eventFactory) {
+			try {
+				return (Object) NEW_EVENT.invokeExact( eventFactory );
+			}
+			catch (Throwable t) {
+				throw failure( t );
+			}
+		}
+
+		private static void begin(Object event) {
+			try {
+				BEGIN.invokeExact( event );
+			}
+			catch (Throwable t) {
+				throw failure( t );
+			}
+		}
+
+		private static void end(Object event) {
+			try {
+				END.invokeExact( event );
+			}
+			catch (Throwable t) {
+				throw failure( t );
+			}
+		}
+
+		private static boolean shouldCommit(Object event) {
+			try {
+				return (boolean) SHOULD_COMMIT.invokeExact( event );
+			}
+			catch (Throwable t) {
+				throw failure( t );
+			}
+		}
+
+		private static void set(Object event, int index, Object value) {
+			try {
+				SET.invokeExact( event, index, value );
+			}
+			catch (Throwable t) {
+				throw failure( t );
+			}
+		}
+
+		private static void commit(Object event) {
+			try {
+				COMMIT.invokeExact( event );
+			}
+			catch (Throwable t) {
+				throw failure( t );
+			}
+		}
+
+		private static RuntimeException failure(Throwable t) {
+			if ( t instanceof RuntimeException ) {
+				return (RuntimeException) t;
+			}
+			if ( t instanceof Error ) {
+				throw (Error) t;
+			}
+			return new HibernateException( "Unexpected JFR failure", t );
+		}
+	}
+}
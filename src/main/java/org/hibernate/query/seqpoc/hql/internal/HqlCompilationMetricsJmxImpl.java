@@ -0,0 +1,289 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.seqpoc.hql.internal;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.hibernate.HibernateException;
+import org.hibernate.query.seqpoc.hql.spi.HqlCompilationMetrics;
+
+/**
+ * HqlCompilationMetrics collected into latency histograms and counters, published as
+ * a JMX MXBean (see {@link #register}).  To collect them, build the interpretation
+ * cache (or interpreter) with them :
+ * <pre>
+ * HqlCompilationMetricsJmxImpl metrics = new HqlCompilationMetricsJmxImpl().register( "orders" );
+ * HqlInterpretationCache cache = new HqlInterpretationCacheStandardImpl( domainModel, DEFAULT_MAX_SIZE, parseTreeBuilder, metrics );
+ * </pre>
+ * The histograms have power-of-2 buckets from 1 microsecond to about 1 second, so
+ * recording is just incrementing (striped, see {@link LongAdder}) counters and the
+ * reported percentiles are accurate within a factor of 2.
+ *
+ * @author Steve Ebersole
+ */
+public class HqlCompilationMetricsJmxImpl implements HqlCompilationMetrics, HqlCompilationStatisticsMXBean {
+	/**
+	 * The domain of the ObjectNames under which the metrics are registered
+	 */
+	public static final String OBJECT_NAME_DOMAIN = "org.hibernate.query";
+
+	private final LatencyHistogram[] latencies = new LatencyHistogram[ Phase.values().length ];
+	private final LongAdder[] counters = new LongAdder[ Counter.values().length ];
+
+	private volatile ObjectName objectName;
+
+	public HqlCompilationMetricsJmxImpl() {
+		for ( int i = 0; i < latencies.length; i++ ) {
+			latencies[i] = new LatencyHistogram();
+		}
+		for ( int i = 0; i < counters.length; i++ ) {
+			counters[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Register these metrics with the platform MBeanServer, as
+	 * {@code org.hibernate.query:type=HqlCompilationMetrics,name=<name>}
+	 *
+	 * @return this, for chaining
+	 */
+	public HqlCompilationMetricsJmxImpl register(String name) {
+		final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		try {
+			final ObjectName objectName = new ObjectName(
+					OBJECT_NAME_DOMAIN + ":type=HqlCompilationMetrics,name=" + ObjectName.quote( name )
+			);
+			mBeanServer.registerMBean( this, objectName );
+			this.objectName = objectName;
+		}
+		catch (JMException e) {
+			throw new HibernateException( "Unable to register HQL compilation metrics MBean : " + name, e );
+		}
+		return this;
+	}
+
+	/**
+	 * Remove these metrics from the platform MBeanServer, if registered
+	 */
+	public void unregister() {
+		final ObjectName objectName = this.objectName;
+		if ( objectName == null ) {
+			return;
+		}
+
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean( objectName );
+			this.objectName = null;
+		}
+		catch (JMException e) {
+			throw new HibernateException( "Unable to unregister HQL compilation metrics MBean : " + objectName, e );
+		}
+	}
+
+	/**
+	 * The name under which these metrics are registered, or {@code null}
+	 */
+	public ObjectName getObjectName() {
+		return objectName;
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// HqlCompilationMetrics
+
+	@Override
+	public boolean isEnabled() {
+		return true;
+	}
+
+	@Override
+	public void phaseCompleted(Phase phase, long durationNanos) {
+		latencies[ phase.ordinal() ].record( durationNanos );
+	}
+
+	@Override
+	public void increment(Counter counter, long delta) {
+		counters[ counter.ordinal() ].add( delta );
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// HqlCompilationStatisticsMXBean
+
+	public PhaseLatency getLatency(Phase phase) {
+		return latencies[ phase.ordinal() ].snapshot();
+	}
+
+	public long getCount(Counter counter) {
+		return counters[ counter.ordinal() ].sum();
+	}
+
+	@Override
+	public PhaseLatency getLexLatency() {
+		return getLatency( Phase.LEX );
+	}
+
+	@Override
+	public PhaseLatency getParseLatency() {
+		return getLatency( Phase.PARSE );
+	}
+
+	@Override
+	public PhaseLatency getFromClauseLatency() {
+		return getLatency( Phase.FROM_CLAUSE );
+	}
+
+	@Override
+	public PhaseLatency getSelectClauseLatency() {
+		return getLatency( Phase.SELECT_CLAUSE );
+	}
+
+	@Override
+	public PhaseLatency getInterpretationLatency() {
+		return getLatency( Phase.INTERPRETATION );
+	}
+
+	@Override
+	public long getIdentifiersConsumed() {
+		return getCount( Counter.IDENTIFIERS_CONSUMED );
+	}
+
+	@Override
+	public long getFromElementsRegistered() {
+		return getCount( Counter.FROM_ELEMENTS_REGISTERED );
+	}
+
+	@Override
+	public long getUnqualifiedAttributeScans() {
+		return getCount( Counter.UNQUALIFIED_ATTRIBUTE_SCANS );
+	}
+
+	@Override
+	public long getCacheHits() {
+		return getCount( Counter.CACHE_HITS );
+	}
+
+	@Override
+	public long getCacheMisses() {
+		return getCount( Counter.CACHE_MISSES );
+	}
+
+	@Override
+	public long getCacheEvictions() {
+		return getCount( Counter.CACHE_EVICTIONS );
+	}
+
+	@Override
+	public long getTrivialInterpretations() {
+		return getCount( Counter.TRIVIAL_INTERPRETATIONS );
+	}
+
+	@Override
+	public long getSinglePassInterpretations() {
+		return getCount( Counter.SINGLE_PASS_INTERPRETATIONS );
+	}
+
+	@Override
+	public void reset() {
+		for ( LatencyHistogram latency : latencies ) {
+			latency.reset();
+		}
+		for ( LongAdder counter : counters ) {
+			counter.reset();
+		}
+	}
+
+	/**
+	 * Histogram with buckets for up to 1, 2, 4, ... 2^20 microseconds, and one for
+	 * anything longer
+	 */
+	private static class LatencyHistogram {
+		private static final int BUCKET_COUNT = 22;
+		private static final long[] BUCKET_UPPER_BOUNDS_MICROS = new long[ BUCKET_COUNT ];
+		static {
+			for ( int i = 0; i < BUCKET_COUNT - 1; i++ ) {
+				BUCKET_UPPER_BOUNDS_MICROS[i] = 1L << i;
+			}
+			BUCKET_UPPER_BOUNDS_MICROS[BUCKET_COUNT - 1] = Long.MAX_VALUE;
+		}
+
+		private final LongAdder[] buckets = new LongAdder[ BUCKET_COUNT ];
+		private final LongAdder totalNanos = new LongAdder();
+		private final LongAccumulator maxNanos = new LongAccumulator( Math::max, 0L );
+
+		private LatencyHistogram() {
+			for ( int i = 0; i < BUCKET_COUNT; i++ ) {
+				buckets[i] = new LongAdder();
+			}
+		}
+
+		private void record(long nanos) {
+			buckets[ bucketIndex( TimeUnit.NANOSECONDS.toMicros( nanos ) ) ].increment();
+			totalNanos.add( nanos );
+			maxNanos.accumulate( nanos );
+		}
+
+		private static int bucketIndex(long micros) {
+			if ( micros <= 1 ) {
+				return 0;
+			}
+			// the smallest power of 2 >= micros
+			return Math.min( Long.SIZE - Long.numberOfLeadingZeros( micros - 1 ), BUCKET_COUNT - 1 );
+		}
+
+		private void reset() {
+			for ( LongAdder bucket : buckets ) {
+				bucket.reset();
+			}
+			totalNanos.reset();
+			maxNanos.reset();
+		}
+
+		private PhaseLatency snapshot() {
+			// not atomic : concurrent recording can make the count and total disagree slightly
+			final long[] counts = new long[ BUCKET_COUNT ];
+			long count = 0;
+			for ( int i = 0; i < BUCKET_COUNT; i++ ) {
+				counts[i] = buckets[i].sum();
+				count += counts[i];
+			}
+
+			return new PhaseLatency(
+					count,
+					TimeUnit.NANOSECONDS.toMicros( totalNanos.sum() ),
+					TimeUnit.NANOSECONDS.toMicros( maxNanos.get() ),
+					percentile( counts, count, 0.50 ),
+					percentile( counts, count, 0.90 ),
+					percentile( counts, count, 0.99 ),
+					BUCKET_UPPER_BOUNDS_MICROS.clone(),
+					counts
+			);
+		}
+
+		private static long percentile(long[] counts, long count, double percentile) {
+			if ( count == 0 ) {
+				return 0;
+			}
+
+			final long rank = (long) Math.ceil( count * percentile );
+			long seen = 0;
+			for ( int i = 0; i < BUCKET_COUNT; i++ ) {
+				seen += counts[i];
+				if ( seen >= rank ) {
+					return BUCKET_UPPER_BOUNDS_MICROS[i];
+				}
+			}
+			return BUCKET_UPPER_BOUNDS_MICROS[BUCKET_COUNT - 1];
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.seqpoc.hql.internal;
+
+/**
+ * The management interface of {@link HqlCompilationMetricsJmxImpl} : the latency of
+ * each phase of compiling queries (as {@link PhaseLatency histograms}) and the
+ * work counters.  Values are totals since the metrics were created or last
+ * {@link #reset}.
+ *
+ * @author Steve Ebersole
+ */
+public interface HqlCompilationStatisticsMXBean {
+	PhaseLatency getLexLatency();
+
+	PhaseLatency getParseLatency();
+
+	PhaseLatency getFromClauseLatency();
+
+	PhaseLatency getSelectClauseLatency();
+
+	PhaseLatency getInterpretationLatency();
+
+	long getIdentifiersConsumed();
+
+	long getFromElementsRegistered();
+
+	long getUnqualifiedAttributeScans();
+
+	long getCacheHits();
+
+	long getCacheMisses();
+
+	long getCacheEvictions();
+
+	long getTrivialInterpretations();
+
+	long getSinglePassInterpretations();
+
+	/**
+	 * Discard all values collected so far
+	 */
+	void reset();
+
+	/**
+	 * A snapshot of the latency histogram of one phase.  Latencies are in microseconds;
+	 * the percentiles are the upper bound of the histogram bucket they fall into
+	 */
+	class PhaseLatency {
+		private final long count;
+		private final long totalMicros;
+		private final long maxMicros;
+		private final long p50Micros;
+		private final long p90Micros;
+		private final long p99Micros;
+		private final long[] bucketUpperBoundsMicros;
+		private final long[] bucketCounts;
+
+		public PhaseLatency(
+				long count,
+				long totalMicros,
+				long maxMicros,
+				long p50Micros,
+				long p90Micros,
+				long p99Micros,
+				long[] bucketUpperBoundsMicros,
+				long[] bucketCounts) {
+			this.count = count;
+			this.totalMicros = totalMicros;
+			this.maxMicros = maxMicros;
+			this.p50Micros = p50Micros;
+			this.p90Micros = p90Micros;
+			this.p99Micros = p99Micros;
+			this.bucketUpperBoundsMicros = bucketUpperBoundsMicros;
+			this.bucketCounts = bucketCounts;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getTotalMicros() {
+			return totalMicros;
+		}
+
+		public long getMeanMicros() {
+			return count == 0 ? 0 : totalMicros / count;
+		}
+
+		public long getMaxMicros() {
+			return maxMicros;
+		}
+
+		public long getP50Micros() {
+			return p50Micros;
+		}
+
+		public long getP90Micros() {
+			return p90Micros;
+		}
+
+		public long getP99Micros() {
+			return p99Micros;
+		}
+
+		/**
+		 * The (inclusive) upper bound of each bucket of the histogram, the last
+		 * one being {@link Long#MAX_VALUE}
+		 */
+		public long[] getBucketUpperBoundsMicros() {
+			return bucketUpperBoundsMicros.clone();
+		}
+
+		/**
+		 * The number of completions of the phase within each bucket
+		 */
+		public long[] getBucketCounts() {
+			return bucketCounts.clone();
+		}
+
+		@Override
+		public String toString() {
+			return "PhaseLatency(count=" + count + ", mean=" + getMeanMicros() + "us, p50=" + p50Micros
+					+ "us, p90=" + p90Micros + "us, p99=" + p99Micros + "us, max=" + maxMicros + "us)";
+		}
+	}
+}
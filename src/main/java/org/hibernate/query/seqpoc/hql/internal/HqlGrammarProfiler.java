@@ -0,0 +1,425 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.seqpoc.hql.internal;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.HibernateException;
+
+import org.jboss.logging.Logger;
+
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.DecisionInfo;
+import org.antlr.v4.runtime.atn.LexerATNSimulator;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.atn.PredictionContextCache;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.atn.ProfilingATNSimulator;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+/**
+ * Opt-in profiling of the {@link HqlParser} grammar decisions.  Parses a corpus of
+ * queries using Antlr's {@link ProfilingATNSimulator} and reports, per decision and
+ * aggregated per rule : invocations, SLL to LL (full-context) fallbacks, lookahead
+ * depth, ambiguities, context sensitivities, errors and time spent in prediction.
+ * <p/>
+ * The corpus is lexed and parsed with private (initially empty) DFA caches, so a
+ * report only depends on the grammar, the corpus and the prediction strategy - not
+ * on whatever else was parsed in the JVM before - and profiling does not affect the
+ * DFA used at runtime.
+ * <p/>
+ * The report is written as CSV (see {@link Report#write(Path)}), one row per rule and
+ * per decision in grammar order, to allow diffing between grammar versions.  Decisions
+ * are identified by rule name and their index within the rule, which are more stable
+ * between grammar versions than Antlr's decision numbers.  Apart from the timings the
+ * report is deterministic.
+ * <p/>
+ * Can be run from the command line (see {@link #main}), or via the
+ * {@code profileHqlGrammar} Gradle task.
+ *
+ * @author Steve Ebersole
+ */
+public class HqlGrammarProfiler {
+	private static final Logger log = Logger.getLogger( HqlGrammarProfiler.class );
+
+	private final HqlParseTreeBuilder.PredictionStrategy predictionStrategy;
+
+	public HqlGrammarProfiler() {
+		this( HqlParseTreeBuilder.INSTANCE.getPredictionStrategy() );
+	}
+
+	public HqlGrammarProfiler(HqlParseTreeBuilder.PredictionStrategy predictionStrategy) {
+		this.predictionStrategy = predictionStrategy;
+	}
+
+	/**
+	 * Parse each query in the corpus, collecting the profile
+	 */
+	public Report profile(Iterable<String> corpus) {
+		final HqlLexer lexer = new HqlLexer( null );
+		lexer.setInterpreter(
+				new LexerATNSimulator( lexer, lexer.getATN(), newDfa( lexer.getATN() ), new PredictionContextCache() )
+		);
+		final CommonTokenStream tokenStream = new CommonTokenStream( lexer );
+		final HqlParser parser = HqlParseTreeBuilder.buildParser( tokenStream );
+
+		parser.setInterpreter(
+				new ParserATNSimulator( parser, parser.getATN(), newDfa( parser.getATN() ), new PredictionContextCache() )
+		);
+		// picks up the (private) DFA from the current interpreter
+		final ProfilingATNSimulator profilingSimulator = new ProfilingATNSimulator( parser );
+		parser.setInterpreter( profilingSimulator );
+
+		final RuleInvocationCounter ruleInvocationCounter = new RuleInvocationCounter();
+		parser.addParseListener( ruleInvocationCounter );
+
+		final SyntaxErrorCounter syntaxErrorCounter = new SyntaxErrorCounter();
+
+		int queryCount = 0;
+		int llReparseCount = 0;
+		final long start = System.nanoTime();
+
+		for ( String hql : corpus ) {
+			queryCount++;
+			lexer.setInputStream( CharStreams.fromString( hql ) );
+			tokenStream.setTokenSource( lexer );
+			parser.setTokenStream( tokenStream );
+
+			syntaxErrorCounter.failed = false;
+			parser.removeErrorListeners();
+
+			if ( predictionStrategy == HqlParseTreeBuilder.PredictionStrategy.TWO_STAGE ) {
+				profilingSimulator.setPredictionMode( PredictionMode.SLL );
+				parser.setErrorHandler( new BailErrorStrategy() );
+				try {
+					parser.selectStatement();
+					continue;
+				}
+				catch (ParseCancellationException e) {
+					llReparseCount++;
+					// rewinds the token stream
+					parser.reset();
+				}
+			}
+
+			profilingSimulator.setPredictionMode(
+					predictionStrategy == HqlParseTreeBuilder.PredictionStrategy.SLL ? PredictionMode.SLL : PredictionMode.LL
+			);
+			parser.setErrorHandler( new DefaultErrorStrategy() );
+			parser.addErrorListener( syntaxErrorCounter );
+			parser.selectStatement();
+
+			if ( syntaxErrorCounter.failed ) {
+				log.debugf( "Syntax error(s) profiling HQL : %s", hql );
+			}
+		}
+
+		final Report report = new Report(
+				predictionStrategy,
+				queryCount,
+				syntaxErrorCounter.count,
+				llReparseCount,
+				System.nanoTime() - start,
+				ruleInvocationCounter.counts,
+				profilingSimulator.getDecisionInfo()
+		);
+
+		log.debugf( "HQL grammar profiling complete : %s", report );
+
+		return report;
+	}
+
+	private static DFA[] newDfa(ATN atn) {
+		final DFA[] dfa = new DFA[ atn.getNumberOfDecisions() ];
+		for ( int i = 0; i < dfa.length; i++ ) {
+			dfa[i] = new DFA( atn.getDecisionState( i ), i );
+		}
+		return dfa;
+	}
+
+	/**
+	 * Profile the queries from a corpus file and write the report.
+	 * <p/>
+	 * Arguments : the corpus file (one query per line; blank lines and lines starting
+	 * with {@code #} are ignored), the directory to write the report to and, optionally,
+	 * the {@link HqlParseTreeBuilder.PredictionStrategy} name
+	 */
+	public static void main(String[] args) throws IOException {
+		if ( args.length < 2 ) {
+			throw new IllegalArgumentException( "Expecting arguments : <corpus-file> <report-directory> [prediction-strategy]" );
+		}
+
+		final List<String> corpus = new ArrayList<>();
+		for ( String line : Files.readAllLines( Paths.get( args[0] ), StandardCharsets.UTF_8 ) ) {
+			final String trimmed = line.trim();
+			if ( !trimmed.isEmpty() && !trimmed.startsWith( "#" ) ) {
+				corpus.add( trimmed );
+			}
+		}
+
+		final HqlGrammarProfiler profiler = args.length > 2
+				? new HqlGrammarProfiler( HqlParseTreeBuilder.PredictionStrategy.valueOf( args[2] ) )
+				: new HqlGrammarProfiler();
+
+		final Report report = profiler.profile( corpus );
+		report.write( Paths.get( args[1] ) );
+
+		System.out.println( report );
+	}
+
+	private static class RuleInvocationCounter implements ParseTreeListener {
+		private final long[] counts = new long[ HqlParser.ruleNames.length ];
+
+		@Override
+		public void enterEveryRule(ParserRuleContext ctx) {
+			counts[ ctx.getRuleIndex() ]++;
+		}
+
+		@Override
+		public void exitEveryRule(ParserRuleContext ctx) {
+		}
+
+		@Override
+		public void visitTerminal(TerminalNode node) {
+		}
+
+		@Override
+		public void visitErrorNode(ErrorNode node) {
+		}
+	}
+
+	private static class SyntaxErrorCounter extends BaseErrorListener {
+		private int count;
+		private boolean failed;
+
+		@Override
+		public void syntaxError(
+				Recognizer<?, ?> recognizer,
+				Object offendingSymbol,
+				int line,
+				int charPositionInLine,
+				String msg,
+				RecognitionException e) {
+			if ( !failed ) {
+				failed = true;
+				count++;
+			}
+		}
+	}
+
+	/**
+	 * The outcome of profiling a corpus
+	 */
+	public static class Report {
+		private static final String RULE_HEADER = "rule,invocations,decisions,predictions,llFallbacks,"
+				+ "sllTotalLook,sllMaxLook,llTotalLook,llMaxLook,ambiguities,contextSensitivities,errors,predictionNanos";
+		private static final String DECISION_HEADER = "rule,ruleDecision,decision,predictions,llFallbacks,"
+				+ "sllTotalLook,sllMaxLook,llTotalLook,llMaxLook,ambiguities,contextSensitivities,errors,"
+				+ "sllAtnTransitions,llAtnTransitions,predictionNanos";
+
+		private final HqlParseTreeBuilder.PredictionStrategy predictionStrategy;
+		private final int queryCount;
+		private final int failureCount;
+		private final int llReparseCount;
+		private final long elapsedNanos;
+		private final long[] ruleInvocations;
+		private final DecisionInfo[] decisionInfo;
+
+		private Report(
+				HqlParseTreeBuilder.PredictionStrategy predictionStrategy,
+				int queryCount,
+				int failureCount,
+				int llReparseCount,
+				long elapsedNanos,
+				long[] ruleInvocations,
+				DecisionInfo[] decisionInfo) {
+			this.predictionStrategy = predictionStrategy;
+			this.queryCount = queryCount;
+			this.failureCount = failureCount;
+			this.llReparseCount = llReparseCount;
+			this.elapsedNanos = elapsedNanos;
+			this.ruleInvocations = ruleInvocations;
+			this.decisionInfo = decisionInfo;
+		}
+
+		public HqlParseTreeBuilder.PredictionStrategy getPredictionStrategy() {
+			return predictionStrategy;
+		}
+
+		public int getQueryCount() {
+			return queryCount;
+		}
+
+		/**
+		 * The number of queries which had syntax errors
+		 */
+		public int getFailureCount() {
+			return failureCount;
+		}
+
+		/**
+		 * The number of queries which needed to be re-parsed with LL prediction
+		 * ({@link HqlParseTreeBuilder.PredictionStrategy#TWO_STAGE} only)
+		 */
+		public int getLlReparseCount() {
+			return llReparseCount;
+		}
+
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		/**
+		 * The number of invocations of the given rule
+		 *
+		 * @param ruleIndex One of the {@code HqlParser.RULE_*} constants
+		 */
+		public long getRuleInvocations(int ruleIndex) {
+			return ruleInvocations[ruleIndex];
+		}
+
+		/**
+		 * Antlr's profile of each decision, indexed by decision number
+		 */
+		public DecisionInfo[] getDecisionInfo() {
+			return decisionInfo;
+		}
+
+		/**
+		 * Write the report into the given directory as {@code summary.csv}, {@code rules.csv}
+		 * and {@code decisions.csv}
+		 */
+		public void write(Path directory) {
+			try {
+				Files.createDirectories( directory );
+				try ( Writer writer = Files.newBufferedWriter( directory.resolve( "summary.csv" ), StandardCharsets.UTF_8 ) ) {
+					writeSummary( writer );
+				}
+				try ( Writer writer = Files.newBufferedWriter( directory.resolve( "rules.csv" ), StandardCharsets.UTF_8 ) ) {
+					writeRules( writer );
+				}
+				try ( Writer writer = Files.newBufferedWriter( directory.resolve( "decisions.csv" ), StandardCharsets.UTF_8 ) ) {
+					writeDecisions( writer );
+				}
+			}
+			catch (IOException e) {
+				throw new HibernateException( "Unable to write HQL grammar profile : " + directory, e );
+			}
+		}
+
+		public void writeSummary(Appendable output) throws IOException {
+			output.append( "key,value\n" );
+			output.append( "predictionStrategy," ).append( predictionStrategy.name() ).append( '\n' );
+			output.append( "queries," ).append( Integer.toString( queryCount ) ).append( '\n' );
+			output.append( "failures," ).append( Integer.toString( failureCount ) ).append( '\n' );
+			output.append( "llReparses," ).append( Integer.toString( llReparseCount ) ).append( '\n' );
+			output.append( "elapsedNanos," ).append( Long.toString( elapsedNanos ) ).append( '\n' );
+		}
+
+		/**
+		 * One row per grammar rule, in grammar order, aggregating the rule's decisions
+		 */
+		public void writeRules(Appendable output) throws IOException {
+			output.append( RULE_HEADER ).append( '\n' );
+
+			for ( int ruleIndex = 0; ruleIndex < HqlParser.ruleNames.length; ruleIndex++ ) {
+				final DecisionInfo aggregate = new DecisionInfo( -1 );
+				int decisionCount = 0;
+
+				for ( DecisionInfo decision : decisionInfo ) {
+					if ( ruleIndex( decision ) != ruleIndex ) {
+						continue;
+					}
+
+					decisionCount++;
+					aggregate.invocations += decision.invocations;
+					aggregate.LL_Fallback += decision.LL_Fallback;
+					aggregate.SLL_TotalLook += decision.SLL_TotalLook;
+					aggregate.SLL_MaxLook = Math.max( aggregate.SLL_MaxLook, decision.SLL_MaxLook );
+					aggregate.LL_TotalLook += decision.LL_TotalLook;
+					aggregate.LL_MaxLook = Math.max( aggregate.LL_MaxLook, decision.LL_MaxLook );
+					aggregate.ambiguities.addAll( decision.ambiguities );
+					aggregate.contextSensitivities.addAll( decision.contextSensitivities );
+					aggregate.errors.addAll( decision.errors );
+					aggregate.timeInPrediction += decision.timeInPrediction;
+				}
+
+				output.append( HqlParser.ruleNames[ruleIndex] )
+						.append( ',' ).append( Long.toString( ruleInvocations[ruleIndex] ) )
+						.append( ',' ).append( Integer.toString( decisionCount ) );
+				appendCounts( aggregate, output );
+				output.append( ',' ).append( Long.toString( aggregate.timeInPrediction ) ).append( '\n' );
+			}
+		}
+
+		/**
+		 * One row per decision, in grammar order
+		 */
+		public void writeDecisions(Appendable output) throws IOException {
+			output.append( DECISION_HEADER ).append( '\n' );
+
+			final int[] ruleDecisionCounts = new int[ HqlParser.ruleNames.length ];
+			for ( DecisionInfo decision : decisionInfo ) {
+				final int ruleIndex = ruleIndex( decision );
+
+				output.append( HqlParser.ruleNames[ruleIndex] )
+						.append( ',' ).append( Integer.toString( ruleDecisionCounts[ruleIndex]++ ) )
+						.append( ',' ).append( Integer.toString( decision.decision ) );
+				appendCounts( decision, output );
+				output.append( ',' ).append( Long.toString( decision.SLL_ATNTransitions ) )
+						.append( ',' ).append( Long.toString( decision.LL_ATNTransitions ) )
+						.append( ',' ).append( Long.toString( decision.timeInPrediction ) )
+						.append( '\n' );
+			}
+		}
+
+		private static int ruleIndex(DecisionInfo decision) {
+			return HqlParser._ATN.getDecisionState( decision.decision ).ruleIndex;
+		}
+
+		private static void appendCounts(DecisionInfo decision, Appendable output) throws IOException {
+			output.append( ',' ).append( Long.toString( decision.invocations ) )
+					.append( ',' ).append( Long.toString( decision.LL_Fallback ) )
+					.append( ',' ).append( Long.toString( decision.SLL_TotalLook ) )
+					.append( ',' ).append( Long.toString( decision.SLL_MaxLook ) )
+					.append( ',' ).append( Long.toString( decision.LL_TotalLook ) )
+					.append( ',' ).append( Long.toString( decision.LL_MaxLook ) )
+					.append( ',' ).append( Integer.toString( decision.ambiguities.size() ) )
+					.append( ',' ).append( Integer.toString( decision.contextSensitivities.size() ) )
+					.append( ',' ).append( Integer.toString( decision.errors.size() ) );
+		}
+
+		@Override
+		public String toString() {
+			return "HqlGrammarProfiler.Report("
+					+ "predictionStrategy=" + predictionStrategy
+					+ ", queries=" + queryCount
+					+ ", failures=" + failureCount
+					+ ", llReparses=" + llReparseCount
+					+ ", elapsed=" + ( elapsedNanos / 1_000_000 ) + "ms)";
+		}
+	}
+}
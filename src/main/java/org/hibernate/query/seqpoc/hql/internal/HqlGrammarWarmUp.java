@@ -0,0 +1,366 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.seqpoc.hql.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.hibernate.HibernateException;
+
+import org.jboss.logging.Logger;
+
+import org.antlr.v4.runtime.dfa.DFA;
+
+/**
+ * Warms up the Antlr DFA caches shared by all {@link HqlLexer} and {@link HqlParser}
+ * instances by replaying a corpus of queries (e.g. the application's named queries)
+ * through the parser, typically at boot.
+ * <p/>
+ * Antlr fills these caches lazily through adaptive prediction, so otherwise the
+ * first requests after a deploy pay that cost.
+ * <p/>
+ * The DFA states themselves are not portable between JVMs (they are built from Antlr's
+ * internal ATN configuration sets); instead a snapshot records the (generally much
+ * smaller) set of queries which actually grew the DFA.  Replaying the snapshot on the
+ * next start reproduces the same warmed state.
+ * <p/>
+ * Once warmed, the DFA can be frozen (see {@link FrozenHqlDfa}) so that concurrent
+ * parses no longer contend on it.
+ *
+ * @author Steve Ebersole
+ */
+public class HqlGrammarWarmUp {
+	private static final Logger log = Logger.getLogger( HqlGrammarWarmUp.class );
+
+	private static final int SNAPSHOT_MAGIC = 0x48514C57;
+	private static final int SNAPSHOT_VERSION = 1;
+
+	private final HqlParseTreeBuilder parseTreeBuilder;
+
+	public HqlGrammarWarmUp() {
+		this( HqlParseTreeBuilder.INSTANCE );
+	}
+
+	/**
+	 * @param parseTreeBuilder The builder to parse with.  Should use the same prediction
+	 * strategy as is used at runtime as SLL and LL prediction warm different states
+	 */
+	public HqlGrammarWarmUp(HqlParseTreeBuilder parseTreeBuilder) {
+		this.parseTreeBuilder = parseTreeBuilder;
+	}
+
+	/**
+	 * Parse each query in the corpus
+	 */
+	public Result warmUp(Iterable<String> corpus) {
+		final DfaCoverage initialCoverage = DfaCoverage.capture();
+		final long start = System.nanoTime();
+
+		final List<String> contributingQueries = new ArrayList<>();
+		int queryCount = 0;
+		int failureCount = 0;
+
+		int stateCount = initialCoverage.getTotalStateCount();
+
+		for ( String hql : corpus ) {
+			queryCount++;
+
+			try {
+				parseTreeBuilder.parseSelectStatement( hql );
+			}
+			catch (RuntimeException e) {
+				failureCount++;
+				log.debugf( e, "Unable to parse HQL during grammar warm-up : %s", hql );
+				continue;
+			}
+
+			final int newStateCount = DfaCoverage.countStates();
+			if ( newStateCount > stateCount ) {
+				contributingQueries.add( hql );
+				stateCount = newStateCount;
+			}
+		}
+
+		final Result result = new Result(
+				queryCount,
+				failureCount,
+				System.nanoTime() - start,
+				initialCoverage,
+				DfaCoverage.capture(),
+				contributingQueries
+		);
+
+		log.debugf( "HQL grammar warm-up complete : %s", result );
+
+		return result;
+	}
+
+	/**
+	 * Replay a snapshot previously written via {@link #writeSnapshot}
+	 */
+	public Result warmUp(Path snapshotFile) {
+		return warmUp( readSnapshot( snapshotFile ) );
+	}
+
+	/**
+	 * Write the queries which contributed to the warmed DFA state as a snapshot
+	 */
+	public static void writeSnapshot(Result result, Path snapshotFile) {
+		try ( OutputStream stream = Files.newOutputStream( snapshotFile ) ) {
+			writeSnapshot( result.getContributingQueries(), stream );
+		}
+		catch (IOException e) {
+			throw new HibernateException( "Unable to write HQL grammar warm-up snapshot : " + snapshotFile, e );
+		}
+	}
+
+	public static void writeSnapshot(Collection<String> queries, OutputStream stream) throws IOException {
+		final DataOutputStream output = new DataOutputStream( new BufferedOutputStream( stream ) );
+		output.writeInt( SNAPSHOT_MAGIC );
+		output.writeInt( SNAPSHOT_VERSION );
+		output.writeInt( queries.size() );
+		for ( String query : queries ) {
+			// not `#writeUTF` as that is limited to 64K
+			final byte[] bytes = query.getBytes( StandardCharsets.UTF_8 );
+			output.writeInt( bytes.length );
+			output.write( bytes );
+		}
+		output.flush();
+	}
+
+	public static List<String> readSnapshot(Path snapshotFile) {
+		try ( InputStream stream = Files.newInputStream( snapshotFile ) ) {
+			return readSnapshot( stream );
+		}
+		catch (IOException e) {
+			throw new HibernateException( "Unable to read HQL grammar warm-up snapshot : " + snapshotFile, e );
+		}
+	}
+
+	public static List<String> readSnapshot(InputStream stream) throws IOException {
+		final DataInputStream input = new DataInputStream( new BufferedInputStream( stream ) );
+		if ( input.readInt() != SNAPSHOT_MAGIC ) {
+			throw new HibernateException( "Not an HQL grammar warm-up snapshot" );
+		}
+		final int version = input.readInt();
+		if ( version != SNAPSHOT_VERSION ) {
+			throw new HibernateException( "Unsupported HQL grammar warm-up snapshot version : " + version );
+		}
+
+		final int count = input.readInt();
+		final List<String> queries = new ArrayList<>( count );
+		for ( int i = 0; i < count; i++ ) {
+			final byte[] bytes = new byte[ input.readInt() ];
+			input.readFully( bytes );
+			queries.add( new String( bytes, StandardCharsets.UTF_8 ) );
+		}
+		return queries;
+	}
+
+	/**
+	 * The outcome of a warm-up
+	 */
+	public static class Result {
+		private final int queryCount;
+		private final int failureCount;
+		private final long elapsedNanos;
+		private final DfaCoverage initialCoverage;
+		private final DfaCoverage coverage;
+		private final List<String> contributingQueries;
+
+		private Result(
+				int queryCount,
+				int failureCount,
+				long elapsedNanos,
+				DfaCoverage initialCoverage,
+				DfaCoverage coverage,
+				List<String> contributingQueries) {
+			this.queryCount = queryCount;
+			this.failureCount = failureCount;
+			this.elapsedNanos = elapsedNanos;
+			this.initialCoverage = initialCoverage;
+			this.coverage = coverage;
+			this.contributingQueries = Collections.unmodifiableList( contributingQueries );
+		}
+
+		public int getQueryCount() {
+			return queryCount;
+		}
+
+		public int getFailureCount() {
+			return failureCount;
+		}
+
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		/**
+		 * Coverage before the warm-up
+		 */
+		public DfaCoverage getInitialCoverage() {
+			return initialCoverage;
+		}
+
+		/**
+		 * Coverage after the warm-up
+		 */
+		public DfaCoverage getCoverage() {
+			return coverage;
+		}
+
+		/**
+		 * The queries which added states to the DFA, in order
+		 */
+		public List<String> getContributingQueries() {
+			return contributingQueries;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(
+					Locale.ROOT,
+					"%s queries (%s failed, %s contributing) in %sms; %s -> %s",
+					queryCount,
+					failureCount,
+					contributingQueries.size(),
+					elapsedNanos / 1_000_000,
+					initialCoverage,
+					coverage
+			);
+		}
+	}
+
+	/**
+	 * How much of the lexer and parser decision space has been explored (has
+	 * DFA states) - a decision without states is still "cold"
+	 */
+	public static class DfaCoverage {
+		private final int parserDecisionCount;
+		private final int parserWarmDecisionCount;
+		private final int parserStateCount;
+		private final int lexerDecisionCount;
+		private final int lexerWarmDecisionCount;
+		private final int lexerStateCount;
+
+		private DfaCoverage(DFA[] parserDfas, DFA[] lexerDfas) {
+			this.parserDecisionCount = parserDfas.length;
+			this.lexerDecisionCount = lexerDfas.length;
+
+			int warm = 0;
+			int states = 0;
+			for ( DFA dfa : parserDfas ) {
+				final int size = stateCount( dfa );
+				if ( size > 0 ) {
+					warm++;
+					states += size;
+				}
+			}
+			this.parserWarmDecisionCount = warm;
+			this.parserStateCount = states;
+
+			warm = 0;
+			states = 0;
+			for ( DFA dfa : lexerDfas ) {
+				final int size = stateCount( dfa );
+				if ( size > 0 ) {
+					warm++;
+					states += size;
+				}
+			}
+			this.lexerWarmDecisionCount = warm;
+			this.lexerStateCount = states;
+		}
+
+		/**
+		 * Capture the current coverage of the shared DFA caches
+		 */
+		public static DfaCoverage capture() {
+			return new DfaCoverage( HqlParser._decisionToDFA, HqlLexer._decisionToDFA );
+		}
+
+		private static int countStates() {
+			int count = 0;
+			for ( DFA dfa : HqlParser._decisionToDFA ) {
+				count += stateCount( dfa );
+			}
+			for ( DFA dfa : HqlLexer._decisionToDFA ) {
+				count += stateCount( dfa );
+			}
+			return count;
+		}
+
+		private static int stateCount(DFA dfa) {
+			// Antlr itself guards the states map this way
+			synchronized ( dfa.states ) {
+				return dfa.states.size();
+			}
+		}
+
+		public int getParserDecisionCount() {
+			return parserDecisionCount;
+		}
+
+		public int getParserWarmDecisionCount() {
+			return parserWarmDecisionCount;
+		}
+
+		public int getParserStateCount() {
+			return parserStateCount;
+		}
+
+		public int getLexerDecisionCount() {
+			return lexerDecisionCount;
+		}
+
+		public int getLexerWarmDecisionCount() {
+			return lexerWarmDecisionCount;
+		}
+
+		public int getLexerStateCount() {
+			return lexerStateCount;
+		}
+
+		public int getTotalStateCount() {
+			return parserStateCount + lexerStateCount;
+		}
+
+		/**
+		 * The fraction of parser decisions which have been warmed
+		 */
+		public double getParserDecisionCoverage() {
+			return parserDecisionCount == 0 ? 0 : (double) parserWarmDecisionCount / parserDecisionCount;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(
+					Locale.ROOT,
+					"DfaCoverage(parser: %s/%s decisions, %s states; lexer: %s/%s decisions, %s states)",
+					parserWarmDecisionCount,
+					parserDecisionCount,
+					parserStateCount,
+					lexerWarmDecisionCount,
+					lexerDecisionCount,
+					lexerStateCount
+			);
+		}
+	}
+}
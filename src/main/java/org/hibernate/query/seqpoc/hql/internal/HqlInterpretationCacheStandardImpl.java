@@ -0,0 +1,358 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.seqpoc.hql.internal;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.hibernate.HibernateException;
+import org.hibernate.internal.util.collections.BoundedConcurrentHashMap;
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+import org.hibernate.query.QueryLogger;
+import org.hibernate.query.seqpoc.hql.spi.HqlCompilationMetrics;
+import org.hibernate.query.seqpoc.hql.spi.HqlInterpretationCache;
+import org.hibernate.query.seqpoc.sqm.tree.SqmSelectStatement;
+
+/**
+ * Standard HqlInterpretationCache implementation.
+ * <p/>
+ * Uses a {@link BoundedConcurrentHashMap} with LIRS eviction (the same as
+ * the ORM QueryPlanCache).  LIRS accounts for how often an entry is re-used
+ * rather than just how recently, so a burst of one-off (dynamic) queries
+ * cannot push the frequently used ones out of the cache.
+ * <p/>
+ * Interpretations are "single-flight" : while a query is being interpreted, other
+ * requests for it (synchronous or asynchronous) wait for that interpretation rather
+ * than interpreting the query again.  So a popular query missing from the cache
+ * (e.g. just after start-up) is only interpreted once, however many threads ask
+ * for it at the same time.  An asynchronous interpretation not yet started (still
+ * queued on its executor) is not waited for though : a synchronous request for the
+ * query interprets it itself, completing the asynchronous requests along with it.
+ * Each asynchronous request gets its own future, so one caller cancelling or
+ * completing its future does not affect the others.
+ * <p/>
+ * Queries can also be resolved by their {@link HqlQueryShape shape} (see
+ * {@link #resolveSelectStatement(HqlQueryShape)}), so that queries which only differ
+ * in literal values share one interpretation.  Its literals are then implicit
+ * parameters, the values to bind being those of the caller's shape - which is why
+ * this is only available given the shape, never from the query string alone.
+ *
+ * @author Steve Ebersole
+ */
+public class HqlInterpretationCacheStandardImpl implements HqlInterpretationCache, HqlInterpretationCache.Statistics {
+	/**
+	 * The default maximum number of interpretations to cache
+	 */
+	public static final int DEFAULT_MAX_SIZE = 2048;
+
+	private static final int CONCURRENCY_LEVEL = 20;
+
+	private final MetamodelImplementor domainModel;
+	private final SemanticQueryInterpreter interpreter;
+	private final HqlCompilationMetrics metrics;
+	private final BoundedConcurrentHashMap<String, SqmSelectStatement> interpretationMap;
+	// the interpretations in progress
+	private final ConcurrentHashMap<String, InFlightInterpretation> inFlightMap = new ConcurrentHashMap<>();
+
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder evictionCount = new LongAdder();
+
+	public HqlInterpretationCacheStandardImpl(MetamodelImplementor domainModel) {
+		this( domainModel, DEFAULT_MAX_SIZE );
+	}
+
+	public HqlInterpretationCacheStandardImpl(MetamodelImplementor domainModel, int maxSize) {
+		this( domainModel, maxSize, HqlParseTreeBuilder.INSTANCE );
+	}
+
+	public HqlInterpretationCacheStandardImpl(
+			MetamodelImplementor domainModel,
+			int maxSize,
+			HqlParseTreeBuilder parseTreeBuilder) {
+		this( domainModel, maxSize, parseTreeBuilder, HqlCompilationMetrics.DISABLED );
+	}
+
+	/**
+	 * @param domainModel The domain model queries are interpreted against
+	 * @param maxSize The maximum number of interpretations to cache
+	 * @param parseTreeBuilder The builder parsing the queries
+	 * @param metrics The metrics to report the cache's work, and that of interpreting
+	 * the queries, to
+	 */
+	public HqlInterpretationCacheStandardImpl(
+			MetamodelImplementor domainModel,
+			int maxSize,
+			HqlParseTreeBuilder parseTreeBuilder,
+			HqlCompilationMetrics metrics) {
+		assert domainModel != null;
+		assert parseTreeBuilder != null;
+		assert metrics != null;
+
+		this.domainModel = domainModel;
+		this.interpreter = new SemanticQueryInterpreter( domainModel, parseTreeBuilder, metrics );
+		this.metrics = metrics;
+		this.interpretationMap = new BoundedConcurrentHashMap<>(
+				maxSize,
+				CONCURRENCY_LEVEL,
+				BoundedConcurrentHashMap.Eviction.LIRS,
+				new EvictionListenerImpl()
+		);
+	}
+
+	@Override
+	public MetamodelImplementor getDomainModel() {
+		return domainModel;
+	}
+
+	@Override
+	public SqmSelectStatement resolveSelectStatement(String hql) {
+		return resolveSelectStatement( hql, hql, null );
+	}
+
+	/**
+	 * Resolve the interpretation shared by all queries of the given shape, with the
+	 * shape's literals as implicit parameters.  The values to bind to the
+	 * {@link org.hibernate.query.seqpoc.sqm.tree.expression.SqmImplicitParameter}s
+	 * are the literals of the given shape (see {@link HqlQueryShape#getLiteralValue})
+	 */
+	public SqmSelectStatement resolveSelectStatement(HqlQueryShape queryShape) {
+		return resolveSelectStatement( queryShape.getKey(), queryShape.getHql(), queryShape );
+	}
+
+	private SqmSelectStatement resolveSelectStatement(String key, String hql, HqlQueryShape queryShape) {
+		final HqlCompilationEvents.Event event = HqlCompilationEvents.CACHE_LOOKUP.begin();
+		// shared with the events of interpreting the query, so that its shape is hashed once
+		final HqlCompilationEvents.QueryShapeHash queryShapeHash = event != null && queryShape == null
+				? new HqlCompilationEvents.QueryShapeHash()
+				: null;
+
+		final SqmSelectStatement cached = interpretationMap.get( key );
+		if ( cached != null ) {
+			hitCount.increment();
+			metrics.increment( HqlCompilationMetrics.Counter.CACHE_HITS, 1 );
+			commit( event, hql, queryShape, queryShapeHash, HqlCompilationEvents.CacheOutcome.HIT );
+			return cached;
+		}
+
+		missCount.increment();
+		metrics.increment( HqlCompilationMetrics.Counter.CACHE_MISSES, 1 );
+
+		final InFlightInterpretation interpretation = new InFlightInterpretation();
+		interpretation.claim();
+		final InFlightInterpretation inFlight = inFlightMap.putIfAbsent( key, interpretation );
+		if ( inFlight != null ) {
+			if ( inFlight.claim() ) {
+				// an asynchronous interpretation which has not started yet - rather than waiting
+				// for its executor to get to it, interpret it in this thread
+				final SqmSelectStatement statement = interpret( key, hql, queryShape, queryShapeHash, inFlight );
+				commit( event, hql, queryShape, queryShapeHash, HqlCompilationEvents.CacheOutcome.MISS );
+				return statement;
+			}
+
+			// another thread is interpreting the query - wait for it
+			final SqmSelectStatement statement = join( inFlight );
+			commit( event, hql, queryShape, queryShapeHash, HqlCompilationEvents.CacheOutcome.IN_FLIGHT );
+			return statement;
+		}
+
+		// interpret it in this thread
+		final SqmSelectStatement statement = interpret( key, hql, queryShape, queryShapeHash, interpretation );
+		commit( event, hql, queryShape, queryShapeHash, HqlCompilationEvents.CacheOutcome.MISS );
+		return statement;
+	}
+
+	private static void commit(
+			HqlCompilationEvents.Event event,
+			String hql,
+			HqlQueryShape queryShape,
+			HqlCompilationEvents.QueryShapeHash queryShapeHash,
+			HqlCompilationEvents.CacheOutcome outcome) {
+		if ( event != null && event.end() ) {
+			event.commit(
+					queryShape != null
+							? HqlCompilationEvents.queryShapeHash( queryShape )
+							: queryShapeHash.get( hql ),
+					outcome.name()
+			);
+		}
+	}
+
+	@Override
+	public CompletableFuture<SqmSelectStatement> resolveSelectStatementAsync(String hql, Executor executor) {
+		// only the lookup itself - the interpretation is done asynchronously, recorded as its parse and interpretation events
+		final HqlCompilationEvents.Event event = HqlCompilationEvents.CACHE_LOOKUP.begin();
+		final HqlCompilationEvents.QueryShapeHash queryShapeHash = event != null
+				? new HqlCompilationEvents.QueryShapeHash()
+				: null;
+
+		final SqmSelectStatement cached = interpretationMap.get( hql );
+		if ( cached != null ) {
+			hitCount.increment();
+			metrics.increment( HqlCompilationMetrics.Counter.CACHE_HITS, 1 );
+			commit( event, hql, null, queryShapeHash, HqlCompilationEvents.CacheOutcome.HIT );
+			return CompletableFuture.completedFuture( cached );
+		}
+
+		missCount.increment();
+		metrics.increment( HqlCompilationMetrics.Counter.CACHE_MISSES, 1 );
+
+		final InFlightInterpretation interpretation = new InFlightInterpretation();
+		final InFlightInterpretation inFlight = inFlightMap.putIfAbsent( hql, interpretation );
+		if ( inFlight != null ) {
+			commit( event, hql, null, queryShapeHash, HqlCompilationEvents.CacheOutcome.IN_FLIGHT );
+			return inFlight.thenApply( Function.identity() );
+		}
+		commit( event, hql, null, queryShapeHash, HqlCompilationEvents.CacheOutcome.MISS );
+
+		try {
+			executor.execute(
+					() -> {
+						if ( !interpretation.claim() ) {
+							// already interpreted by a synchronous request
+							return;
+						}
+						try {
+							interpret( hql, hql, null, null, interpretation );
+						}
+						catch (RuntimeException e) {
+							// reported through the future
+						}
+					}
+			);
+		}
+		catch (RuntimeException e) {
+			// e.g. the executor rejected the task
+			if ( interpretation.claim() ) {
+				inFlightMap.remove( hql, interpretation );
+				interpretation.completeExceptionally( e );
+			}
+		}
+
+		return interpretation.thenApply( Function.identity() );
+	}
+
+	/**
+	 * Interpret the query (as a shape, if given), completing the in-flight `interpretation`
+	 * registered for it under `key` - which the caller claimed - with the outcome
+	 */
+	private SqmSelectStatement interpret(
+			String key,
+			String hql,
+			HqlQueryShape queryShape,
+			HqlCompilationEvents.QueryShapeHash queryShapeHash,
+			InFlightInterpretation interpretation) {
+		try {
+			SqmSelectStatement statement = interpretationMap.get( key );
+			if ( statement == null ) {
+				QueryLogger.QUERY_LOGGER.debugf( "Unable to locate HQL interpretation in cache; interpreting - %s", hql );
+
+				statement = queryShape == null
+						? interpreter.interpret( hql, queryShapeHash )
+						: interpreter.interpret( queryShape );
+
+				// cache it before it is no longer in-flight, so later requests find it one way or the other
+				final SqmSelectStatement existing = interpretationMap.putIfAbsent( key, statement );
+				if ( existing != null ) {
+					statement = existing;
+				}
+			}
+
+			interpretation.complete( statement );
+			return statement;
+		}
+		catch (RuntimeException | Error e) {
+			interpretation.completeExceptionally( e );
+			throw e;
+		}
+		finally {
+			inFlightMap.remove( key, interpretation );
+		}
+	}
+
+	private static SqmSelectStatement join(CompletableFuture<SqmSelectStatement> interpretation) {
+		try {
+			return interpretation.join();
+		}
+		catch (CompletionException e) {
+			// rethrow the interpretation's own failure
+			if ( e.getCause() instanceof RuntimeException ) {
+				throw (RuntimeException) e.getCause();
+			}
+			if ( e.getCause() instanceof Error ) {
+				throw (Error) e.getCause();
+			}
+			throw new HibernateException( "Unable to interpret HQL", e.getCause() );
+		}
+	}
+
+	@Override
+	public Statistics getStatistics() {
+		return this;
+	}
+
+	@Override
+	public void clear() {
+		interpretationMap.clear();
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// Statistics
+
+	@Override
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	@Override
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	@Override
+	public long getEvictionCount() {
+		return evictionCount.sum();
+	}
+
+	@Override
+	public int getSize() {
+		return interpretationMap.size();
+	}
+
+	/**
+	 * The interpretation of a query in progress, or about to be : the future all requests
+	 * for the query wait on.  Interpreted by whoever {@link #claim claims} it first - the
+	 * request registering it, or (for an asynchronous request) either its task or a
+	 * synchronous request for the same query
+	 */
+	private static class InFlightInterpretation extends CompletableFuture<SqmSelectStatement> {
+		private final AtomicBoolean claimed = new AtomicBoolean();
+
+		private boolean claim() {
+			return claimed.compareAndSet( false, true );
+		}
+	}
+
+	private class EvictionListenerImpl implements BoundedConcurrentHashMap.EvictionListener<String, SqmSelectStatement> {
+		@Override
+		public void onEntryEviction(Map<String, SqmSelectStatement> evicted) {
+			evictionCount.add( evicted.size() );
+			metrics.increment( HqlCompilationMetrics.Counter.CACHE_EVICTIONS, evicted.size() );
+		}
+
+		@Override
+		public void onEntryChosenForEviction(SqmSelectStatement internalCacheEntry) {
+		}
+	}
+}
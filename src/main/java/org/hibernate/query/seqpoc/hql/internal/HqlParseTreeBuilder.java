@@ -6,11 +6,34 @@
  */
 package org.hibernate.query.seqpoc.hql.internal;
 
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.hibernate.query.QueryException;
+import org.hibernate.query.SyntaxException;
+import org.hibernate.query.seqpoc.hql.spi.HqlCompilationMetrics;
+import org.hibernate.query.seqpoc.sqm.tree.SqmSelectStatement;
+
 import org.jboss.logging.Logger;
 
+import org.antlr.v4.runtime.ANTLRErrorStrategy;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
 import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.TerminalNode;
 
 /**
  * Leverages Antlr to build a parse tree from an HQL query
@@ -25,16 +48,488 @@ public class HqlParseTreeBuilder {
 	 */
 	public static final HqlParseTreeBuilder INSTANCE = new HqlParseTreeBuilder();
 
+	/**
+	 * How Antlr's adaptive prediction should be performed while parsing
+	 */
+	public enum PredictionStrategy {
+		/**
+		 * Full LL prediction with standard error reporting - Antlr's default
+		 */
+		LL,
+
+		/**
+		 * SLL prediction only.  Faster than LL, but can report syntax errors
+		 * for a (small) set of valid inputs which need full-context prediction
+		 */
+		SLL,
+
+		/**
+		 * Parse with SLL prediction, bailing out on the first error.  Only if
+		 * that fails is the query re-parsed using full LL prediction with
+		 * standard error reporting.  For valid queries this gives the same
+		 * parse tree as {@link #LL}, generally much faster
+		 */
+		TWO_STAGE
+	}
+
+	/**
+	 * How the query is tokenized
+	 */
+	public enum LexerStrategy {
+		/**
+		 * The generated {@link HqlLexer}
+		 */
+		GENERATED {
+			@Override
+			public HqlLexer createLexer(CharStream input) {
+				return FrozenHqlDfa.install( new HqlLexer( input ) );
+			}
+		},
+
+		/**
+		 * {@link PerfectHashHqlLexer} - words are scanned directly and keywords
+		 * recognized via a perfect-hash table
+		 */
+		PERFECT_HASH_KEYWORDS {
+			@Override
+			public HqlLexer createLexer(CharStream input) {
+				return FrozenHqlDfa.install( new PerfectHashHqlLexer( input ) );
+			}
+		};
+
+		public abstract HqlLexer createLexer(CharStream input);
+	}
+
+	/**
+	 * How syntax errors are handled
+	 */
+	public enum SyntaxErrorHandling {
+		/**
+		 * Report the error to the console and recover from it, as far as possible
+		 * building the parse tree anyway - Antlr's default
+		 */
+		RECOVER,
+
+		/**
+		 * Fail on the first syntax error with a {@link SyntaxException}
+		 */
+		FAIL
+	}
+
+	private final PredictionStrategy predictionStrategy;
+	private final LexerStrategy lexerStrategy;
+	private final SyntaxErrorHandling syntaxErrorHandling;
+	private final HqlParserPool parserPool;
+
+	private final LongAdder llFallbackCount = new LongAdder();
+
+	public HqlParseTreeBuilder() {
+		this( PredictionStrategy.LL );
+	}
+
+	public HqlParseTreeBuilder(PredictionStrategy predictionStrategy) {
+		this( predictionStrategy, HqlParserPool.DEFAULT_MAX_IDLE );
+	}
+
+	/**
+	 * @param predictionStrategy The prediction strategy to use
+	 * @param maxPooledParsers The maximum number of idle parsers to keep for re-use.  See {@link HqlParserPool}
+	 */
+	public HqlParseTreeBuilder(PredictionStrategy predictionStrategy, int maxPooledParsers) {
+		this( predictionStrategy, LexerStrategy.GENERATED, maxPooledParsers );
+	}
+
+	/**
+	 * @param predictionStrategy The prediction strategy to use
+	 * @param lexerStrategy The lexer to use
+	 * @param maxPooledParsers The maximum number of idle parsers to keep for re-use.  See {@link HqlParserPool}
+	 */
+	public HqlParseTreeBuilder(PredictionStrategy predictionStrategy, LexerStrategy lexerStrategy, int maxPooledParsers) {
+		this( predictionStrategy, lexerStrategy, maxPooledParsers, SyntaxErrorHandling.RECOVER );
+	}
+
+	/**
+	 * @param predictionStrategy The prediction strategy to use
+	 * @param lexerStrategy The lexer to use
+	 * @param maxPooledParsers The maximum number of idle parsers to keep for re-use.  See {@link HqlParserPool}
+	 * @param syntaxErrorHandling How syntax errors are handled
+	 */
+	public HqlParseTreeBuilder(
+			PredictionStrategy predictionStrategy,
+			LexerStrategy lexerStrategy,
+			int maxPooledParsers,
+			SyntaxErrorHandling syntaxErrorHandling) {
+		this.predictionStrategy = predictionStrategy;
+		this.lexerStrategy = lexerStrategy;
+		this.syntaxErrorHandling = syntaxErrorHandling;
+		this.parserPool = new HqlParserPool( maxPooledParsers, lexerStrategy );
+	}
+
+	public PredictionStrategy getPredictionStrategy() {
+		return predictionStrategy;
+	}
+
+	public LexerStrategy getLexerStrategy() {
+		return lexerStrategy;
+	}
+
+	public SyntaxErrorHandling getSyntaxErrorHandling() {
+		return syntaxErrorHandling;
+	}
+
+	/**
+	 * The number of times {@link PredictionStrategy#TWO_STAGE} parsing needed
+	 * to fall back to full LL prediction
+	 */
+	public long getLlFallbackCount() {
+		return llFallbackCount.sum();
+	}
+
+	/**
+	 * Build the parser for the given HQL.  The caller is responsible for
+	 * starting the parse.
+	 * <p/>
+	 * NOTE : {@link PredictionStrategy#TWO_STAGE} requires control over the
+	 * parse; parsers returned from here use {@link PredictionStrategy#LL} in
+	 * that case.  Use {@link #parseSelectStatement} instead
+	 */
 	public HqlParser parseHql(String hql) {
 		// Build the lexer
-		HqlLexer hqlLexer = new HqlLexer( CharStreams.fromString( hql ) );
+		HqlLexer hqlLexer = lexerStrategy.createLexer( CharStreams.fromString( hql ) );
 
 		// Build the parser...
-		return new HqlParser( new CommonTokenStream( hqlLexer ) ) {
-			@Override
-			protected void logUseOfReservedWordAsIdentifier(Token token) {
-				log.debugf( "Encountered use of reserved word as identifier : " + token.getText() );
+		final HqlParser hqlParser = buildParser( new CommonTokenStream( hqlLexer ) );
+
+		if ( syntaxErrorHandling == SyntaxErrorHandling.FAIL ) {
+			applyFailingErrorListener( hqlLexer );
+			applyFailingErrorListener( hqlParser );
+		}
+
+		if ( predictionStrategy == PredictionStrategy.SLL ) {
+			hqlParser.getInterpreter().setPredictionMode( PredictionMode.SLL );
+		}
+
+		return hqlParser;
+	}
+
+	static HqlParser buildParser(TokenStream tokenStream) {
+		return FrozenHqlDfa.install(
+				new HqlParser( tokenStream ) {
+					@Override
+					protected void logUseOfReservedWordAsIdentifier(Token token) {
+						log.debugf( "Encountered use of reserved word as identifier : " + token.getText() );
+					}
+				}
+		);
+	}
+
+	/**
+	 * Parse the given HQL as a select statement according to the
+	 * {@link #getPredictionStrategy() prediction strategy}.
+	 * <p/>
+	 * The lexer and parser used here are pooled and re-used - see {@link HqlParserPool}.
+	 * <p/>
+	 * Recorded as {@link HqlCompilationEvents#PARSE} events
+	 */
+	public HqlParser.SelectStatementContext parseSelectStatement(String hql) {
+		return parseSelectStatement( hql, null, HqlCompilationMetrics.DISABLED );
+	}
+
+	/**
+	 * Parse the given HQL as a select statement, as {@link #parseSelectStatement(String)},
+	 * on behalf of an interpreter.
+	 * <p/>
+	 * The given hash of the query's shape, if any, is computed from the tokens of the
+	 * query while they are at hand, for the events of the later phases of compiling it.
+	 * When the given metrics are enabled the query is tokenized up front, rather than as
+	 * the parser needs the tokens, to time the two separately.
+	 */
+	public HqlParser.SelectStatementContext parseSelectStatement(
+			String hql,
+			HqlCompilationEvents.QueryShapeHash queryShapeHash,
+			HqlCompilationMetrics metrics) {
+		final HqlCompilationEvents.Event event = HqlCompilationEvents.PARSE.begin();
+
+		try ( HqlParserPool.PooledHqlParser pooledParser = acquire( hql ) ) {
+			final HqlParser.SelectStatementContext parseTree;
+			if ( metrics.isEnabled() ) {
+				parseTree = parseSelectStatementTimed( pooledParser, hql, metrics );
 			}
-		};
+			else {
+				parseTree = parseSelectStatement(
+						pooledParser.getParser(),
+						pooledParser.getStandardErrorStrategy(),
+						pooledParser.getBailErrorStrategy(),
+						hql,
+						null
+				);
+			}
+
+			if ( event != null && event.end() ) {
+				event.commit(
+						getQueryShapeHash(
+								pooledParser,
+								queryShapeHash != null ? queryShapeHash : new HqlCompilationEvents.QueryShapeHash()
+						)
+				);
+			}
+			else if ( queryShapeHash != null ) {
+				getQueryShapeHash( pooledParser, queryShapeHash );
+			}
+
+			return parseTree;
+		}
+	}
+
+	private HqlParserPool.PooledHqlParser acquire(String hql) {
+		final HqlParserPool.PooledHqlParser pooledParser = parserPool.acquire( hql );
+		if ( syntaxErrorHandling == SyntaxErrorHandling.FAIL ) {
+			// the lexer reports (and skips) unrecognized characters on its own
+			applyFailingErrorListener( pooledParser.getLexer() );
+		}
+		return pooledParser;
+	}
+
+	private static int getQueryShapeHash(
+			HqlParserPool.PooledHqlParser pooledParser,
+			HqlCompilationEvents.QueryShapeHash queryShapeHash) {
+		return queryShapeHash.get(
+				() -> {
+					// the parser does not necessarily read the tokens following the statement
+					pooledParser.getTokenStream().fill();
+					return pooledParser.getTokenStream().getTokens();
+				}
+		);
+	}
+
+	private HqlParser.SelectStatementContext parseSelectStatementTimed(
+			HqlParserPool.PooledHqlParser pooledParser,
+			String hql,
+			HqlCompilationMetrics metrics) {
+		final long lexStart = System.nanoTime();
+		pooledParser.getTokenStream().fill();
+		final long parseStart = System.nanoTime();
+		metrics.phaseCompleted( HqlCompilationMetrics.Phase.LEX, parseStart - lexStart );
+
+		final HqlParser.SelectStatementContext parseTree = parseSelectStatement(
+				pooledParser.getParser(),
+				pooledParser.getStandardErrorStrategy(),
+				pooledParser.getBailErrorStrategy(),
+				hql,
+				null
+		);
+		metrics.phaseCompleted( HqlCompilationMetrics.Phase.PARSE, System.nanoTime() - parseStart );
+
+		return parseTree;
+	}
+
+	/**
+	 * Parse the given HQL as a select statement and interpret it using the given
+	 * interpreter in a single pass - the SQM is built by a {@link SqmTreeCreationListener}
+	 * as the parser recognizes each rule, without building the parse tree.
+	 * <p/>
+	 * Produces the same SQM as {@link #parseSelectStatement} followed by
+	 * {@link SemanticQueryBuilder}, without the intermediate parse tree
+	 */
+	public SqmSelectStatement buildSelectStatement(String hql, SemanticQueryInterpreter interpreter) {
+		final HqlCompilationMetrics metrics = interpreter.getMetrics();
+		final long start = metrics.isEnabled() ? System.nanoTime() : 0L;
+
+		final SqmSelectStatement selectStatement;
+		try ( HqlParserPool.PooledHqlParser pooledParser = acquire( hql ) ) {
+			final HqlParser hqlParser = pooledParser.getParser();
+			final SqmTreeCreationListener sqmTreeCreationListener = new SqmTreeCreationListener(
+					interpreter,
+					pooledParser.getTokenStream()
+			);
+			final FailFastParseListener parseListener = new FailFastParseListener( sqmTreeCreationListener );
+
+			hqlParser.setBuildParseTree( false );
+			hqlParser.addParseListener( parseListener );
+			try {
+				parseSelectStatement(
+						hqlParser,
+						pooledParser.getStandardErrorStrategy(),
+						pooledParser.getBailErrorStrategy(),
+						hql,
+						parseListener
+				);
+			}
+			finally {
+				hqlParser.removeParseListener( parseListener );
+				hqlParser.setBuildParseTree( true );
+			}
+
+			selectStatement = sqmTreeCreationListener.getSelectStatement();
+			if ( selectStatement == null ) {
+				throw new QueryException( "Unable to build SQM due to syntax error(s) : " + hql );
+			}
+		}
+
+		if ( metrics.isEnabled() ) {
+			// tokenizing, parsing and interpreting are interleaved, so only timed as a whole
+			metrics.phaseCompleted( HqlCompilationMetrics.Phase.INTERPRETATION, System.nanoTime() - start );
+			metrics.increment( HqlCompilationMetrics.Counter.SINGLE_PASS_INTERPRETATIONS, 1 );
+		}
+
+		return selectStatement;
+	}
+
+	private HqlParser.SelectStatementContext parseSelectStatement(
+			HqlParser hqlParser,
+			ANTLRErrorStrategy standardErrorStrategy,
+			ANTLRErrorStrategy bailErrorStrategy,
+			String hql,
+			FailFastParseListener parseListener) {
+		if ( predictionStrategy != PredictionStrategy.TWO_STAGE ) {
+			applyStandardErrorHandling( hqlParser, standardErrorStrategy );
+			hqlParser.getInterpreter().setPredictionMode(
+					predictionStrategy == PredictionStrategy.SLL ? PredictionMode.SLL : PredictionMode.LL
+			);
+			return hqlParser.selectStatement();
+		}
+
+		hqlParser.getInterpreter().setPredictionMode( PredictionMode.SLL );
+		hqlParser.removeErrorListeners();
+		hqlParser.setErrorHandler( bailErrorStrategy );
+		bailErrorStrategy.reset( hqlParser );
+
+		try {
+			return hqlParser.selectStatement();
+		}
+		catch (ParseCancellationException e) {
+			llFallbackCount.increment();
+			log.debugf( "SLL parse failed, falling back to LL prediction : %s", hql );
+
+			applyStandardErrorHandling( hqlParser, standardErrorStrategy );
+			hqlParser.getInterpreter().setPredictionMode( PredictionMode.LL );
+
+			// rewinds the token stream
+			hqlParser.reset();
+			if ( parseListener != null ) {
+				parseListener.reset();
+			}
+
+			return hqlParser.selectStatement();
+		}
+	}
+
+	private void applyStandardErrorHandling(HqlParser hqlParser, ANTLRErrorStrategy standardErrorStrategy) {
+		hqlParser.removeErrorListeners();
+		hqlParser.addErrorListener(
+				syntaxErrorHandling == SyntaxErrorHandling.FAIL
+						? FailingErrorListener.INSTANCE
+						: ConsoleErrorListener.INSTANCE
+		);
+		hqlParser.setErrorHandler( standardErrorStrategy );
+		standardErrorStrategy.reset( hqlParser );
+	}
+
+	private static void applyFailingErrorListener(Recognizer<?, ?> recognizer) {
+		recognizer.removeErrorListeners();
+		recognizer.addErrorListener( FailingErrorListener.INSTANCE );
+	}
+
+	/**
+	 * Throws a {@link SyntaxException} for the first syntax error, before the error
+	 * strategy attempts to recover from it
+	 */
+	private static class FailingErrorListener extends BaseErrorListener {
+		private static final FailingErrorListener INSTANCE = new FailingErrorListener();
+
+		@Override
+		public void syntaxError(
+				Recognizer<?, ?> recognizer,
+				Object offendingSymbol,
+				int line,
+				int charPositionInLine,
+				String msg,
+				RecognitionException e) {
+			throw new SyntaxException(
+					String.format(
+							Locale.ROOT,
+							"line %s:%s %s : %s",
+							line,
+							charPositionInLine,
+							msg,
+							getHql( recognizer )
+					),
+					e
+			);
+		}
+
+		private static String getHql(Recognizer<?, ?> recognizer) {
+			if ( recognizer instanceof Lexer ) {
+				return ( (Lexer) recognizer ).getInputStream().toString();
+			}
+			return ( (Parser) recognizer ).getInputStream().getTokenSource().getInputStream().toString();
+		}
+	}
+
+	/**
+	 * Antlr calls {@link org.antlr.v4.runtime.Parser#exitRule} from a {@code finally} block
+	 * in each rule method, so once a listener (or the bail-out error strategy) throws, the
+	 * exit events for all enclosing rules are still fired while the exception propagates.
+	 * Any of those may then fail as well and mask the original exception.  This guard stops
+	 * notifying the listener once the parse has failed, including on syntax errors.
+	 */
+	private static class FailFastParseListener implements ParseTreeListener {
+		private final SqmTreeCreationListener delegate;
+		private boolean failed;
+
+		private FailFastParseListener(SqmTreeCreationListener delegate) {
+			this.delegate = delegate;
+		}
+
+		private void reset() {
+			failed = false;
+			delegate.reset();
+		}
+
+		@Override
+		public void enterEveryRule(ParserRuleContext ctx) {
+			if ( failed ) {
+				return;
+			}
+
+			try {
+				delegate.enterEveryRule( ctx );
+				ctx.enterRule( delegate );
+			}
+			catch (RuntimeException e) {
+				failed = true;
+				throw e;
+			}
+		}
+
+		@Override
+		public void exitEveryRule(ParserRuleContext ctx) {
+			if ( failed ) {
+				return;
+			}
+
+			if ( ctx.exception != null ) {
+				// syntax error - the SQM cannot be completed
+				failed = true;
+				return;
+			}
+
+			try {
+				ctx.exitRule( delegate );
+				delegate.exitEveryRule( ctx );
+			}
+			catch (RuntimeException e) {
+				failed = true;
+				throw e;
+			}
+		}
+
+		@Override
+		public void visitTerminal(TerminalNode node) {
+		}
+
+		@Override
+		public void visitErrorNode(ErrorNode node) {
+		}
 	}
 }
@@ -0,0 +1,149 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.seqpoc.hql.internal;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.antlr.v4.runtime.ANTLRErrorStrategy;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+
+/**
+ * Pool of re-usable lexer / token-stream / parser combinations.
+ * <p/>
+ * Antlr's lexer, token stream and parser each hold buffers and ATN simulator
+ * state which can be reset and re-used rather than re-allocated for every query.
+ * <p/>
+ * The pool is a bounded, lock-free stack rather than a ThreadLocal so that it
+ * works the same with a small number of long-lived platform threads as with large
+ * numbers of short-lived virtual threads.  When the pool is empty a new instance is
+ * created; when it is full a released instance is simply dropped.
+ *
+ * @author Steve Ebersole
+ */
+public class HqlParserPool {
+	/**
+	 * The default maximum number of idle (pooled) parsers
+	 */
+	public static final int DEFAULT_MAX_IDLE = Runtime.getRuntime().availableProcessors() * 2;
+
+	private final int maxIdle;
+	private final HqlParseTreeBuilder.LexerStrategy lexerStrategy;
+
+	private final ConcurrentLinkedDeque<PooledHqlParser> idleParsers = new ConcurrentLinkedDeque<>();
+	private final AtomicInteger idleCount = new AtomicInteger();
+
+	public HqlParserPool() {
+		this( DEFAULT_MAX_IDLE );
+	}
+
+	public HqlParserPool(int maxIdle) {
+		this( maxIdle, HqlParseTreeBuilder.LexerStrategy.GENERATED );
+	}
+
+	public HqlParserPool(int maxIdle, HqlParseTreeBuilder.LexerStrategy lexerStrategy) {
+		this.maxIdle = maxIdle;
+		this.lexerStrategy = lexerStrategy;
+	}
+
+	/**
+	 * Obtain a parser prepared to parse the given HQL.  The parser must be
+	 * released (closed) after use, generally via try-with-resources
+	 */
+	public PooledHqlParser acquire(String hql) {
+		PooledHqlParser pooled = idleParsers.pollFirst();
+		if ( pooled == null ) {
+			pooled = new PooledHqlParser();
+		}
+		else {
+			idleCount.decrementAndGet();
+		}
+
+		pooled.prepare( hql );
+		return pooled;
+	}
+
+	private void release(PooledHqlParser pooled) {
+		pooled.clear();
+
+		if ( idleCount.incrementAndGet() > maxIdle ) {
+			idleCount.decrementAndGet();
+			return;
+		}
+
+		idleParsers.offerFirst( pooled );
+	}
+
+	/**
+	 * The number of parsers currently available in the pool
+	 */
+	public int getIdleCount() {
+		return idleCount.get();
+	}
+
+	public class PooledHqlParser implements AutoCloseable {
+		private final HqlLexer lexer;
+		private final CommonTokenStream tokenStream;
+		private final HqlParser parser;
+
+		private final ANTLRErrorStrategy standardErrorStrategy = new DefaultErrorStrategy();
+		private final ANTLRErrorStrategy bailErrorStrategy = new BailErrorStrategy();
+
+		private PooledHqlParser() {
+			this.lexer = lexerStrategy.createLexer( null );
+			this.tokenStream = new CommonTokenStream( lexer );
+			this.parser = HqlParseTreeBuilder.buildParser( tokenStream );
+		}
+
+		private void prepare(String hql) {
+			// the DFA may have been frozen since this parser was created
+			FrozenHqlDfa.install( lexer );
+			FrozenHqlDfa.install( parser );
+
+			lexer.setInputStream( CharStreams.fromString( hql ) );
+			// clears the token buffer, keeping its capacity
+			tokenStream.setTokenSource( lexer );
+			// resets the parser, including its error handler
+			parser.setTokenStream( tokenStream );
+		}
+
+		private void clear() {
+			// release the references to the query text and its tokens
+			lexer.setInputStream( null );
+			tokenStream.setTokenSource( lexer );
+			parser.removeParseListeners();
+		}
+
+		public HqlLexer getLexer() {
+			return lexer;
+		}
+
+		public CommonTokenStream getTokenStream() {
+			return tokenStream;
+		}
+
+		public HqlParser getParser() {
+			return parser;
+		}
+
+		public ANTLRErrorStrategy getStandardErrorStrategy() {
+			return standardErrorStrategy;
+		}
+
+		public ANTLRErrorStrategy getBailErrorStrategy() {
+			return bailErrorStrategy;
+		}
+
+		@Override
+		public void close() {
+			release( this );
+		}
+	}
+}
@@ -0,0 +1,263 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.seqpoc.hql.internal;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.Interval;
+
+/**
+ * The "shape" of an HQL query : its tokens with the literal values stripped.
+ * Queries built by concatenating values into the query text, e.g.
+ * {@code ... where n.name.familyName = 'Smith'}, share a shape however many distinct
+ * values are used.  Interpreted with the literals as implicit parameters (see
+ * {@link SemanticQueryInterpreter#interpret(HqlQueryShape)}), all queries of one shape
+ * can share one SQM, binding the literal values of each query.
+ * <p/>
+ * The shape is computed by just tokenizing the query, which is much cheaper than
+ * parsing it.  Without the parser there is no context though, so literals which
+ * are syntactically not an expression (and so could not be a parameter) are recognized
+ * by the tokens preceding them, e.g. the text of a date literal - {@code {d '2019-01-01'}},
+ * the target of a cast - {@code cast(e.x as 10)}, or the label of a positional
+ * parameter - {@code ?1}.  Those, along with hex and octal literals and the characters
+ * of {@code trim} and {@code like ... escape}, remain part of the shape.
+ *
+ * @author Steve Ebersole
+ */
+public class HqlQueryShape {
+	// marks a stripped literal in the key - not part of any token
+	private static final char LITERAL_MARKER = '\u0000';
+
+	/**
+	 * Compute the shape of the given HQL
+	 */
+	public static HqlQueryShape of(String hql) {
+		final HqlLexer lexer = HqlParseTreeBuilder.LexerStrategy.PERFECT_HASH_KEYWORDS.createLexer(
+				CharStreams.fromString( hql )
+		);
+		// errors are reported by the parser
+		lexer.removeErrorListeners();
+
+		final List<Token> literals = new ArrayList<>();
+		final String key = buildKey( lexer, hql.length(), literals );
+		return new HqlQueryShape( hql, key, literals );
+	}
+
+	/**
+	 * The {@link #getKey() key} of the shape of a query already tokenized into the
+	 * given tokens (e.g. those buffered by the parser's token stream), without
+	 * tokenizing it again
+	 */
+	public static String keyOf(List<? extends Token> tokens) {
+		return buildKey( new ListTokenSource( tokens ), tokens.size() * 8, null );
+	}
+
+	private static String buildKey(TokenSource tokenSource, int capacity, List<Token> literals) {
+		final StringBuilder key = new StringBuilder( capacity );
+
+		int previousType = Token.INVALID_TYPE;
+		int previousPreviousType = Token.INVALID_TYPE;
+
+		Token token;
+		while ( ( token = tokenSource.nextToken() ).getType() != Token.EOF ) {
+			final int type = token.getType();
+
+			if ( key.length() > 0 ) {
+				key.append( ' ' );
+			}
+
+			if ( isParameterizable( type, previousType, previousPreviousType ) ) {
+				// the type is part of the shape : `1` and `'1'` are different shapes
+				key.append( LITERAL_MARKER ).append( type );
+				if ( literals != null ) {
+					literals.add( token );
+				}
+			}
+			else if ( isLiteral( type ) ) {
+				// the (unescaped) token text is not enough to tell a literal from other tokens
+				key.append( token.getInputStream().getText( Interval.of( token.getStartIndex(), token.getStopIndex() ) ) );
+			}
+			else {
+				key.append( token.getText() );
+			}
+
+			previousPreviousType = previousType;
+			previousType = type;
+		}
+
+		return key.toString();
+	}
+
+	private static boolean isParameterizable(int type, int previousType, int previousPreviousType) {
+		switch ( type ) {
+			case HqlLexer.STRING_LITERAL:
+			case HqlLexer.CHARACTER_LITERAL:
+			case HqlLexer.INTEGER_LITERAL:
+			case HqlLexer.LONG_LITERAL:
+			case HqlLexer.BIG_INTEGER_LITERAL:
+			case HqlLexer.FLOAT_LITERAL:
+			case HqlLexer.DOUBLE_LITERAL:
+			case HqlLexer.BIG_DECIMAL_LITERAL: {
+				break;
+			}
+			default: {
+				return false;
+			}
+		}
+
+		switch ( previousType ) {
+			case HqlLexer.QUESTION_MARK:
+			case HqlLexer.TIMESTAMP_ESCAPE_START:
+			case HqlLexer.DATE_ESCAPE_START:
+			case HqlLexer.TIME_ESCAPE_START:
+			case HqlLexer.AS:
+			case HqlLexer.ESCAPE:
+			case HqlLexer.LEADING:
+			case HqlLexer.TRAILING:
+			case HqlLexer.BOTH: {
+				return false;
+			}
+			case HqlLexer.LEFT_PAREN: {
+				// the name of a `function(...)` or the character of a `trim(...)`
+				return previousPreviousType != HqlLexer.FUNCTION && previousPreviousType != HqlLexer.TRIM;
+			}
+			default: {
+				return true;
+			}
+		}
+	}
+
+	private static boolean isLiteral(int type) {
+		switch ( type ) {
+			case HqlLexer.STRING_LITERAL:
+			case HqlLexer.CHARACTER_LITERAL:
+			case HqlLexer.INTEGER_LITERAL:
+			case HqlLexer.LONG_LITERAL:
+			case HqlLexer.BIG_INTEGER_LITERAL:
+			case HqlLexer.HEX_LITERAL:
+			case HqlLexer.OCTAL_LITERAL:
+			case HqlLexer.FLOAT_LITERAL:
+			case HqlLexer.DOUBLE_LITERAL:
+			case HqlLexer.BIG_DECIMAL_LITERAL: {
+				return true;
+			}
+			default: {
+				return false;
+			}
+		}
+	}
+
+	private final String hql;
+	private final String key;
+	private final List<Token> literals;
+	private final int[] literalStartIndexes;
+
+	private HqlQueryShape(String hql, String key, List<Token> literals) {
+		this.hql = hql;
+		this.key = key;
+		this.literals = Collections.unmodifiableList( literals );
+
+		this.literalStartIndexes = new int[ literals.size() ];
+		for ( int i = 0; i < literalStartIndexes.length; i++ ) {
+			literalStartIndexes[i] = literals.get( i ).getStartIndex();
+		}
+	}
+
+	/**
+	 * The query this is the shape of
+	 */
+	public String getHql() {
+		return hql;
+	}
+
+	/**
+	 * The shape itself - equal for queries differing only in (stripped) literal
+	 * values.  Suitable as a cache key
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * The number of stripped literals
+	 */
+	public int getLiteralCount() {
+		return literals.size();
+	}
+
+	/**
+	 * The stripped literal tokens, in order
+	 */
+	public List<Token> getLiterals() {
+		return literals;
+	}
+
+	/**
+	 * The value of the stripped literal at the given position - the value to bind to
+	 * the {@link org.hibernate.query.seqpoc.sqm.tree.expression.SqmImplicitParameter}
+	 * with that position.  Integer literals too large for an Integer are returned as
+	 * Long or BigInteger
+	 */
+	public Object getLiteralValue(int position) {
+		final Token literal = literals.get( position );
+		final String text = literal.getText();
+		switch ( literal.getType() ) {
+			case HqlLexer.INTEGER_LITERAL: {
+				final BigInteger value = new BigInteger( text );
+				if ( value.bitLength() < Integer.SIZE ) {
+					return value.intValue();
+				}
+				if ( value.bitLength() < Long.SIZE ) {
+					return value.longValue();
+				}
+				return value;
+			}
+			case HqlLexer.LONG_LITERAL: {
+				return Long.valueOf( text.substring( 0, text.length() - 1 ) );
+			}
+			case HqlLexer.BIG_INTEGER_LITERAL: {
+				return new BigInteger( text.substring( 0, text.length() - 2 ) );
+			}
+			case HqlLexer.FLOAT_LITERAL: {
+				return Float.valueOf( text );
+			}
+			case HqlLexer.DOUBLE_LITERAL: {
+				return Double.valueOf( text );
+			}
+			case HqlLexer.BIG_DECIMAL_LITERAL: {
+				return new BigDecimal( text.substring( 0, text.length() - 2 ) );
+			}
+			default: {
+				// string and character literals - the lexer already unquoted the text
+				return text;
+			}
+		}
+	}
+
+	/**
+	 * The position of the stripped literal starting at the given index of the query,
+	 * or -1 if no stripped literal starts there
+	 */
+	public int getLiteralPosition(int startIndex) {
+		final int position = Arrays.binarySearch( literalStartIndexes, startIndex );
+		return position < 0 ? -1 : position;
+	}
+
+	@Override
+	public String toString() {
+		return "HqlQueryShape(" + key.replace( LITERAL_MARKER, '?' ) + ")";
+	}
+}
@@ -0,0 +1,247 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.seqpoc.hql.internal;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.hibernate.boot.registry.classloading.spi.ClassLoaderService;
+import org.hibernate.internal.util.collections.BoundedConcurrentHashMap;
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+import org.hibernate.query.QueryLogger;
+import org.hibernate.query.seqpoc.sqm.tree.expression.SqmLiteral;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.spi.TypeConfiguration;
+
+/**
+ * Resolves fully-qualified Java constant references - enum values (e.g.
+ * `org.hibernate.test.Sex.MALE`) and static (final) fields (e.g. `MyClass.SOME_FIELD`)
+ * - used in HQL.
+ * <p/>
+ * Rather than probing `org`, `org.hibernate`, ... one by one, the reference is split
+ * into a class-name and a member-name and only the candidate class-names are looked
+ * up (the class-name itself plus the nested-class variants, so at most one per path
+ * segment).  Every class lookup - successful or not - is cached, and so are the
+ * members of each class found and the outcome for each complete reference.  So a
+ * reference costs one map lookup once resolved, and {@link Class#forName} is called
+ * at most once per candidate class-name.
+ * <p/>
+ * Only class-names following the Java naming conventions - lower-case package names,
+ * capitalized class names - are looked up, and classes are loaded without being
+ * initialized.  A constant is only read (initializing its class) once a reference
+ * names it, so referring to some other member - or to something which is not a Java
+ * constant at all - never runs the static initializer of a class.
+ * <p/>
+ * An index is owned by a {@link SemanticQueryInterpreter} and loads classes through the
+ * domain model's {@link ClassLoaderService}.  The caches are bounded as the references
+ * come from query strings.
+ *
+ * @author Steve Ebersole
+ */
+public class JavaConstantIndex {
+	/**
+	 * The default maximum number of references and classes to cache, each
+	 */
+	public static final int DEFAULT_MAX_SIZE = 1024;
+
+	private static final int CONCURRENCY_LEVEL = 16;
+
+	private static final Object NOT_FOUND = new Object();
+
+	private final ClassLoader classLoader;
+
+	// reference -> Constant, or NOT_FOUND
+	private final BoundedConcurrentHashMap<String, Object> constantsByReference;
+	// class-name -> ClassConstants (the constant fields, unread), or ClassConstants.NONE if there is no such class
+	private final BoundedConcurrentHashMap<String, ClassConstants> constantsByClassName;
+
+	/**
+	 * An index loading classes through the domain model's ClassLoaderService
+	 */
+	public JavaConstantIndex(MetamodelImplementor domainModel) {
+		this( resolveClassLoader( domainModel ), DEFAULT_MAX_SIZE );
+	}
+
+	public JavaConstantIndex(ClassLoader classLoader) {
+		this( classLoader, DEFAULT_MAX_SIZE );
+	}
+
+	public JavaConstantIndex(ClassLoader classLoader, int maxSize) {
+		this.classLoader = classLoader;
+		this.constantsByReference = new BoundedConcurrentHashMap<>(
+				maxSize,
+				CONCURRENCY_LEVEL,
+				BoundedConcurrentHashMap.Eviction.LIRS
+		);
+		this.constantsByClassName = new BoundedConcurrentHashMap<>(
+				maxSize,
+				CONCURRENCY_LEVEL,
+				BoundedConcurrentHashMap.Eviction.LIRS
+		);
+	}
+
+	private static ClassLoader resolveClassLoader(MetamodelImplementor domainModel) {
+		final TypeConfiguration typeConfiguration = domainModel.getTypeConfiguration();
+		final ServiceRegistry serviceRegistry = typeConfiguration == null ? null : typeConfiguration.getServiceRegistry();
+		final ClassLoaderService classLoaderService = serviceRegistry == null
+				? null
+				: serviceRegistry.getService( ClassLoaderService.class );
+		if ( classLoaderService == null ) {
+			// not built through a service registry - only Hibernate's own class loader to go by
+			return JavaConstantIndex.class.getClassLoader();
+		}
+
+		// the aggregated class loader of the service (application and Hibernate classes)
+		return classLoaderService.workWithClassLoader( classLoader -> classLoader );
+	}
+
+	/**
+	 * Resolve the given dotted reference as a Java constant
+	 *
+	 * @return The literal for the constant, or {@code null} if the reference is not a
+	 * (known) Java constant
+	 */
+	@SuppressWarnings("unchecked")
+	public SqmLiteral<?> resolveLiteral(String reference) {
+		Object resolved = constantsByReference.get( reference );
+		if ( resolved == null ) {
+			resolved = resolve( reference );
+			constantsByReference.putIfAbsent( reference, resolved );
+		}
+
+		if ( resolved == NOT_FOUND ) {
+			return null;
+		}
+
+		return new SqmLiteral( ( (Constant) resolved ).value );
+	}
+
+	private Object resolve(String reference) {
+		final int memberSeparator = reference.lastIndexOf( '.' );
+		if ( memberSeparator < 0 ) {
+			return NOT_FOUND;
+		}
+
+		final String memberName = reference.substring( memberSeparator + 1 );
+
+		// `a.b.C` and then the nested-class variants `a.b$C`, `a$b$C` - the
+		// top-level class name being the most common, check it first
+		final char[] className = reference.substring( 0, memberSeparator ).toCharArray();
+		for ( int i = className.length; i >= 0; i-- ) {
+			if ( i < className.length ) {
+				if ( className[i] != '.' ) {
+					continue;
+				}
+				className[i] = '$';
+			}
+
+			final String candidate = new String( className );
+			if ( !isConventionalClassName( candidate ) ) {
+				continue;
+			}
+
+			final ClassConstants classConstants = resolveClass( candidate );
+			final Field field = classConstants.fields.get( memberName );
+			if ( field != null ) {
+				final Object value;
+				try {
+					// initializes the class, if not already
+					value = field.get( null );
+				}
+				catch (IllegalAccessException | RuntimeException | LinkageError e) {
+					QueryLogger.QUERY_LOGGER.debugf( e, "Unable to read Java constant - %s", reference );
+					return NOT_FOUND;
+				}
+				QueryLogger.QUERY_LOGGER.debugf( "Resolved Java constant reference - %s", reference );
+				return new Constant( value );
+			}
+			// no such class, or no such constant; a nested class of the same name is still possible
+		}
+
+		return NOT_FOUND;
+	}
+
+	/**
+	 * Whether the name follows the naming conventions : lower-case package names and
+	 * capitalized (possibly nested) class names - e.g. `org.acme.Sex` or `org.acme.Person$Sex`
+	 * but not `o.salesAssociate` nor `org.acme.Person.Sex`
+	 */
+	private static boolean isConventionalClassName(String className) {
+		final int classNameStart = className.lastIndexOf( '.' ) + 1;
+		boolean segmentStart = true;
+		for ( int i = 0; i < className.length(); i++ ) {
+			final char c = className.charAt( i );
+			if ( c == '.' || c == '$' ) {
+				segmentStart = true;
+			}
+			else if ( segmentStart ) {
+				if ( i < classNameStart ? !Character.isLowerCase( c ) : !Character.isUpperCase( c ) ) {
+					return false;
+				}
+				segmentStart = false;
+			}
+		}
+		return !segmentStart;
+	}
+
+	private ClassConstants resolveClass(String className) {
+		ClassConstants classConstants = constantsByClassName.get( className );
+		if ( classConstants == null ) {
+			classConstants = loadClassConstants( className );
+			constantsByClassName.putIfAbsent( className, classConstants );
+		}
+		return classConstants;
+	}
+
+	private ClassConstants loadClassConstants(String className) {
+		final Class<?> javaClass;
+		try {
+			javaClass = Class.forName( className, false, classLoader );
+		}
+		catch (ClassNotFoundException | LinkageError e) {
+			return ClassConstants.NONE;
+		}
+
+		final Map<String, Field> fields = new HashMap<>();
+		try {
+			for ( Field field : javaClass.getFields() ) {
+				final int modifiers = field.getModifiers();
+				if ( Modifier.isStatic( modifiers ) && Modifier.isFinal( modifiers ) ) {
+					// includes the enum values.  Not read yet - that would initialize the class
+					fields.put( field.getName(), field );
+				}
+			}
+		}
+		catch (RuntimeException | LinkageError e) {
+			QueryLogger.QUERY_LOGGER.debugf( e, "Unable to read constants of class - %s", className );
+			return ClassConstants.NONE;
+		}
+
+		return new ClassConstants( fields );
+	}
+
+	private static class Constant {
+		private final Object value;
+
+		private Constant(Object value) {
+			this.value = value;
+		}
+	}
+
+	private static class ClassConstants {
+		private static final ClassConstants NONE = new ClassConstants( Collections.emptyMap() );
+
+		private final Map<String, Field> fields;
+
+		private ClassConstants(Map<String, Field> fields) {
+			this.fields = fields;
+		}
+	}
+}
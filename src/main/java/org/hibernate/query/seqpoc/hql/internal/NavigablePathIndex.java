@@ -0,0 +1,169 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.seqpoc.hql.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.hibernate.metamodel.model.domain.spi.EntityTypeDescriptor;
+import org.hibernate.metamodel.model.domain.spi.Navigable;
+import org.hibernate.metamodel.model.domain.spi.NavigableContainer;
+import org.hibernate.metamodel.model.domain.spi.PluralPersistentAttribute;
+import org.hibernate.query.QueryLogger;
+
+/**
+ * Index of the attribute paths reachable from each entity of a domain model -
+ * e.g. `salesAssociate.name.familyName` for `Order` - to the Navigables along
+ * the path.  Allows resolving a complete dot-identifier sequence relative to an
+ * entity with a single lookup, rather than a {@link NavigableContainer#findNavigable}
+ * call (and a new SqmPath) per identifier.
+ * <p/>
+ * Paths go through embeddables and to-one associations up to {@link #getMaxDepth()}
+ * identifiers; plural attributes are indexed, but not de-referenced.  Anything
+ * not indexed (deeper paths, paths relative to something other than an entity)
+ * still has to be resolved identifier by identifier.
+ * <p/>
+ * The paths of an entity are indexed the first time a path is resolved relative to
+ * it, so only the entities queries actually refer to are indexed.  Once indexed, the
+ * paths of an entity do not change.  The index is owned by a
+ * {@link SemanticQueryInterpreter} (see {@link SemanticQueryInterpreter#getNavigablePathIndex()});
+ * as it references the Navigables of the domain model, it must not outlive it.  Its
+ * approximate size is available from {@link #getEstimatedMemoryFootprint()}.
+ *
+ * @author Steve Ebersole
+ */
+public class NavigablePathIndex {
+	/**
+	 * The default maximum number of identifiers in an indexed path
+	 */
+	public static final int DEFAULT_MAX_DEPTH = 3;
+
+	private final int maxDepth;
+
+	// entity descriptor -> (dotted path -> navigables along the path), filled in lazily
+	private final ConcurrentHashMap<EntityTypeDescriptor<?>, Map<String, Navigable<?>[]>> pathsByEntity = new ConcurrentHashMap<>();
+
+	private final LongAdder pathCount = new LongAdder();
+	private final LongAdder estimatedMemoryFootprint = new LongAdder();
+
+	public NavigablePathIndex() {
+		this( DEFAULT_MAX_DEPTH );
+	}
+
+	public NavigablePathIndex(int maxDepth) {
+		this.maxDepth = maxDepth;
+	}
+
+	private Map<String, Navigable<?>[]> indexEntity(EntityTypeDescriptor<?> entityDescriptor) {
+		final Map<String, Navigable<?>[]> paths = new HashMap<>();
+		indexPaths( entityDescriptor, null, new Navigable<?>[0], paths );
+
+		long footprint = 0;
+		for ( Map.Entry<String, Navigable<?>[]> entry : paths.entrySet() ) {
+			footprint += estimateEntryFootprint( entry.getKey(), entry.getValue() );
+		}
+		pathCount.add( paths.size() );
+		estimatedMemoryFootprint.add( footprint );
+
+		QueryLogger.QUERY_LOGGER.debugf(
+				"Indexed navigable paths of entity %s : %s paths, ~%s bytes",
+				entityDescriptor.getEntityName(),
+				paths.size(),
+				footprint
+		);
+
+		return paths.isEmpty() ? Collections.emptyMap() : paths;
+	}
+
+	private void indexPaths(
+			NavigableContainer<?> container,
+			String containerPath,
+			Navigable<?>[] containerNavigables,
+			Map<String, Navigable<?>[]> paths) {
+		for ( Navigable<?> navigable : container.getNavigables() ) {
+			final String name = navigable.getNavigableName();
+			if ( container.findNavigable( name ) != navigable ) {
+				// only index what `findNavigable` resolves the name to
+				continue;
+			}
+
+			final String path = containerPath == null ? name : containerPath + '.' + name;
+			final Navigable<?>[] navigables = new Navigable<?>[ containerNavigables.length + 1 ];
+			System.arraycopy( containerNavigables, 0, navigables, 0, containerNavigables.length );
+			navigables[containerNavigables.length] = navigable;
+
+			paths.put( path, navigables );
+
+			if ( navigables.length < maxDepth
+					&& navigable instanceof NavigableContainer
+					&& !( navigable instanceof PluralPersistentAttribute ) ) {
+				indexPaths( (NavigableContainer<?>) navigable, path, navigables, paths );
+			}
+		}
+	}
+
+	private static long estimateEntryFootprint(String path, Navigable<?>[] navigables) {
+		// HashMap node and table slot + String (header, hash, value array) + Navigable[]
+		// assuming compressed oops; the Navigables themselves belong to the domain model
+		return 32 + 4
+				+ 24 + align( 16 + path.length() * 2L )
+				+ align( 16 + navigables.length * 4L );
+	}
+
+	private static long align(long size) {
+		return ( size + 7 ) & ~7L;
+	}
+
+	/**
+	 * Resolve the path - identifiers `start` through the end of the sequence - relative to
+	 * the given container.
+	 *
+	 * @return The Navigables along the path (the last being the one the path refers to), or
+	 * {@code null} if the path is not indexed for the container
+	 */
+	public Navigable<?>[] resolve(Navigable<?> container, String[] identifiers, int start) {
+		if ( !( container instanceof EntityTypeDescriptor ) || identifiers.length - start > maxDepth ) {
+			return null;
+		}
+
+		Map<String, Navigable<?>[]> paths = pathsByEntity.get( container );
+		if ( paths == null ) {
+			paths = pathsByEntity.computeIfAbsent( (EntityTypeDescriptor<?>) container, this::indexEntity );
+		}
+
+		final String path = identifiers.length - start == 1
+				? identifiers[start]
+				: String.join( ".", Arrays.asList( identifiers ).subList( start, identifiers.length ) );
+		return paths.get( path );
+	}
+
+	/**
+	 * The maximum number of identifiers in an indexed path
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * The number of paths indexed so far, over all entities
+	 */
+	public long getPathCount() {
+		return pathCount.sum();
+	}
+
+	/**
+	 * Rough estimate, in bytes, of the memory held by the index so far (not counting the
+	 * Navigables, which are part of the domain model)
+	 */
+	public long getEstimatedMemoryFootprint() {
+		return estimatedMemoryFootprint.sum();
+	}
+}
@@ -0,0 +1,270 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.seqpoc.hql.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.LexerATNSimulator;
+import org.antlr.v4.runtime.atn.PredictionContextCache;
+import org.antlr.v4.runtime.dfa.DFA;
+
+/**
+ * HqlLexer variant which scans words (identifiers and keywords) itself in a simple
+ * loop and then classifies them using a precomputed perfect-hash table of the
+ * keywords, rather than running them through the lexer ATN.
+ * <p/>
+ * All other tokens (literals, operators, punctuation, ...) are still recognized
+ * by the generated lexer.  The token types and text are the same as with
+ * {@link HqlLexer}, but the (shared) lexer DFA only ever needs the states for the
+ * non-word tokens - the ~100 case-insensitive keyword rules otherwise account for
+ * most of it.
+ *
+ * @author Steve Ebersole
+ */
+public class PerfectHashHqlLexer extends HqlLexer {
+
+	public PerfectHashHqlLexer(CharStream input) {
+		super( input );
+	}
+
+	@Override
+	public Token nextToken() {
+		final LexerATNSimulator interpreter = getInterpreter();
+
+		// WS : ( ' ' | '\t' | '\f' | EOL ) -> skip
+		int c = _input.LA( 1 );
+		while ( c == ' ' || c == '\t' || c == '\f' || c == '\r' || c == '\n' ) {
+			if ( c == '\n' ) {
+				interpreter.setLine( interpreter.getLine() + 1 );
+				interpreter.setCharPositionInLine( 0 );
+			}
+			else {
+				interpreter.setCharPositionInLine( interpreter.getCharPositionInLine() + 1 );
+			}
+			_input.consume();
+			c = _input.LA( 1 );
+		}
+
+		if ( !isIdentifierStart( c ) ) {
+			return super.nextToken();
+		}
+
+		// scan the word, hashing it along the way
+		final KeywordTable keywordTable = KeywordTable.INSTANCE;
+		final int start = _input.index();
+		int hash = keywordTable.hash( 0, c );
+		int length = 1;
+		while ( isIdentifierPart( c = _input.LA( length + 1 ) ) ) {
+			hash = keywordTable.hash( hash, c );
+			length++;
+		}
+
+		_token = null;
+		_channel = Token.DEFAULT_CHANNEL;
+		_text = null;
+		_tokenStartCharIndex = start;
+		_tokenStartLine = interpreter.getLine();
+		_tokenStartCharPositionInLine = interpreter.getCharPositionInLine();
+		_type = keywordTable.classify( _input, hash, length );
+
+		_input.seek( start + length );
+		interpreter.setCharPositionInLine( _tokenStartCharPositionInLine + length );
+
+		return emit();
+	}
+
+	// see `IDENTIFIER` in HqlLexer.g4
+
+	static boolean isIdentifierStart(int c) {
+		return ( c >= 'a' && c <= 'z' )
+				|| ( c >= 'A' && c <= 'Z' )
+				|| c == '_'
+				|| c == '$'
+				|| ( c >= '\u0080' && c <= '\ufffe' );
+	}
+
+	static boolean isIdentifierPart(int c) {
+		return isIdentifierStart( c ) || ( c >= '0' && c <= '9' );
+	}
+
+	/**
+	 * Perfect-hash table of the (case-insensitive) keywords.  The keywords are
+	 * discovered from the generated lexer itself - each token whose (lower-cased)
+	 * symbolic name lexes as exactly that token - so the table cannot drift from
+	 * the grammar.  The hash seed is searched at build time such that no two
+	 * keywords share a slot, so classification is a single hash plus at most one
+	 * comparison.
+	 */
+	static class KeywordTable {
+		static final KeywordTable INSTANCE = build();
+
+		private final int seed;
+		private final int mask;
+		private final char[][] keywords;
+		private final int[] types;
+		private final int minLength;
+		private final int maxLength;
+
+		private KeywordTable(int seed, int mask, char[][] keywords, int[] types, int minLength, int maxLength) {
+			this.seed = seed;
+			this.mask = mask;
+			this.keywords = keywords;
+			this.types = types;
+			this.minLength = minLength;
+			this.maxLength = maxLength;
+		}
+
+		int hash(int hash, int c) {
+			return hash * seed + toLowerCase( c );
+		}
+
+		/**
+		 * The keyword token type of the word of the given hash and length at the current
+		 * position of the input, or {@link HqlLexer#IDENTIFIER}
+		 */
+		int classify(CharStream input, int hash, int length) {
+			if ( length < minLength || length > maxLength ) {
+				return IDENTIFIER;
+			}
+
+			final int slot = spread( hash ) & mask;
+			final char[] keyword = keywords[slot];
+			if ( keyword == null || keyword.length != length ) {
+				return IDENTIFIER;
+			}
+
+			// keywords are lower-case ASCII, so this also rules out any non-ASCII word
+			for ( int i = 0; i < length; i++ ) {
+				if ( toLowerCase( input.LA( i + 1 ) ) != keyword[i] ) {
+					return IDENTIFIER;
+				}
+			}
+
+			return types[slot];
+		}
+
+		/**
+		 * The keyword token type of the word {@code text[start, end)}, or {@link HqlLexer#IDENTIFIER}
+		 */
+		int classify(CharSequence text, int start, int end) {
+			final int length = end - start;
+			if ( length < minLength || length > maxLength ) {
+				return IDENTIFIER;
+			}
+
+			int hash = 0;
+			for ( int i = start; i < end; i++ ) {
+				hash = hash( hash, text.charAt( i ) );
+			}
+
+			final int slot = spread( hash ) & mask;
+			final char[] keyword = keywords[slot];
+			if ( keyword == null || keyword.length != length ) {
+				return IDENTIFIER;
+			}
+
+			for ( int i = 0; i < length; i++ ) {
+				if ( toLowerCase( text.charAt( start + i ) ) != keyword[i] ) {
+					return IDENTIFIER;
+				}
+			}
+
+			return types[slot];
+		}
+
+		private static int toLowerCase(int c) {
+			return c >= 'A' && c <= 'Z' ? c + ( 'a' - 'A' ) : c;
+		}
+
+		private static int spread(int hash) {
+			return hash ^ ( hash >>> 16 );
+		}
+
+		private static KeywordTable build() {
+			final List<String> keywords = new ArrayList<>();
+			final List<Integer> types = new ArrayList<>();
+
+			final DFA[] privateDfa = new DFA[ _ATN.getNumberOfDecisions() ];
+			for ( int i = 0; i < privateDfa.length; i++ ) {
+				privateDfa[i] = new DFA( _ATN.getDecisionState( i ), i );
+			}
+
+			for ( int type = 1; type <= VOCABULARY.getMaxTokenType(); type++ ) {
+				final String name = VOCABULARY.getSymbolicName( type );
+				if ( name == null || type == IDENTIFIER ) {
+					continue;
+				}
+
+				final String candidate = name.toLowerCase( Locale.ROOT );
+				final HqlLexer lexer = new HqlLexer( CharStreams.fromString( candidate ) );
+				// use a private DFA so as not to warm the shared one with the keyword rules
+				lexer.setInterpreter( new LexerATNSimulator( lexer, _ATN, privateDfa, new PredictionContextCache() ) );
+				final Token token = lexer.nextToken();
+				if ( token.getType() == type
+						&& token.getText().equals( candidate )
+						&& lexer.nextToken().getType() == Token.EOF ) {
+					keywords.add( candidate );
+					types.add( type );
+				}
+			}
+
+			int minLength = Integer.MAX_VALUE;
+			int maxLength = 0;
+			for ( String keyword : keywords ) {
+				minLength = Math.min( minLength, keyword.length() );
+				maxLength = Math.max( maxLength, keyword.length() );
+			}
+
+			// smallest power of 2 giving a load factor <= 0.25 - makes finding a seed quick
+			int tableSize = Integer.highestOneBit( keywords.size() * 4 - 1 ) << 1;
+			while ( true ) {
+				for ( int seed = 31; seed < 100_000; seed += 2 ) {
+					final KeywordTable table = tryBuild( seed, tableSize, keywords, types, minLength, maxLength );
+					if ( table != null ) {
+						return table;
+					}
+				}
+				tableSize <<= 1;
+			}
+		}
+
+		private static KeywordTable tryBuild(
+				int seed,
+				int tableSize,
+				List<String> keywords,
+				List<Integer> types,
+				int minLength,
+				int maxLength) {
+			final int mask = tableSize - 1;
+			final char[][] table = new char[tableSize][];
+			final int[] tableTypes = new int[tableSize];
+
+			for ( int i = 0; i < keywords.size(); i++ ) {
+				final String keyword = keywords.get( i );
+
+				int hash = 0;
+				for ( int j = 0; j < keyword.length(); j++ ) {
+					hash = hash * seed + keyword.charAt( j );
+				}
+
+				final int slot = spread( hash ) & mask;
+				if ( table[slot] != null ) {
+					return null;
+				}
+				table[slot] = keyword.toCharArray();
+				tableTypes[slot] = types.get( i );
+			}
+
+			return new KeywordTable( seed, mask, table, tableTypes, minLength, maxLength );
+		}
+	}
+}
@@ -13,7 +13,6 @@ import org.hibernate.metamodel.model.domain.spi.Navigable;
 import org.hibernate.metamodel.model.domain.spi.NavigableContainer;
 import org.hibernate.query.SemanticException;
 import org.hibernate.query.seqpoc.hql.spi.DotIdentifierHandler;
-import org.hibernate.query.seqpoc.hql.spi.SqmCreationContext;
 import org.hibernate.query.seqpoc.hql.spi.StatementProcessingState;
 import org.hibernate.query.seqpoc.sqm.tree.SqmJoinType;
 import org.hibernate.query.seqpoc.sqm.tree.domain.SqmAttributePathJoinImpl;
@@ -29,9 +28,10 @@ public class QualifiedJoinPathIdentifierConsumer implements DotIdentifierHandler
 	private final String alias;
 
 	private final StatementProcessingState processingState;
-	private final SqmCreationContext sqmCreationContext;
+	private final SemanticQueryInterpreter interpreter;
 
-	private String completePath = null;
+	// position in the entity-name trie while the sequence is being resolved as an entity-join
+	private EntityNameTrie.Node entityNameNode = null;
 	private SqmFrom current = null;
 
 	public QualifiedJoinPathIdentifierConsumer(
@@ -39,12 +39,12 @@ public class QualifiedJoinPathIdentifierConsumer implements DotIdentifierHandler
 			boolean fetch,
 			String alias,
 			StatementProcessingState processingState,
-			SqmCreationContext sqmCreationContext) {
+			SemanticQueryInterpreter interpreter) {
 		this.joinType = joinType;
 		this.fetch = fetch;
 		this.alias = alias;
 		this.processingState = processingState;
-		this.sqmCreationContext = sqmCreationContext;
+		this.interpreter = interpreter;
 	}
 
 	@Override
@@ -54,53 +54,117 @@ public class QualifiedJoinPathIdentifierConsumer implements DotIdentifierHandler
 
 	@Override
 	public void consumeIdentifier(String identifier, boolean isBase, boolean isTerminal) {
-		if ( completePath == null ) {
-			completePath = identifier;
-		}
-		else {
-			completePath += ( '.' + identifier );
-		}
-
 		if ( this.current == null ) {
-			final SqmFrom pathRootByAlias = processingState.getPathRootLocator().findPathRootByAlias( identifier );
-			if ( pathRootByAlias != null ) {
-				// identifier is an alias (identification variable)
-				this.current = pathRootByAlias;
-				return;
-			}
+			if ( entityNameNode == null ) {
+				// the base of the sequence
+				final SqmFrom pathRootByAlias = processingState.getPathRootLocator().findPathRootByAlias( identifier );
+				if ( pathRootByAlias != null ) {
+					// identifier is an alias (identification variable)
+					this.current = pathRootByAlias;
+					return;
+				}
 
-			final SqmFrom pathRootByExposedNavigable = processingState.getPathRootLocator().findPathRootByExposedNavigable( identifier );
-			if ( pathRootByExposedNavigable != null ) {
-				// identifier is an "unqualified attribute reference".  Set `current` to the exposer,
-				// but do not return - we still need to consume the identifier against the from-element
-				// exposing
-				current = pathRootByExposedNavigable;
-				//
+				final SqmFrom pathRootByExposedNavigable = processingState.getPathRootLocator().findPathRootByExposedNavigable( identifier );
+				if ( pathRootByExposedNavigable != null ) {
+					// identifier is an "unqualified attribute reference".  Set `current` to the exposer,
+					// but do not return - we still need to consume the identifier against the from-element
+					// exposing
+					current = pathRootByExposedNavigable;
+				}
 			}
-			else {
+
+			if ( current == null ) {
 				// the identifier could also signify an "entity join"... this could potentially need
-				// to consume the entire sequence.  If we are processing the path terminus try
-				// to resolve it as an entity-name
+				// to consume the entire sequence.  Step through the entity names as we go
+				stepEntityName( identifier );
 				if ( isTerminal ) {
-					final EntityTypeDescriptor entityDescriptor = sqmCreationContext.getDomainModel().findEntityDescriptor( completePath );
-					if ( entityDescriptor != null ) {
-						current = new SqmPathEntityJoin( entityDescriptor, joinType, alias );
-						return;
-					}
-
-//					throw new SemanticException( "Could not resolve domain path root - " + completePath );
+					joinEntity();
 				}
-				else {
-					// wait for the terminal
-					return;
+				return;
+			}
+		}
+
+		joinAttribute( identifier, isTerminal );
+	}
+
+	@Override
+	public void consumeIdentifierSequence(String[] identifiers) {
+		final SqmFrom pathRootByAlias = processingState.getPathRootLocator().findPathRootByAlias( identifiers[0] );
+		if ( pathRootByAlias != null ) {
+			// the base is an alias (identification variable) - join the rest relative to it
+			current = pathRootByAlias;
+			joinAttributes( identifiers, 1 );
+			return;
+		}
+
+		final SqmFrom pathRootByExposedNavigable = processingState.getPathRootLocator().findPathRootByExposedNavigable( identifiers[0] );
+		if ( pathRootByExposedNavigable != null ) {
+			// the base is an "unqualified attribute reference" - join the whole sequence relative to its exposer
+			current = pathRootByExposedNavigable;
+			joinAttributes( identifiers, 0 );
+			return;
+		}
+
+		// otherwise the whole sequence has to be an entity-name ("entity join")
+		for ( String identifier : identifiers ) {
+			stepEntityName( identifier );
+		}
+		joinEntity();
+	}
+
+	private void stepEntityName(String identifier) {
+		final EntityNameTrie.Node parent = entityNameNode == null
+				? interpreter.getEntityNameTrie().getRoot()
+				: entityNameNode;
+
+		final EntityNameTrie.Node child = parent.getChild( identifier );
+		if ( child == null ) {
+			// not (the start of) any name of an entity
+			throw new SemanticException(
+					"Could not resolve qualified join path - "
+							+ ( parent.getPath() == null ? identifier : parent.getPath() + '.' + identifier )
+			);
+		}
+		entityNameNode = child;
+	}
+
+	private void joinEntity() {
+		// the trie only knows the names the domain model could accept, resolving them is
+		// still up to the domain model (e.g. whether an unqualified name is imported)
+		final EntityTypeDescriptor entityDescriptor = interpreter.getDomainModel()
+				.findEntityDescriptor( entityNameNode.getPath() );
+		if ( entityDescriptor == null ) {
+			throw new SemanticException( "Could not resolve qualified join path - " + entityNameNode.getPath() );
+		}
+
+		current = new SqmPathEntityJoin(
+				entityDescriptor,
+				joinType,
+				alias,
+				interpreter.getNavigablePathFactory()
+						.getRootPath( entityDescriptor.getNavigableRole().getFullPath() )
+		);
+	}
+
+	private void joinAttributes(String[] identifiers, int start) {
+		if ( start < identifiers.length ) {
+			final Navigable<?>[] navigables = interpreter.getNavigablePathIndex()
+					.resolve( current.getReferencedNavigable(), identifiers, start );
+			if ( navigables != null ) {
+				// the complete path is indexed - still one join per identifier, but no per-identifier lookups
+				for ( int i = start; i < identifiers.length; i++ ) {
+					join( navigables[i - start], identifiers[i], i == identifiers.length - 1 );
 				}
+				return;
 			}
 		}
 
-		if ( current == null ) {
-			throw new SemanticException( "Could not resolve qualified join path - " + identifier );
+		for ( int i = start; i < identifiers.length; i++ ) {
+			joinAttribute( identifiers[i], i == identifiers.length - 1 );
 		}
+	}
 
+	private void joinAttribute(String identifier, boolean isTerminal) {
 		final Navigable navigable = this.current.getReferencedNavigable().findNavigable( identifier );
 		if ( navigable == null ) {
 			throw new SemanticException(
@@ -113,6 +177,10 @@ public class QualifiedJoinPathIdentifierConsumer implements DotIdentifierHandler
 			);
 		}
 
+		join( navigable, identifier, isTerminal );
+	}
+
+	private void join(Navigable navigable, String identifier, boolean isTerminal) {
 		if ( ! ( navigable instanceof NavigableContainer ) ) {
 			throw new SemanticException(
 					String.format(
@@ -126,7 +194,7 @@ public class QualifiedJoinPathIdentifierConsumer implements DotIdentifierHandler
 
 		this.current = new SqmAttributePathJoinImpl(
 				(NavigableContainer) navigable,
-				current.getNavigablePath().append( identifier ),
+				current.getNavigablePath().appendResolved( identifier ),
 				joinType,
 				isTerminal ? alias : null,
 				fetch
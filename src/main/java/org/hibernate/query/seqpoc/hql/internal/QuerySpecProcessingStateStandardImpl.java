@@ -0,0 +1,310 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.seqpoc.hql.internal;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.metamodel.model.domain.spi.EntityHierarchy;
+import org.hibernate.metamodel.model.domain.spi.EntityValuedNavigable;
+import org.hibernate.metamodel.model.domain.spi.IdentifiableTypeDescriptor;
+import org.hibernate.metamodel.model.domain.spi.Navigable;
+import org.hibernate.metamodel.model.domain.spi.NavigableContainer;
+import org.hibernate.query.AliasCollisionException;
+import org.hibernate.query.QueryLogger;
+import org.hibernate.query.SemanticException;
+import org.hibernate.query.seqpoc.hql.spi.FromElementRegistry;
+import org.hibernate.query.seqpoc.hql.spi.PathRootLocator;
+import org.hibernate.query.seqpoc.hql.spi.StatementProcessingState;
+import org.hibernate.query.seqpoc.sqm.tree.domain.SqmFrom;
+import org.hibernate.query.seqpoc.sqm.tree.domain.SqmFromClause;
+import org.hibernate.query.seqpoc.sqm.tree.domain.SqmFromClauseSpace;
+import org.hibernate.query.seqpoc.sqm.tree.select.SqmQuerySpec;
+import org.hibernate.query.seqpoc.sqm.tree.select.SqmSelectClause;
+import org.hibernate.query.seqpoc.sqm.tree.select.SqmSelection;
+
+/**
+ * StatementProcessingState for a query-spec.  Shared by the parse-tree visitor
+ * ({@link SemanticQueryBuilder}) and the single-pass parse listener
+ * ({@link SqmTreeCreationListener})
+ *
+ * @author Steve Ebersole
+ */
+public class QuerySpecProcessingStateStandardImpl implements StatementProcessingState, PathRootLocator, FromElementRegistry {
+	// todo (6.0) : ultimately `parent` here needs to be able to handle DML statements as well
+
+	/**
+	 * How an unqualified attribute reference (see {@link #findPathRootByExposedNavigable})
+	 * is resolved when multiple from-elements expose an attribute of that name
+	 */
+	public enum UnqualifiedAttributeResolutionPolicy {
+		/**
+		 * The reference is an error
+		 */
+		STRICT,
+		/**
+		 * The reference resolves to the from-element registered first
+		 */
+		FIRST_MATCH
+	}
+
+	private final SqmQuerySpec inflightSpec;
+	private final StatementProcessingState parent;
+	private final UnqualifiedAttributeResolutionPolicy unqualifiedAttributeResolutionPolicy;
+
+	private final Map<String, SqmFrom> fromElementsByAlias = new HashMap<>();
+	private final Map<String, SqmSelection> selectionsByAlias = new HashMap<>();
+
+	private static final String LEGACY_IDENTIFIER_NAME = "id";
+
+	// navigable name -> the (first registered) from-element exposing it, plus the names exposed by more than one
+	private final Map<String, SqmFrom> fromElementsByExposedNavigable = new HashMap<>();
+	private final Set<String> ambiguousExposedNavigables = new HashSet<>();
+
+	// see `#getFromElementCount` and `#getUnqualifiedAttributeScanCount`
+	private int fromElementCount;
+	private int unqualifiedAttributeScanCount;
+
+	/**
+	 * Creates the state using the parent's UnqualifiedAttributeResolutionPolicy, if the parent
+	 * is a query-spec, or {@link UnqualifiedAttributeResolutionPolicy#STRICT} otherwise
+	 */
+	public QuerySpecProcessingStateStandardImpl(SqmQuerySpec inflightSpec, StatementProcessingState parent) {
+		this(
+				inflightSpec,
+				parent,
+				parent instanceof QuerySpecProcessingStateStandardImpl
+						? ( (QuerySpecProcessingStateStandardImpl) parent ).getUnqualifiedAttributeResolutionPolicy()
+						: UnqualifiedAttributeResolutionPolicy.STRICT
+		);
+	}
+
+	public QuerySpecProcessingStateStandardImpl(
+			SqmQuerySpec inflightSpec,
+			StatementProcessingState parent,
+			UnqualifiedAttributeResolutionPolicy unqualifiedAttributeResolutionPolicy) {
+		assert inflightSpec != null;
+		assert unqualifiedAttributeResolutionPolicy != null;
+
+		this.inflightSpec = inflightSpec;
+		this.parent = parent;
+		this.unqualifiedAttributeResolutionPolicy = unqualifiedAttributeResolutionPolicy;
+	}
+
+	public UnqualifiedAttributeResolutionPolicy getUnqualifiedAttributeResolutionPolicy() {
+		return unqualifiedAttributeResolutionPolicy;
+	}
+
+	public SqmQuerySpec getInflightQuerySpec() {
+		return inflightSpec;
+	}
+
+	/**
+	 * The number of from-elements registered
+	 */
+	public int getFromElementCount() {
+		return fromElementCount;
+	}
+
+	/**
+	 * The number of times the from-clause was searched for the from-element exposing
+	 * an unqualified attribute reference (see {@link #findPathRootByExposedNavigable}),
+	 * including searches on behalf of enclosed query-specs
+	 */
+	public int getUnqualifiedAttributeScanCount() {
+		return unqualifiedAttributeScanCount;
+	}
+
+	@Override
+	public FromElementRegistry getFromElementRegistry() {
+		return this;
+	}
+
+	@Override
+	public PathRootLocator getPathRootLocator() {
+		return this;
+	}
+
+	public void registerFromElement(SqmFrom sqmFrom) {
+		fromElementCount++;
+		registerExposedNavigables( sqmFrom );
+
+		final String alias = sqmFrom.getExplicitAlias();
+		if ( alias == null ) {
+			return;
+		}
+
+		final SqmFrom previous = fromElementsByAlias.put( alias, sqmFrom );
+		if ( previous != null ) {
+			throw new AliasCollisionException(
+					String.format(
+							Locale.ENGLISH,
+							"Alias [%s] used for multiple from-clause-elements : %s, %s",
+							alias,
+							previous,
+							sqmFrom
+					)
+			);
+		}
+	}
+
+	private void registerExposedNavigables(SqmFrom sqmFrom) {
+		for ( String name : exposedNavigableNames( sqmFrom.getReferencedNavigable() ) ) {
+			final SqmFrom previous = fromElementsByExposedNavigable.putIfAbsent( name, sqmFrom );
+			if ( previous != null && previous != sqmFrom ) {
+				ambiguousExposedNavigables.add( name );
+			}
+		}
+	}
+
+	/**
+	 * The names {@link NavigableContainer#findNavigable} resolves against the container :
+	 * its Navigables, those inherited from its supertypes and the identifier and version
+	 */
+	private static Set<String> exposedNavigableNames(NavigableContainer<?> container) {
+		final Set<String> names = new HashSet<>();
+		addNavigableNames( container, names );
+
+		final NavigableContainer<?> type = container instanceof EntityValuedNavigable
+				? ( (EntityValuedNavigable<?>) container ).getEntityDescriptor()
+				: container;
+		if ( type instanceof IdentifiableTypeDescriptor ) {
+			final IdentifiableTypeDescriptor<?> identifiable = (IdentifiableTypeDescriptor<?>) type;
+
+			final EntityHierarchy hierarchy = identifiable.getHierarchy();
+			if ( hierarchy != null ) {
+				addNavigableName( hierarchy.getIdentifierDescriptor(), names );
+				addNavigableName( hierarchy.getVersionDescriptor(), names );
+			}
+
+			IdentifiableTypeDescriptor<?> superType = identifiable;
+			while ( superType != null ) {
+				addNavigableNames( superType, names );
+				superType = superType.getSuperclassType();
+			}
+		}
+
+		// HQL's legacy `id` resolves to the identifier whatever its name
+		if ( !names.contains( LEGACY_IDENTIFIER_NAME ) && container.findNavigable( LEGACY_IDENTIFIER_NAME ) != null ) {
+			names.add( LEGACY_IDENTIFIER_NAME );
+		}
+
+		return names;
+	}
+
+	private static void addNavigableNames(NavigableContainer<?> container, Set<String> names) {
+		for ( Navigable<?> navigable : container.getNavigables() ) {
+			names.add( navigable.getNavigableName() );
+		}
+	}
+
+	private static void addNavigableName(Navigable<?> navigable, Set<String> names) {
+		if ( navigable != null ) {
+			names.add( navigable.getNavigableName() );
+		}
+	}
+
+	public void registerSelection(SqmSelection selection) {
+		if ( selection.getAlias() != null ) {
+			checkResultVariable( selection );
+			selectionsByAlias.put( selection.getAlias(), selection );
+		}
+	}
+
+	private void checkResultVariable(SqmSelection selection) {
+		final String alias = selection.getAlias();
+
+		if ( selectionsByAlias.containsKey( alias ) ) {
+			throw new AliasCollisionException(
+					String.format(
+							Locale.ENGLISH,
+							"Alias [%s] is already used in same select clause",
+							alias
+					)
+			);
+		}
+
+		final SqmFrom registeredFromElement = fromElementsByAlias.get( alias );
+		if ( registeredFromElement != null ) {
+			if ( ! registeredFromElement.equals( selection.getSelectableNode() ) ) {
+				throw new AliasCollisionException(
+						String.format(
+								Locale.ENGLISH,
+								"Alias [%s] used in select-clause [%s] also used in from-clause [%s]",
+								alias,
+								selection.getSelectableNode(),
+								registeredFromElement
+						)
+				);
+			}
+		}
+	}
+
+	/**
+	 * Generate the select-clause for a query-spec which did not define one
+	 */
+	public SqmSelectClause generateImplicitSelectClause() {
+		// todo (6.0) : maybe limit this to the root query-spec of a select-statement?
+		// todo (6.0) : hook in strict query compliance checking
+
+		final SqmFromClause fromClause = inflightSpec.getFromClause();
+
+		if ( fromClause.getSpaces().size() > 1 ) {
+			throw new SemanticException( "Cannot create implicit select-clause : query defined multiple from-clause spaces..." );
+		}
+
+		final SqmFromClauseSpace space = fromClause.getSpaces().get( 0 );
+
+		return new SqmSelectClause( true, new SqmSelection( space.getRoot() ) );
+	}
+
+	@Override
+	public SqmFrom findPathRootByAlias(String alias) {
+		final SqmFrom registered = fromElementsByAlias.get( alias );
+		if ( registered != null ) {
+			return registered;
+		}
+
+		if ( parent != null ) {
+			return parent.getPathRootLocator().findPathRootByAlias( alias );
+		}
+
+		return null;
+	}
+
+	/**
+	 * The from-elements exposing each navigable name (any name {@link NavigableContainer#findNavigable}
+	 * resolves) are indexed as they are registered, so this is a lookup regardless of the size of
+	 * the from-clause
+	 */
+	@Override
+	public SqmFrom findPathRootByExposedNavigable(String navigableName) {
+		unqualifiedAttributeScanCount++;
+
+		SqmFrom found = fromElementsByExposedNavigable.get( navigableName );
+		if ( found != null
+				&& unqualifiedAttributeResolutionPolicy == UnqualifiedAttributeResolutionPolicy.STRICT
+				&& ambiguousExposedNavigables.contains( navigableName ) ) {
+			throw new IllegalStateException( "Multiple from-elements expose unqualified attribute : " + navigableName );
+		}
+
+		if ( found == null ) {
+			if ( parent != null ) {
+				QueryLogger.QUERY_LOGGER.debugf(
+						"Unable to resolve unqualified attribute [%s] in local from-clause; checking parent ",
+						navigableName
+				);
+				found = parent.getPathRootLocator().findPathRootByExposedNavigable( navigableName );
+			}
+		}
+
+		return found;
+	}
+}
@@ -7,27 +7,21 @@
 package org.hibernate.query.seqpoc.hql.internal;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
-import java.util.Map;
 
 import org.hibernate.NotYetImplementedFor6Exception;
 import org.hibernate.internal.util.collections.Stack;
 import org.hibernate.internal.util.collections.StandardStack;
 import org.hibernate.metamodel.model.domain.spi.EntityTypeDescriptor;
 import org.hibernate.metamodel.spi.MetamodelImplementor;
-import org.hibernate.query.AliasCollisionException;
 import org.hibernate.query.QueryLogger;
 import org.hibernate.query.SemanticException;
 import org.hibernate.query.seqpoc.hql.spi.DotIdentifierHandler;
-import org.hibernate.query.seqpoc.hql.spi.FromElementRegistry;
-import org.hibernate.query.seqpoc.hql.spi.PathRootLocator;
+import org.hibernate.query.seqpoc.hql.spi.HqlCompilationMetrics;
 import org.hibernate.query.seqpoc.hql.spi.SqmCreationContext;
 import org.hibernate.query.seqpoc.hql.spi.StatementProcessingState;
 import org.hibernate.query.seqpoc.sqm.tree.SqmJoinType;
 import org.hibernate.query.seqpoc.sqm.tree.SqmSelectStatement;
-import org.hibernate.query.seqpoc.sqm.tree.domain.SqmFrom;
 import org.hibernate.query.seqpoc.sqm.tree.domain.SqmFromClause;
 import org.hibernate.query.seqpoc.sqm.tree.domain.SqmFromClauseSpace;
 import org.hibernate.query.seqpoc.sqm.tree.domain.SqmPathCrossJoin;
@@ -35,6 +29,7 @@ import org.hibernate.query.seqpoc.sqm.tree.domain.SqmPathJoin;
 import org.hibernate.query.seqpoc.sqm.tree.domain.SqmPathRoot;
 import org.hibernate.query.seqpoc.sqm.tree.domain.SqmQualifiedPathJoin;
 import org.hibernate.query.seqpoc.sqm.tree.expression.SqmExpression;
+import org.hibernate.query.seqpoc.sqm.tree.expression.SqmImplicitParameter;
 import org.hibernate.query.seqpoc.sqm.tree.expression.SqmLiteral;
 import org.hibernate.query.seqpoc.sqm.tree.predicate.SqmComparisonPredicate;
 import org.hibernate.query.seqpoc.sqm.tree.predicate.SqmPredicate;
@@ -44,26 +39,74 @@ import org.hibernate.query.seqpoc.sqm.tree.select.SqmSelectableNode;
 import org.hibernate.query.seqpoc.sqm.tree.select.SqmSelection;
 import org.hibernate.query.spi.ComparisonOperator;
 
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
 /**
+ * Builds the SQM for one query from its parse tree.  Holds the state of interpreting
+ * that query, so an instance must not be shared or re-used; the state shared across
+ * queries is held by a {@link SemanticQueryInterpreter}
+ *
  * @author Steve Ebersole
  */
 public class SemanticQueryBuilder
 		extends HqlParserBaseVisitor
 		implements SqmCreationContext {
+
+	private final SemanticQueryInterpreter interpreter;
 	private final MetamodelImplementor domainModel;
+	private final HqlQueryShape queryShape;
+	private final HqlCompilationMetrics metrics;
+
+	// the work counted for the metrics - only reported (once) if they are enabled
+	private int identifierCount;
+	private int fromElementCount;
+	private int unqualifiedAttributeScanCount;
+
+	// for the flight recorder events, computed on first use - see `#getQueryShapeHash`
+	private HqlCompilationEvents.QueryShapeHash queryShapeHash;
 
 	private final Stack<DotIdentifierHandler> identifierConsumerStack = new StandardStack<>();
 	private final Stack<StatementProcessingState> statementProcessingStateStack = new StandardStack<>();
 
-	public SemanticQueryBuilder(MetamodelImplementor domainModel) {
-		assert domainModel != null;
+	public SemanticQueryBuilder(SemanticQueryInterpreter interpreter) {
+		this( interpreter, null );
+	}
+
+	/**
+	 * @param interpreter The interpreter building this query
+	 * @param queryShape The shape of the query, if its stripped literals should be
+	 * interpreted as implicit parameters; otherwise {@code null}
+	 */
+	public SemanticQueryBuilder(SemanticQueryInterpreter interpreter, HqlQueryShape queryShape) {
+		this( interpreter, queryShape, null );
+	}
 
-		this.domainModel = domainModel;
+	/**
+	 * @param interpreter The interpreter building this query
+	 * @param queryShape The shape of the query, if its stripped literals should be
+	 * interpreted as implicit parameters; otherwise {@code null}
+	 * @param queryShapeHash The hash of the query's shape shared with the other phases
+	 * of compiling it, if any - see {@link HqlCompilationEvents.QueryShapeHash}
+	 */
+	public SemanticQueryBuilder(
+			SemanticQueryInterpreter interpreter,
+			HqlQueryShape queryShape,
+			HqlCompilationEvents.QueryShapeHash queryShapeHash) {
+		assert interpreter != null;
+
+		this.interpreter = interpreter;
+		this.domainModel = interpreter.getDomainModel();
+		this.queryShape = queryShape;
+		this.queryShapeHash = queryShapeHash;
+		this.metrics = interpreter.getMetrics();
 
 		this.identifierConsumerStack.push(
 				new BasicDotIdentifierHandler(
 						statementProcessingStateStack::getCurrent,
-						this
+						interpreter
 				)
 		);
 	}
@@ -75,30 +118,104 @@ public class SemanticQueryBuilder
 
 	@Override
 	public SqmSelectStatement visitSelectStatement(HqlParser.SelectStatementContext ctx) {
+		final HqlCompilationEvents.Event event = HqlCompilationEvents.INTERPRETATION.begin();
+		final long start = metrics.isEnabled() ? System.nanoTime() : 0L;
+
 		final SqmSelectStatement statement = new SqmSelectStatement();
 
 		statement.setQuerySpec( visitQuerySpec( ctx.querySpec() ) );
 
+		if ( metrics.isEnabled() ) {
+			metrics.phaseCompleted( HqlCompilationMetrics.Phase.INTERPRETATION, System.nanoTime() - start );
+			metrics.increment( HqlCompilationMetrics.Counter.IDENTIFIERS_CONSUMED, identifierCount );
+			metrics.increment( HqlCompilationMetrics.Counter.FROM_ELEMENTS_REGISTERED, fromElementCount );
+			metrics.increment( HqlCompilationMetrics.Counter.UNQUALIFIED_ATTRIBUTE_SCANS, unqualifiedAttributeScanCount );
+		}
+
+		if ( event != null && event.end() ) {
+			event.commit( getQueryShapeHash( ctx ), getRootEntityNames( statement ) );
+		}
+
 		return statement;
 	}
 
+	/**
+	 * The hash of the shape of the query being interpreted, for the flight recorder events
+	 */
+	private int getQueryShapeHash(ParserRuleContext ctx) {
+		if ( queryShape != null ) {
+			return HqlCompilationEvents.queryShapeHash( queryShape );
+		}
+
+		if ( queryShapeHash == null ) {
+			queryShapeHash = new HqlCompilationEvents.QueryShapeHash();
+		}
+		return queryShapeHash.get(
+				() -> {
+					// the tokens of the query, from its parse tree
+					ParserRuleContext root = ctx;
+					while ( root.getParent() != null ) {
+						root = root.getParent();
+					}
+					final List<Token> tokens = new ArrayList<>();
+					collectTokens( root, tokens );
+					return tokens;
+				}
+		);
+	}
+
+	private static void collectTokens(ParseTree parseTree, List<Token> tokens) {
+		if ( parseTree instanceof TerminalNode ) {
+			tokens.add( ( (TerminalNode) parseTree ).getSymbol() );
+			return;
+		}
+		for ( int i = 0; i < parseTree.getChildCount(); i++ ) {
+			collectTokens( parseTree.getChild( i ), tokens );
+		}
+	}
+
+	private static String getRootEntityNames(SqmSelectStatement statement) {
+		final StringBuilder entityNames = new StringBuilder();
+		for ( SqmFromClauseSpace space : statement.getQuerySpec().getFromClause().getSpaces() ) {
+			if ( entityNames.length() > 0 ) {
+				entityNames.append( ',' );
+			}
+			entityNames.append( space.getRoot().getEntityDescriptor().getEntityName() );
+		}
+		return entityNames.toString();
+	}
+
 	@Override
 	public SqmQuerySpec visitQuerySpec(HqlParser.QuerySpecContext ctx) {
 		final SqmQuerySpec sqmQuerySpec = new SqmQuerySpec();
 
-		statementProcessingStateStack.push(
-				new QuerySpecProcessingStateImpl(
-						sqmQuerySpec,
-						statementProcessingStateStack.getCurrent()
-				)
+		final QuerySpecProcessingStateStandardImpl processingState = new QuerySpecProcessingStateStandardImpl(
+				sqmQuerySpec,
+				statementProcessingStateStack.getCurrent()
 		);
+		statementProcessingStateStack.push( processingState );
 
 		try {
-			sqmQuerySpec.setFromClause( visitFromClause( ctx.fromClause() ) );
-			sqmQuerySpec.setSelectClause( visitSelectClause(ctx.selectClause() ) );
+			if ( metrics.isEnabled() ) {
+				final long fromClauseStart = System.nanoTime();
+				sqmQuerySpec.setFromClause( visitFromClause( ctx.fromClause() ) );
+				final long selectClauseStart = System.nanoTime();
+				sqmQuerySpec.setSelectClause( visitSelectClause( ctx.selectClause() ) );
+				final long end = System.nanoTime();
+
+				metrics.phaseCompleted( HqlCompilationMetrics.Phase.FROM_CLAUSE, selectClauseStart - fromClauseStart );
+				metrics.phaseCompleted( HqlCompilationMetrics.Phase.SELECT_CLAUSE, end - selectClauseStart );
+			}
+			else {
+				sqmQuerySpec.setFromClause( visitFromClause( ctx.fromClause() ) );
+				sqmQuerySpec.setSelectClause( visitSelectClause(ctx.selectClause() ) );
+			}
 		}
 		finally {
 			statementProcessingStateStack.pop();
+
+			fromElementCount += processingState.getFromElementCount();
+			unqualifiedAttributeScanCount += processingState.getUnqualifiedAttributeScanCount();
 		}
 
 		return sqmQuerySpec;
@@ -135,6 +252,8 @@ public class SemanticQueryBuilder
 
 	@Override
 	public SqmPathRoot visitFromElementSpaceRoot(HqlParser.FromElementSpaceRootContext ctx) {
+		final HqlCompilationEvents.Event event = HqlCompilationEvents.ROOT_RESOLUTION.begin();
+
 		final String name = ctx.pathRoot().dotIdentifierSequence().getText();
 
 		QueryLogger.QUERY_LOGGER.debugf( "Handling root path - %s", name );
@@ -146,11 +265,16 @@ public class SemanticQueryBuilder
 
 		final SqmPathRoot pathRoot = new SqmPathRoot(
 				entityDescriptor,
-				visitIdentificationVariableDef( ctx.pathRoot().identificationVariableDef() )
+				visitIdentificationVariableDef( ctx.pathRoot().identificationVariableDef() ),
+				interpreter.getNavigablePathFactory().getRootPath( entityDescriptor.getNavigableName() )
 		);
 
 		statementProcessingStateStack.getCurrent().getFromElementRegistry().registerFromElement( pathRoot );
 
+		if ( event != null && event.end() ) {
+			event.commit( getQueryShapeHash( ctx ), entityDescriptor.getEntityName(), pathRoot.getExplicitAlias() );
+		}
+
 		return pathRoot;
 	}
 
@@ -213,23 +337,36 @@ public class SemanticQueryBuilder
 			HqlParser.QualifiedJoinRhsContext qualifiedJoinRhs,
 			SqmJoinType joinType,
 			boolean fetched) {
+		final HqlCompilationEvents.Event event = HqlCompilationEvents.JOIN_RESOLUTION.begin();
+
 		final QualifiedJoinPathIdentifierConsumer identifierConsumer = new QualifiedJoinPathIdentifierConsumer(
 				joinType,
 				fetched,
 				visitIdentificationVariableDef( qualifiedJoinRhs.identificationVariableDef() ),
 				statementProcessingStateStack.getCurrent(),
-				this
+				interpreter
 		);
 
 		identifierConsumerStack.push( identifierConsumer );
 
+		final SqmQualifiedPathJoin join;
 		try {
 			qualifiedJoinRhs.path().accept( this );
-			return (SqmQualifiedPathJoin) identifierConsumer.getConsumedPart();
+			join = (SqmQualifiedPathJoin) identifierConsumer.getConsumedPart();
 		}
 		finally {
 			identifierConsumerStack.pop();
 		}
+
+		if ( event != null && event.end() ) {
+			event.commit(
+					getQueryShapeHash( qualifiedJoinRhs ),
+					join.getNavigablePath().getFullPath(),
+					join.getExplicitAlias()
+			);
+		}
+
+		return join;
 	}
 
 	@Override
@@ -268,21 +405,10 @@ public class SemanticQueryBuilder
 	}
 
 	private SqmSelectClause generateImplicitSelectClause() {
-		// todo (6.0) : maybe limit this to the root query-spec of a select-statement?
-		// todo (6.0) : hook in strict query compliance checking
-
 		final StatementProcessingState processingState = statementProcessingStateStack.getCurrent();
-		assert processingState instanceof QuerySpecProcessingStateImpl;
-
-		final SqmFromClause fromClause = ( (QuerySpecProcessingStateImpl) processingState ).getInflightQuerySpec().getFromClause();
-
-		if ( fromClause.getSpaces().size() > 1 ) {
-			throw new SemanticException( "Cannot create implicit select-clause : query defined multiple from-clause spaces..." );
-		}
+		assert processingState instanceof QuerySpecProcessingStateStandardImpl;
 
-		final SqmFromClauseSpace space = fromClause.getSpaces().get( 0 );
-
-		return new SqmSelectClause( true, new SqmSelection( space.getRoot() ) );
+		return ( (QuerySpecProcessingStateStandardImpl) processingState ).generateImplicitSelectClause();
 	}
 
 	@Override
@@ -324,7 +450,14 @@ public class SemanticQueryBuilder
 
 
 	@Override
-	public SqmLiteral visitLiteralExpression(HqlParser.LiteralExpressionContext ctx) {
+	public SqmExpression visitLiteralExpression(HqlParser.LiteralExpressionContext ctx) {
+		if ( queryShape != null ) {
+			final int position = queryShape.getLiteralPosition( ctx.literal().getStart().getStartIndex() );
+			if ( position >= 0 ) {
+				return new SqmImplicitParameter( position );
+			}
+		}
+
 		if ( ctx.literal().STRING_LITERAL() != null ) {
 			return new SqmLiteral( ctx.literal().STRING_LITERAL().getText() );
 		}
@@ -352,23 +485,19 @@ public class SemanticQueryBuilder
 
 	@Override
 	public Object visitDotIdentifierSequence(HqlParser.DotIdentifierSequenceContext ctx) {
-		final int continuations = ctx.dotIdentifierSequenceContinuation().size();
-
-		identifierConsumerStack.getCurrent().consumeIdentifier(
-				ctx.identifier().getText(),
-				true,
-				continuations == 0
-		);
-
-		int i = 1;
-		for ( HqlParser.DotIdentifierSequenceContinuationContext continuation : ctx.dotIdentifierSequenceContinuation() ) {
-			identifierConsumerStack.getCurrent().consumeIdentifier(
-					continuation.identifier().getText(),
-					false,
-					i++ >= continuations
-			);
+		// note : `identifier` is a single token - use its text directly rather than
+		// the rule's `#getText` which copies it again
+		final List<HqlParser.DotIdentifierSequenceContinuationContext> continuations = ctx.dotIdentifierSequenceContinuation();
+
+		final String[] identifiers = new String[ continuations.size() + 1 ];
+		identifiers[0] = ctx.identifier().getStart().getText();
+		for ( int i = 0; i < continuations.size(); i++ ) {
+			identifiers[i + 1] = continuations.get( i ).identifier().getStart().getText();
 		}
 
+		identifierCount += identifiers.length;
+		identifierConsumerStack.getCurrent().consumeIdentifierSequence( identifiers );
+
 		// generally speaking we don't care about the return - its the consumption that matters
 		return ctx;
 	}
@@ -393,149 +522,4 @@ public class SemanticQueryBuilder
 		);
 	}
 
-
-
-
-
-
-
-
-	private class QuerySpecProcessingStateImpl implements StatementProcessingState, PathRootLocator, FromElementRegistry {
-		// todo (6.0) : ultimately `parent` here needs to be able to handle DML statements as well
-
-		private final SqmQuerySpec inflightSpec;
-		private final StatementProcessingState parent;
-
-		private final List<SqmFrom> fromElements = new ArrayList<>();
-		private final Map<String, SqmFrom> fromElementsByAlias = new HashMap<>();
-		private final Map<String, SqmSelection> selectionsByAlias = new HashMap<>();
-
-		public QuerySpecProcessingStateImpl(SqmQuerySpec inflightSpec, StatementProcessingState parent) {
-			assert inflightSpec != null;
-
-			this.inflightSpec = inflightSpec;
-			this.parent = parent;
-		}
-
-		public SqmQuerySpec getInflightQuerySpec() {
-			return inflightSpec;
-		}
-
-		@Override
-		public FromElementRegistry getFromElementRegistry() {
-			return this;
-		}
-
-		@Override
-		public PathRootLocator getPathRootLocator() {
-			return this;
-		}
-
-		public void registerFromElement(SqmFrom sqmFrom) {
-			fromElements.add( sqmFrom );
-
-			final String alias = sqmFrom.getExplicitAlias();
-			if ( alias == null ) {
-				return;
-			}
-
-			final SqmFrom previous = fromElementsByAlias.put( alias, sqmFrom );
-			if ( previous != null ) {
-				throw new AliasCollisionException(
-						String.format(
-								Locale.ENGLISH,
-								"Alias [%s] used for multiple from-clause-elements : %s, %s",
-								alias,
-								previous,
-								sqmFrom
-						)
-				);
-			}
-		}
-
-		public void registerSelection(SqmSelection selection) {
-			if ( selection.getAlias() != null ) {
-				checkResultVariable( selection );
-				selectionsByAlias.put( selection.getAlias(), selection );
-			}
-		}
-
-		private void checkResultVariable(SqmSelection selection) {
-			final String alias = selection.getAlias();
-
-			if ( selectionsByAlias.containsKey( alias ) ) {
-				throw new AliasCollisionException(
-						String.format(
-								Locale.ENGLISH,
-								"Alias [%s] is already used in same select clause",
-								alias
-						)
-				);
-			}
-
-			final SqmFrom registeredFromElement = fromElementsByAlias.get( alias );
-			if ( registeredFromElement != null ) {
-				if ( ! registeredFromElement.equals( selection.getSelectableNode() ) ) {
-					throw new AliasCollisionException(
-							String.format(
-									Locale.ENGLISH,
-									"Alias [%s] used in select-clause [%s] also used in from-clause [%s]",
-									alias,
-									selection.getSelectableNode(),
-									registeredFromElement
-							)
-					);
-				}
-			}
-		}
-
-		@Override
-		public SqmFrom findPathRootByAlias(String alias) {
-			final SqmFrom registered = fromElementsByAlias.get( alias );
-			if ( registered != null ) {
-				return registered;
-			}
-
-			if ( parent != null ) {
-				return parent.getPathRootLocator().findPathRootByAlias( alias );
-			}
-
-			return null;
-		}
-
-		@Override
-		public SqmFrom findPathRootByExposedNavigable(String navigableName) {
-
-			// todo (6.0) : atm this checks every from-element every time, the idea being to make sure there is only one such element
-			//		obviously that scales poorly across larger from-clauses.  Another option (configurable alt?) would be to
-			//		simply pick the first one as a perf optimization
-
-			SqmFrom found = null;
-			for ( SqmFrom fromElement : fromElements ) {
-				if ( definesAttribute( fromElement, navigableName ) ) {
-					if ( found != null ) {
-						throw new IllegalStateException( "Multiple from-elements expose unqualified attribute : " + navigableName );
-					}
-					found = fromElement;
-				}
-			}
-
-			if ( found == null ) {
-				if ( parent != null ) {
-					QueryLogger.QUERY_LOGGER.debugf(
-							"Unable to resolve unqualified attribute [%s] in local from-clause; checking parent ",
-							navigableName
-					);
-					found = parent.getPathRootLocator().findPathRootByExposedNavigable( navigableName );
-				}
-			}
-
-			return found;
-		}
-
-		private boolean definesAttribute(SqmFrom potentialSource, String name) {
-			return potentialSource.getReferencedNavigable().findNavigable( name ) != null;
-		}
-	}
-
 }
@@ -0,0 +1,153 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.seqpoc.hql.internal;
+
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+import org.hibernate.query.NavigablePathFactory;
+import org.hibernate.query.seqpoc.hql.spi.HqlCompilationMetrics;
+import org.hibernate.query.seqpoc.hql.spi.SqmCreationContext;
+import org.hibernate.query.seqpoc.sqm.tree.SqmSelectStatement;
+
+/**
+ * Interprets HQL into SQM against a domain model.  Meant to be created once per
+ * domain model and shared: it only holds immutable (or thread-safe) state about the
+ * domain model - its entity-name trie, navigable path index, etc - so it can be used
+ * by any number of threads concurrently.  Some of that state (e.g. the navigable path
+ * index) is built as queries need it, and is released along with the interpreter.
+ * <p/>
+ * All the state of interpreting one query (the processing state and identifier
+ * consumer stacks) lives in a {@link SemanticQueryBuilder} created per query, which
+ * is just that state plus a reference to the interpreter.  The interpreter is passed
+ * along to everything interpreting parts of the query (the identifier consumers), so
+ * its state is resolved once per interpreter rather than once per query.
+ *
+ * @author Steve Ebersole
+ */
+public class SemanticQueryInterpreter implements SqmCreationContext {
+	private final MetamodelImplementor domainModel;
+	private final HqlParseTreeBuilder parseTreeBuilder;
+	private final HqlCompilationMetrics metrics;
+
+	private final NavigablePathFactory navigablePathFactory;
+	private final EntityNameTrie entityNameTrie;
+	private final NavigablePathIndex navigablePathIndex;
+	private final JavaConstantIndex javaConstantIndex;
+
+	public SemanticQueryInterpreter(MetamodelImplementor domainModel) {
+		this( domainModel, HqlParseTreeBuilder.INSTANCE );
+	}
+
+	public SemanticQueryInterpreter(MetamodelImplementor domainModel, HqlParseTreeBuilder parseTreeBuilder) {
+		this( domainModel, parseTreeBuilder, HqlCompilationMetrics.DISABLED );
+	}
+
+	/**
+	 * @param domainModel The domain model queries are interpreted against
+	 * @param parseTreeBuilder The builder parsing the queries
+	 * @param metrics The metrics to report the parsing and interpretation of queries to
+	 */
+	public SemanticQueryInterpreter(
+			MetamodelImplementor domainModel,
+			HqlParseTreeBuilder parseTreeBuilder,
+			HqlCompilationMetrics metrics) {
+		assert domainModel != null;
+		assert parseTreeBuilder != null;
+		assert metrics != null;
+
+		this.domainModel = domainModel;
+		this.parseTreeBuilder = parseTreeBuilder;
+		this.metrics = metrics;
+
+		this.navigablePathFactory = NavigablePathFactory.forDomainModel( domainModel );
+		this.entityNameTrie = EntityNameTrie.forDomainModel( domainModel );
+		this.navigablePathIndex = new NavigablePathIndex();
+		this.javaConstantIndex = new JavaConstantIndex( domainModel );
+	}
+
+	/**
+	 * Parse and interpret the given HQL.  Trivial root-only queries are interpreted
+	 * without parsing - see {@link TrivialHqlRecognizer}
+	 */
+	public SqmSelectStatement interpret(String hql) {
+		return interpret( hql, null );
+	}
+
+	/**
+	 * Parse and interpret the given HQL, as {@link #interpret(String)}, sharing the
+	 * given hash of the query's shape (if any) between the events of compiling it - see
+	 * {@link HqlCompilationEvents.QueryShapeHash}
+	 */
+	public SqmSelectStatement interpret(String hql, HqlCompilationEvents.QueryShapeHash queryShapeHash) {
+		final long start = metrics.isEnabled() ? System.nanoTime() : 0L;
+		final SqmSelectStatement trivial = TrivialHqlRecognizer.interpret( hql, this );
+		if ( trivial != null ) {
+			if ( metrics.isEnabled() ) {
+				metrics.phaseCompleted( HqlCompilationMetrics.Phase.INTERPRETATION, System.nanoTime() - start );
+				metrics.increment( HqlCompilationMetrics.Counter.TRIVIAL_INTERPRETATIONS, 1 );
+			}
+			return trivial;
+		}
+
+		return new SemanticQueryBuilder( this, null, queryShapeHash ).visitSelectStatement(
+				parseTreeBuilder.parseSelectStatement( hql, queryShapeHash, metrics )
+		);
+	}
+
+	/**
+	 * Parse and interpret the given shape's query, with its stripped literals as
+	 * implicit parameters.  The result is the same for all queries of the shape, and
+	 * so can be shared between them
+	 */
+	public SqmSelectStatement interpret(HqlQueryShape queryShape) {
+		if ( queryShape.getLiteralCount() == 0 ) {
+			return interpret( queryShape.getHql() );
+		}
+
+		return new SemanticQueryBuilder( this, queryShape ).visitSelectStatement(
+				parseTreeBuilder.parseSelectStatement( queryShape.getHql(), null, metrics )
+		);
+	}
+
+	/**
+	 * Interpret the given parse tree
+	 */
+	public SqmSelectStatement interpret(HqlParser.SelectStatementContext parseTree) {
+		return new SemanticQueryBuilder( this ).visitSelectStatement( parseTree );
+	}
+
+	@Override
+	public MetamodelImplementor getDomainModel() {
+		return domainModel;
+	}
+
+	public HqlParseTreeBuilder getParseTreeBuilder() {
+		return parseTreeBuilder;
+	}
+
+	/**
+	 * The metrics reported to while parsing and interpreting queries
+	 */
+	public HqlCompilationMetrics getMetrics() {
+		return metrics;
+	}
+
+	public NavigablePathFactory getNavigablePathFactory() {
+		return navigablePathFactory;
+	}
+
+	public EntityNameTrie getEntityNameTrie() {
+		return entityNameTrie;
+	}
+
+	public NavigablePathIndex getNavigablePathIndex() {
+		return navigablePathIndex;
+	}
+
+	public JavaConstantIndex getJavaConstantIndex() {
+		return javaConstantIndex;
+	}
+}
@@ -0,0 +1,681 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.seqpoc.hql.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.hibernate.NotYetImplementedFor6Exception;
+import org.hibernate.internal.util.collections.Stack;
+import org.hibernate.internal.util.collections.StandardStack;
+import org.hibernate.metamodel.model.domain.spi.EntityTypeDescriptor;
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+import org.hibernate.query.QueryLogger;
+import org.hibernate.query.SemanticException;
+import org.hibernate.query.seqpoc.hql.spi.DotIdentifierHandler;
+import org.hibernate.query.seqpoc.hql.spi.SqmCreationContext;
+import org.hibernate.query.seqpoc.hql.spi.StatementProcessingState;
+import org.hibernate.query.seqpoc.sqm.tree.SqmJoinType;
+import org.hibernate.query.seqpoc.sqm.tree.SqmSelectStatement;
+import org.hibernate.query.seqpoc.sqm.tree.domain.SqmFromClause;
+import org.hibernate.query.seqpoc.sqm.tree.domain.SqmFromClauseSpace;
+import org.hibernate.query.seqpoc.sqm.tree.domain.SqmPathRoot;
+import org.hibernate.query.seqpoc.sqm.tree.domain.SqmQualifiedPathJoin;
+import org.hibernate.query.seqpoc.sqm.tree.expression.SqmExpression;
+import org.hibernate.query.seqpoc.sqm.tree.expression.SqmLiteral;
+import org.hibernate.query.seqpoc.sqm.tree.predicate.SqmComparisonPredicate;
+import org.hibernate.query.seqpoc.sqm.tree.predicate.SqmPredicate;
+import org.hibernate.query.seqpoc.sqm.tree.select.SqmQuerySpec;
+import org.hibernate.query.seqpoc.sqm.tree.select.SqmSelectClause;
+import org.hibernate.query.seqpoc.sqm.tree.select.SqmSelectableNode;
+import org.hibernate.query.seqpoc.sqm.tree.select.SqmSelection;
+import org.hibernate.query.spi.ComparisonOperator;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.RuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+
+/**
+ * Builds the SQM tree directly from parser callbacks while parsing, as opposed to
+ * {@link SemanticQueryBuilder} which walks a fully built parse tree afterwards.  Meant
+ * to be used with {@link HqlParser#setBuildParseTree parse-tree building} disabled -
+ * see {@link HqlParseTreeBuilder#buildSelectStatement}.
+ * <p/>
+ * Produces the same SQM as {@link SemanticQueryBuilder}.  Without a parse tree the
+ * contexts passed to the callbacks have no children; only their start/stop tokens and
+ * parent are available.  So:
+ *
+ * 		* identifiers are read directly from the token stream
+ * 		* the select-clause is recognized before the from-clause, but can only be
+ * 			interpreted afterwards.  Expressions are therefore collected as deferred
+ * 			nodes and only resolved once their context allows it, in the same order
+ * 			as the visitor would
+ * 		* the where-clause is (as with the visitor) not yet interpreted
+ *
+ * Instances are not thread-safe and handle a single query
+ *
+ * @author Steve Ebersole
+ */
+public class SqmTreeCreationListener extends HqlParserBaseListener implements SqmCreationContext {
+	private final SemanticQueryInterpreter interpreter;
+	private final MetamodelImplementor domainModel;
+	private final TokenStream tokenStream;
+
+	private final Stack<DotIdentifierHandler> identifierConsumerStack = new StandardStack<>();
+	private final Stack<StatementProcessingState> statementProcessingStateStack = new StandardStack<>();
+
+	private final List<PendingNode> pendingNodes = new ArrayList<>();
+
+	private int ignoreDepth;
+
+	private SqmSelectStatement selectStatement;
+	private SqmQuerySpec querySpec;
+
+	private SqmFromClause fromClause;
+	private SqmFromClauseSpace fromClauseSpace;
+	private List<PendingSelection> selections;
+
+	private IdentifierSequence lastSequence;
+	private IdentifierSequence lastPath;
+	private ParserRuleContext aliasOwner;
+	private String alias;
+
+	private SqmJoinType joinType;
+	private String joinTypeError;
+	private SqmQualifiedPathJoin join;
+	private PendingNode joinPredicate;
+
+	public SqmTreeCreationListener(SemanticQueryInterpreter interpreter, TokenStream tokenStream) {
+		assert interpreter != null;
+
+		this.interpreter = interpreter;
+		this.domainModel = interpreter.getDomainModel();
+		this.tokenStream = tokenStream;
+
+		reset();
+	}
+
+	@Override
+	public MetamodelImplementor getDomainModel() {
+		return domainModel;
+	}
+
+	/**
+	 * The built statement, or {@code null} if the parse did not (yet) complete
+	 */
+	public SqmSelectStatement getSelectStatement() {
+		return selectStatement;
+	}
+
+	/**
+	 * Discard any state from a previous (partial) parse - e.g. a failed SLL attempt
+	 */
+	public void reset() {
+		identifierConsumerStack.clear();
+		identifierConsumerStack.push(
+				new BasicDotIdentifierHandler(
+						statementProcessingStateStack::getCurrent,
+						interpreter
+				)
+		);
+		statementProcessingStateStack.clear();
+		pendingNodes.clear();
+		ignoreDepth = 0;
+		selectStatement = null;
+		querySpec = null;
+		fromClause = null;
+		fromClauseSpace = null;
+		selections = null;
+		lastSequence = null;
+		lastPath = null;
+		aliasOwner = null;
+		alias = null;
+		joinType = null;
+		joinTypeError = null;
+		join = null;
+		joinPredicate = null;
+	}
+
+	@Override
+	public void exitSelectStatement(HqlParser.SelectStatementContext ctx) {
+		final SqmSelectStatement statement = new SqmSelectStatement();
+		statement.setQuerySpec( querySpec );
+		selectStatement = statement;
+	}
+
+	@Override
+	public void enterQuerySpec(HqlParser.QuerySpecContext ctx) {
+		if ( ignoreDepth > 0 ) {
+			return;
+		}
+
+		if ( !statementProcessingStateStack.isEmpty() ) {
+			throw new NotYetImplementedFor6Exception( "Subqueries are not yet supported by single-pass SQM creation" );
+		}
+
+		statementProcessingStateStack.push(
+				new QuerySpecProcessingStateStandardImpl(
+						new SqmQuerySpec(),
+						statementProcessingStateStack.getCurrent()
+				)
+		);
+	}
+
+	@Override
+	public void exitQuerySpec(HqlParser.QuerySpecContext ctx) {
+		if ( ignoreDepth > 0 ) {
+			return;
+		}
+
+		// the from-clause has been fully processed at this point, so we can
+		// now interpret the (deferred) select-clause
+		final QuerySpecProcessingStateStandardImpl processingState =
+				(QuerySpecProcessingStateStandardImpl) statementProcessingStateStack.getCurrent();
+		final SqmQuerySpec sqmQuerySpec = processingState.getInflightQuerySpec();
+
+		if ( selections == null ) {
+			sqmQuerySpec.setSelectClause( processingState.generateImplicitSelectClause() );
+		}
+		else {
+			final SqmSelectClause selectClause = new SqmSelectClause();
+			for ( PendingSelection selection : selections ) {
+				selectClause.addSelection(
+						new SqmSelection( (SqmSelectableNode) selection.selectable.get(), selection.alias )
+				);
+			}
+			sqmQuerySpec.setSelectClause( selectClause );
+			selections = null;
+		}
+
+		statementProcessingStateStack.pop();
+		querySpec = sqmQuerySpec;
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// FROM-clause
+
+	@Override
+	public void enterFromClause(HqlParser.FromClauseContext ctx) {
+		if ( ignoreDepth > 0 ) {
+			return;
+		}
+
+		fromClause = new SqmFromClause();
+	}
+
+	@Override
+	public void exitFromClause(HqlParser.FromClauseContext ctx) {
+		if ( ignoreDepth > 0 ) {
+			return;
+		}
+
+		currentQuerySpec().setFromClause( fromClause );
+		fromClause = null;
+		fromClauseSpace = null;
+	}
+
+	@Override
+	public void enterFromElementSpace(HqlParser.FromElementSpaceContext ctx) {
+		if ( ignoreDepth > 0 ) {
+			return;
+		}
+
+		fromClauseSpace = fromClause.makeSpace();
+	}
+
+	@Override
+	public void exitPathRoot(HqlParser.PathRootContext ctx) {
+		if ( ignoreDepth > 0 ) {
+			return;
+		}
+
+		final String name = String.join( ".", lastSequence.identifiers );
+
+		QueryLogger.QUERY_LOGGER.debugf( "Handling root path - %s", name );
+
+		final EntityTypeDescriptor entityDescriptor = domainModel.findEntityDescriptor( name );
+		if ( entityDescriptor == null ) {
+			throw new RuntimeException( "Could not locate entity - " + name );
+		}
+
+		final SqmPathRoot pathRoot = new SqmPathRoot(
+				entityDescriptor,
+				consumeAlias( ctx ),
+				interpreter.getNavigablePathFactory().getRootPath( entityDescriptor.getNavigableName() )
+		);
+
+		statementProcessingStateStack.getCurrent().getFromElementRegistry().registerFromElement( pathRoot );
+
+		fromClauseSpace.setRoot( pathRoot );
+	}
+
+	@Override
+	public void exitIdentificationVariableDef(HqlParser.IdentificationVariableDefContext ctx) {
+		if ( ignoreDepth > 0 ) {
+			return;
+		}
+
+		// `AS identifier` or `IDENTIFIER` - either way the alias is the last token
+		aliasOwner = ctx.getParent();
+		alias = ctx.stop.getText();
+	}
+
+	private String consumeAlias(ParserRuleContext owner) {
+		if ( aliasOwner != owner ) {
+			return null;
+		}
+
+		final String consumed = alias;
+		aliasOwner = null;
+		alias = null;
+		return consumed;
+	}
+
+	@Override
+	public void enterCrossJoin(HqlParser.CrossJoinContext ctx) {
+		if ( ignoreDepth > 0 ) {
+			return;
+		}
+
+		throw new IllegalStateException( "Not yet implemented" );
+	}
+
+	@Override
+	public void enterJpaCollectionJoin(HqlParser.JpaCollectionJoinContext ctx) {
+		if ( ignoreDepth > 0 ) {
+			return;
+		}
+
+		throw new NotYetImplementedFor6Exception( "Not yet implemented" );
+	}
+
+	@Override
+	public void exitJoinTypeQualifier(HqlParser.JoinTypeQualifierContext ctx) {
+		if ( ignoreDepth > 0 ) {
+			return;
+		}
+
+		boolean outer = false;
+		String unsupported = null;
+		for ( int i = ctx.start.getTokenIndex(); i <= ctx.stop.getTokenIndex(); i++ ) {
+			switch ( tokenStream.get( i ).getType() ) {
+				case HqlParser.OUTER: {
+					outer = true;
+					break;
+				}
+				case HqlParser.FULL: {
+					unsupported = "FULL";
+					break;
+				}
+				case HqlParser.RIGHT: {
+					unsupported = "RIGHT";
+					break;
+				}
+			}
+		}
+
+		// for outer joins, only left outer joins are currently supported
+		joinType = outer ? SqmJoinType.LEFT : SqmJoinType.INNER;
+		joinTypeError = outer ? unsupported : null;
+	}
+
+	@Override
+	public void exitQualifiedJoinRhs(HqlParser.QualifiedJoinRhsContext ctx) {
+		if ( ignoreDepth > 0 ) {
+			return;
+		}
+
+		final String joinAlias = consumeAlias( ctx );
+
+		if ( joinTypeError != null ) {
+			// reported once the complete join has been recognized
+			return;
+		}
+
+		final QualifiedJoinPathIdentifierConsumer identifierConsumer = new QualifiedJoinPathIdentifierConsumer(
+				joinType,
+				previousTokenType( ctx ) == HqlParser.FETCH,
+				joinAlias,
+				statementProcessingStateStack.getCurrent(),
+				interpreter
+		);
+
+		identifierConsumerStack.push( identifierConsumer );
+
+		try {
+			consumeIdentifiers( pathIdentifiers( ctx ) );
+			join = (SqmQualifiedPathJoin) identifierConsumer.getConsumedPart();
+		}
+		finally {
+			identifierConsumerStack.pop();
+		}
+	}
+
+	@Override
+	public void exitQualifiedJoinPredicate(HqlParser.QualifiedJoinPredicateContext ctx) {
+		if ( ignoreDepth > 0 ) {
+			return;
+		}
+
+		final List<PendingNode> nodes = popNodes( ctx );
+		joinPredicate = nodes.isEmpty() ? null : nodes.get( 0 );
+	}
+
+	@Override
+	public void exitQualifiedJoin(HqlParser.QualifiedJoinContext ctx) {
+		if ( ignoreDepth > 0 ) {
+			return;
+		}
+
+		try {
+			if ( joinTypeError != null ) {
+				throw new SemanticException(
+						joinTypeError + " OUTER joins are not yet supported : " + tokenStream.getText( ctx.start, ctx.stop )
+				);
+			}
+
+			if ( joinPredicate != null ) {
+				join.setJoinPredicate( (SqmPredicate) joinPredicate.producer.get() );
+			}
+
+			fromClauseSpace.addJoin( join );
+		}
+		finally {
+			joinType = null;
+			joinTypeError = null;
+			join = null;
+			joinPredicate = null;
+		}
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// SELECT-clause
+
+	@Override
+	public void enterSelectClause(HqlParser.SelectClauseContext ctx) {
+		if ( ignoreDepth > 0 ) {
+			return;
+		}
+
+		selections = new ArrayList<>();
+	}
+
+	@Override
+	public void exitSelectExpression(HqlParser.SelectExpressionContext ctx) {
+		if ( ignoreDepth > 0 ) {
+			return;
+		}
+
+		final List<PendingNode> nodes = popNodes( ctx );
+		if ( nodes.size() == 1 && nodes.get( 0 ).owner.parent == ctx ) {
+			pendingNodes.add( new PendingNode( ctx, nodes.get( 0 ).producer ) );
+		}
+		else {
+			pendingNodes.add(
+					new PendingNode(
+							ctx,
+							() -> {
+								throw new UnsupportedOperationException( "Support for selection types other than `expression` not yet implemented" );
+							}
+					)
+			);
+		}
+	}
+
+	@Override
+	public void exitResultIdentifier(HqlParser.ResultIdentifierContext ctx) {
+		if ( ignoreDepth > 0 ) {
+			return;
+		}
+
+		aliasOwner = ctx.getParent();
+		alias = ctx.stop.getText();
+	}
+
+	@Override
+	public void exitSelection(HqlParser.SelectionContext ctx) {
+		if ( ignoreDepth > 0 ) {
+			return;
+		}
+
+		selections.add( new PendingSelection( popNodes( ctx ).get( 0 ).producer, consumeAlias( ctx ) ) );
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// WHERE-clause
+
+	@Override
+	public void enterWhereClause(HqlParser.WhereClauseContext ctx) {
+		// not yet interpreted by SemanticQueryBuilder either
+		ignoreDepth++;
+	}
+
+	@Override
+	public void exitWhereClause(HqlParser.WhereClauseContext ctx) {
+		ignoreDepth--;
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// Expressions and predicates
+
+	@Override
+	public void exitLiteralExpression(HqlParser.LiteralExpressionContext ctx) {
+		if ( ignoreDepth > 0 ) {
+			return;
+		}
+
+		final Token literal = ctx.start;
+		if ( literal.getType() == HqlParser.STRING_LITERAL ) {
+			pendingNodes.add( new PendingNode( ctx, () -> new SqmLiteral( literal.getText() ) ) );
+		}
+		else {
+			pendingNodes.add(
+					new PendingNode(
+							ctx,
+							() -> {
+								throw new NotYetImplementedFor6Exception();
+							}
+					)
+			);
+		}
+	}
+
+	@Override
+	public void exitPathExpression(HqlParser.PathExpressionContext ctx) {
+		if ( ignoreDepth > 0 ) {
+			return;
+		}
+
+		final String[] identifiers = pathIdentifiers( ctx );
+		pendingNodes.add(
+				new PendingNode(
+						ctx,
+						() -> {
+							consumeIdentifiers( identifiers );
+							return (SqmExpression) identifierConsumerStack.getCurrent().getConsumedPart();
+						}
+				)
+		);
+	}
+
+	@Override
+	public void exitEqualityPredicate(HqlParser.EqualityPredicateContext ctx) {
+		if ( ignoreDepth > 0 ) {
+			return;
+		}
+
+		final List<PendingNode> operands = popNodes( ctx );
+		final Supplier<?> lhs = operands.get( 0 ).producer;
+		final Supplier<?> rhs = operands.get( 1 ).producer;
+
+		pendingNodes.add(
+				new PendingNode(
+						ctx,
+						() -> new SqmComparisonPredicate(
+								(SqmExpression) lhs.get(),
+								ComparisonOperator.EQUAL,
+								(SqmExpression) rhs.get()
+						)
+				)
+		);
+	}
+
+	@Override
+	public void exitEveryRule(ParserRuleContext ctx) {
+		if ( ignoreDepth > 0 ) {
+			return;
+		}
+
+		if ( ctx instanceof HqlParser.PathExpressionContext
+				|| ctx instanceof HqlParser.LiteralExpressionContext
+				|| ctx instanceof HqlParser.EqualityPredicateContext ) {
+			return;
+		}
+
+		if ( ctx instanceof HqlParser.ExpressionContext || ctx instanceof HqlParser.PredicateContext ) {
+			// not (yet) supported - replace any nested nodes with a failure reported if the node is used
+			popNodes( ctx );
+			pendingNodes.add(
+					new PendingNode(
+							ctx,
+							() -> {
+								throw new NotYetImplementedFor6Exception( "Not yet implemented : " + ctx.getClass().getSimpleName() );
+							}
+					)
+			);
+		}
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// Path structures
+
+	@Override
+	public void exitDotIdentifierSequence(HqlParser.DotIdentifierSequenceContext ctx) {
+		if ( ignoreDepth > 0 ) {
+			return;
+		}
+
+		// `identifier (DOT identifier)*` where `identifier` is always a single token
+		final int start = ctx.start.getTokenIndex();
+		final String[] identifiers = new String[ ( ctx.stop.getTokenIndex() - start ) / 2 + 1 ];
+		for ( int i = 0; i < identifiers.length; i++ ) {
+			identifiers[i] = tokenStream.get( start + i * 2 ).getText();
+		}
+
+		lastSequence = new IdentifierSequence( ctx, identifiers );
+	}
+
+	@Override
+	public void exitPath(HqlParser.PathContext ctx) {
+		if ( ignoreDepth > 0 ) {
+			return;
+		}
+
+		// only `generalPathFragment` without index access is supported : path -> generalPathFragment -> dotIdentifierSequence
+		final boolean simplePath = lastSequence != null
+				&& lastSequence.owner.parent instanceof HqlParser.GeneralPathFragmentContext
+				&& lastSequence.owner.parent.parent == ctx
+				&& lastSequence.owner.stop == ctx.stop;
+
+		lastPath = new IdentifierSequence( ctx, simplePath ? lastSequence.identifiers : null );
+	}
+
+	private String[] pathIdentifiers(ParserRuleContext pathOwner) {
+		if ( lastPath == null || lastPath.owner.parent != pathOwner || lastPath.identifiers == null ) {
+			throw new NotYetImplementedFor6Exception( "Not yet implemented : " + tokenStream.getText( pathOwner.start, pathOwner.stop ) );
+		}
+		return lastPath.identifiers;
+	}
+
+	private void consumeIdentifiers(String[] identifiers) {
+		identifierConsumerStack.getCurrent().consumeIdentifierSequence( identifiers );
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// Helpers
+
+	private SqmQuerySpec currentQuerySpec() {
+		return ( (QuerySpecProcessingStateStandardImpl) statementProcessingStateStack.getCurrent() ).getInflightQuerySpec();
+	}
+
+	private int previousTokenType(ParserRuleContext ctx) {
+		final int index = ctx.start.getTokenIndex() - 1;
+		return index < 0 ? Token.INVALID_TYPE : tokenStream.get( index ).getType();
+	}
+
+	/**
+	 * Remove (and return, in parse order) the pending nodes created while
+	 * recognizing the given context
+	 */
+	private List<PendingNode> popNodes(ParserRuleContext owner) {
+		int first = pendingNodes.size();
+		while ( first > 0 && isDescendant( pendingNodes.get( first - 1 ).owner, owner ) ) {
+			first--;
+		}
+
+		if ( first == pendingNodes.size() ) {
+			return Collections.emptyList();
+		}
+
+		final List<PendingNode> nested = pendingNodes.subList( first, pendingNodes.size() );
+		final List<PendingNode> popped = new ArrayList<>( nested );
+		nested.clear();
+		return popped;
+	}
+
+	private static boolean isDescendant(RuleContext node, RuleContext ancestor) {
+		for ( RuleContext current = node.parent; current != null; current = current.parent ) {
+			if ( current == ancestor ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * A node (expression, predicate, selection) which was recognized but whose
+	 * interpretation needs to wait until its context is complete
+	 */
+	private static class PendingNode {
+		private final ParserRuleContext owner;
+		private final Supplier<?> producer;
+
+		private PendingNode(ParserRuleContext owner, Supplier<?> producer) {
+			this.owner = owner;
+			this.producer = producer;
+		}
+	}
+
+	private static class PendingSelection {
+		private final Supplier<?> selectable;
+		private final String alias;
+
+		private PendingSelection(Supplier<?> selectable, String alias) {
+			this.selectable = selectable;
+			this.alias = alias;
+		}
+	}
+
+	private static class IdentifierSequence {
+		private final ParserRuleContext owner;
+		private final String[] identifiers;
+
+		private IdentifierSequence(ParserRuleContext owner, String[] identifiers) {
+			this.owner = owner;
+			this.identifiers = identifiers;
+		}
+	}
+}
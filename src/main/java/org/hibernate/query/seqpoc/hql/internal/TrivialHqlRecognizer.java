@@ -0,0 +1,248 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.seqpoc.hql.internal;
+
+import org.hibernate.metamodel.model.domain.spi.EntityTypeDescriptor;
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+import org.hibernate.query.NavigablePathFactory;
+import org.hibernate.query.QueryLogger;
+import org.hibernate.query.seqpoc.sqm.tree.SqmSelectStatement;
+import org.hibernate.query.seqpoc.sqm.tree.domain.SqmFromClause;
+import org.hibernate.query.seqpoc.sqm.tree.domain.SqmPathRoot;
+import org.hibernate.query.seqpoc.sqm.tree.select.SqmQuerySpec;
+import org.hibernate.query.seqpoc.sqm.tree.select.SqmSelectClause;
+import org.hibernate.query.seqpoc.sqm.tree.select.SqmSelection;
+
+import org.antlr.v4.runtime.misc.IntervalSet;
+
+/**
+ * Hand-written recognizer for the trivial, root-only query shapes which make up
+ * a large share of typical HQL traffic:
+ *
+ * <pre>
+ *     from Order
+ *     from Order o
+ *     from Order as o
+ *     select o from Order o
+ *     select o from Order as o
+ * </pre>
+ *
+ * These are recognized directly from the query string and interpreted without
+ * running the ANTLR lexer and parser at all.  The resulting SQM is the same as
+ * the one {@link SemanticQueryBuilder} builds for them.
+ * <p/>
+ * Anything else - including the trivial shapes using a reserved word where the
+ * grammar would not accept it, or naming an unknown entity - is simply not
+ * recognized, in which case {@link #interpret} returns {@code null} and the
+ * caller falls back to the full parse/interpret pipeline (which also produces
+ * any error).
+ *
+ * @author Steve Ebersole
+ */
+public final class TrivialHqlRecognizer {
+	/**
+	 * The token types the grammar accepts as an `identifier` - IDENTIFIER plus
+	 * the (non-reserved) keywords
+	 */
+	private static final IntervalSet IDENTIFIER_TOKENS = HqlParser._ATN.nextTokens(
+			HqlParser._ATN.ruleToStartState[ HqlParser.RULE_identifier ]
+	);
+
+	private TrivialHqlRecognizer() {
+	}
+
+	/**
+	 * Interpret the given HQL against the given domain model if it is one of the
+	 * trivial shapes.
+	 *
+	 * @return The interpretation, or {@code null} if the query is not one of the
+	 * trivial shapes
+	 */
+	public static SqmSelectStatement interpret(String hql, MetamodelImplementor domainModel) {
+		return interpret( hql, domainModel, null );
+	}
+
+	/**
+	 * Interpret the given HQL using the interpreter's (precomputed) state, if it is one of
+	 * the trivial shapes.
+	 *
+	 * @return The interpretation, or {@code null} if the query is not one of the
+	 * trivial shapes
+	 */
+	public static SqmSelectStatement interpret(String hql, SemanticQueryInterpreter interpreter) {
+		return interpret( hql, interpreter.getDomainModel(), interpreter.getNavigablePathFactory() );
+	}
+
+	private static SqmSelectStatement interpret(
+			String hql,
+			MetamodelImplementor domainModel,
+			NavigablePathFactory navigablePathFactory) {
+		final Scanner scanner = new Scanner( hql );
+
+		// selectClause? : `select <alias>`
+		String selectedAlias = null;
+		int type = scanner.nextWord();
+		if ( type == HqlLexer.SELECT ) {
+			if ( scanner.nextWord() != HqlLexer.IDENTIFIER ) {
+				return null;
+			}
+			selectedAlias = scanner.wordText();
+			type = scanner.nextWord();
+		}
+
+		// fromClause : `from <dotIdentifierSequence> ( [as] <alias> )?`
+		if ( type != HqlLexer.FROM ) {
+			return null;
+		}
+
+		final String entityName = scanner.nextDotIdentifierSequence();
+		if ( entityName == null ) {
+			return null;
+		}
+
+		String alias = null;
+		type = scanner.nextWord();
+		if ( type == HqlLexer.AS ) {
+			if ( !IDENTIFIER_TOKENS.contains( scanner.nextWord() ) ) {
+				return null;
+			}
+			alias = scanner.wordText();
+			type = scanner.nextWord();
+		}
+		else if ( type == HqlLexer.IDENTIFIER ) {
+			alias = scanner.wordText();
+			type = scanner.nextWord();
+		}
+
+		if ( type != Scanner.END ) {
+			return null;
+		}
+
+		if ( selectedAlias != null && !selectedAlias.equals( alias ) ) {
+			// selecting anything other than the root itself needs path resolution
+			return null;
+		}
+
+		final EntityTypeDescriptor entityDescriptor = domainModel.findEntityDescriptor( entityName );
+		if ( entityDescriptor == null ) {
+			return null;
+		}
+
+		QueryLogger.QUERY_LOGGER.debugf( "Interpreting trivial query without parsing - %s", hql );
+
+		final SqmQuerySpec querySpec = new SqmQuerySpec();
+		final QuerySpecProcessingStateStandardImpl processingState = new QuerySpecProcessingStateStandardImpl(
+				querySpec,
+				null
+		);
+
+		final SqmPathRoot pathRoot = new SqmPathRoot(
+				entityDescriptor,
+				alias,
+				( navigablePathFactory == null ? NavigablePathFactory.forDomainModel( domainModel ) : navigablePathFactory )
+						.getRootPath( entityDescriptor.getNavigableName() )
+		);
+		processingState.registerFromElement( pathRoot );
+
+		final SqmFromClause fromClause = new SqmFromClause();
+		fromClause.makeSpace().setRoot( pathRoot );
+		querySpec.setFromClause( fromClause );
+
+		if ( selectedAlias == null ) {
+			querySpec.setSelectClause( processingState.generateImplicitSelectClause() );
+		}
+		else {
+			final SqmSelectClause selectClause = new SqmSelectClause();
+			selectClause.addSelection( new SqmSelection( pathRoot, null ) );
+			querySpec.setSelectClause( selectClause );
+		}
+
+		final SqmSelectStatement statement = new SqmSelectStatement();
+		statement.setQuerySpec( querySpec );
+		return statement;
+	}
+
+	/**
+	 * Splits the query into words the same way HqlLexer would, reporting anything
+	 * which is not a word as {@link #UNRECOGNIZED}
+	 */
+	private static class Scanner {
+		private static final int END = -1;
+		private static final int UNRECOGNIZED = -2;
+
+		private final String text;
+		private int position;
+
+		private int wordStart;
+		private int wordEnd;
+
+		private Scanner(String text) {
+			this.text = text;
+		}
+
+		/**
+		 * Scan the next word, returning its token type
+		 */
+		private int nextWord() {
+			// WS : ( ' ' | '\t' | '\f' | EOL ) -> skip
+			while ( position < text.length() ) {
+				final char c = text.charAt( position );
+				if ( c != ' ' && c != '\t' && c != '\f' && c != '\r' && c != '\n' ) {
+					break;
+				}
+				position++;
+			}
+
+			if ( position == text.length() ) {
+				return END;
+			}
+
+			// per code point, as the lexer - e.g. a surrogate pair is not 2 identifier characters
+			int codePoint = text.codePointAt( position );
+			if ( !PerfectHashHqlLexer.isIdentifierStart( codePoint ) ) {
+				return UNRECOGNIZED;
+			}
+
+			wordStart = position;
+			do {
+				position += Character.charCount( codePoint );
+			}
+			while ( position < text.length()
+					&& PerfectHashHqlLexer.isIdentifierPart( codePoint = text.codePointAt( position ) ) );
+			wordEnd = position;
+
+			return PerfectHashHqlLexer.KeywordTable.INSTANCE.classify( text, wordStart, wordEnd );
+		}
+
+		private String wordText() {
+			return text.substring( wordStart, wordEnd );
+		}
+
+		/**
+		 * Scan a dotIdentifierSequence without any whitespace, returning its text
+		 * or {@code null} if there is none
+		 */
+		private String nextDotIdentifierSequence() {
+			if ( !IDENTIFIER_TOKENS.contains( nextWord() ) ) {
+				return null;
+			}
+
+			final int start = wordStart;
+			while ( position < text.length() && text.charAt( position ) == '.' ) {
+				position++;
+				if ( position == text.length() || !PerfectHashHqlLexer.isIdentifierStart( text.codePointAt( position ) ) ) {
+					return null;
+				}
+				if ( !IDENTIFIER_TOKENS.contains( nextWord() ) ) {
+					return null;
+				}
+			}
+
+			return text.substring( start, wordEnd );
+		}
+	}
+}
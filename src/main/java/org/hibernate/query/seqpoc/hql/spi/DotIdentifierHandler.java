@@ -14,6 +14,21 @@ package org.hibernate.query.seqpoc.hql.spi;
 public interface DotIdentifierHandler {
 	void consumeIdentifier(String identifier, boolean isBase, boolean isTerminal);
 
+	/**
+	 * Consume a complete dot-identifier sequence at once.  Unlike the per-identifier
+	 * {@link #consumeIdentifier} form, this allows the handler to resolve the sequence
+	 * in a single pass, looking ahead as needed.
+	 * <p/>
+	 * By default each identifier is passed to {@link #consumeIdentifier} in turn.
+	 *
+	 * @param identifiers The identifiers making up the sequence; never empty
+	 */
+	default void consumeIdentifierSequence(String[] identifiers) {
+		for ( int i = 0; i < identifiers.length; i++ ) {
+			consumeIdentifier( identifiers[i], i == 0, i == identifiers.length - 1 );
+		}
+	}
+
 	SequencePart getConsumedPart();
 
 	interface SequencePart {
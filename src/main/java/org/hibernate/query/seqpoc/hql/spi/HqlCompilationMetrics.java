@@ -0,0 +1,141 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.seqpoc.hql.spi;
+
+/**
+ * Receives metrics about the compilation of HQL queries : the time spent in each
+ * {@link Phase phase} and the amount of work done, as {@link Counter counters}.
+ * <p/>
+ * Reported to by the semantic query interpreter - for the parsing and interpretation it
+ * drives - and by the interpretation cache, which use the metrics they are built with
+ * (see {@code SemanticQueryInterpreter#getMetrics}).  Phases are only timed when
+ * {@link #isEnabled() enabled}; with {@link #DISABLED} (the default) the clock is
+ * not even read.
+ * <p/>
+ * Implementations must be safe to use from multiple threads concurrently, and should
+ * be cheap - they are called while compiling the query.
+ *
+ * @author Steve Ebersole
+ */
+public interface HqlCompilationMetrics {
+	/**
+	 * Metrics which are not collected
+	 */
+	HqlCompilationMetrics DISABLED = new HqlCompilationMetrics() {
+		@Override
+		public boolean isEnabled() {
+			return false;
+		}
+
+		@Override
+		public void phaseCompleted(Phase phase, long durationNanos) {
+		}
+
+		@Override
+		public void increment(Counter counter, long delta) {
+		}
+	};
+
+	/**
+	 * The timed phases of compiling a query
+	 */
+	enum Phase {
+		/**
+		 * Tokenizing the query
+		 */
+		LEX,
+
+		/**
+		 * Parsing the (tokenized) query into a parse tree
+		 */
+		PARSE,
+
+		/**
+		 * Interpreting the from-clause of a query-spec : resolving the roots and joins
+		 */
+		FROM_CLAUSE,
+
+		/**
+		 * Interpreting the select-clause of a query-spec, including its path resolution
+		 */
+		SELECT_CLAUSE,
+
+		/**
+		 * Interpreting the whole of the parse tree into SQM.  For queries which are not
+		 * parsed into a parse tree (see {@link Counter#TRIVIAL_INTERPRETATIONS} and
+		 * {@link Counter#SINGLE_PASS_INTERPRETATIONS}), all of compiling the query
+		 */
+		INTERPRETATION
+	}
+
+	/**
+	 * The counted work of compiling queries
+	 */
+	enum Counter {
+		/**
+		 * The identifiers of the dot-identifier sequences (paths) consumed
+		 */
+		IDENTIFIERS_CONSUMED,
+
+		/**
+		 * The from-elements (roots and joins) registered
+		 */
+		FROM_ELEMENTS_REGISTERED,
+
+		/**
+		 * The from-clauses searched for the from-element exposing an unqualified
+		 * attribute reference - one per from-clause searched, so a reference resolved
+		 * in the from-clause of an enclosing query counts more than once
+		 */
+		UNQUALIFIED_ATTRIBUTE_SCANS,
+
+		/**
+		 * Interpretations resolved from the interpretation cache
+		 */
+		CACHE_HITS,
+
+		/**
+		 * Interpretations not found in the interpretation cache
+		 */
+		CACHE_MISSES,
+
+		/**
+		 * Interpretations evicted from the interpretation cache
+		 */
+		CACHE_EVICTIONS,
+
+		/**
+		 * Queries interpreted without being parsed, being one of the trivial shapes
+		 * (see {@code TrivialHqlRecognizer}) - only timed as a whole, as the
+		 * {@link Phase#INTERPRETATION} phase
+		 */
+		TRIVIAL_INTERPRETATIONS,
+
+		/**
+		 * Queries parsed and interpreted in a single pass (see
+		 * {@code HqlParseTreeBuilder#buildSelectStatement}) - only timed as a whole, as
+		 * the {@link Phase#INTERPRETATION} phase
+		 */
+		SINGLE_PASS_INTERPRETATIONS
+	}
+
+	/**
+	 * Whether the metrics are collected.  Checked before reading the clock or gathering
+	 * anything to report; the other methods are no-ops when not enabled
+	 */
+	boolean isEnabled();
+
+	/**
+	 * A phase of compiling a query completed (successfully) in the given time
+	 */
+	void phaseCompleted(Phase phase, long durationNanos);
+
+	/**
+	 * Add the given amount to the counter
+	 */
+	void increment(Counter counter, long delta);
+}
@@ -0,0 +1,88 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.seqpoc.hql.spi;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+import org.hibernate.query.seqpoc.sqm.tree.SqmSelectStatement;
+
+/**
+ * Cache of HQL interpretations (the SQM tree) keyed by the HQL query string.
+ * A cache is scoped to a single domain model ({@link MetamodelImplementor}) -
+ * the same HQL interpreted against different domain models is a different
+ * interpretation.
+ * <p/>
+ * Implementations must be safe to use from multiple threads concurrently.
+ *
+ * @author Steve Ebersole
+ */
+public interface HqlInterpretationCache {
+	/**
+	 * The domain model against which the cached queries are interpreted
+	 */
+	MetamodelImplementor getDomainModel();
+
+	/**
+	 * Resolve the SQM interpretation of the given HQL, interpreting it if
+	 * not already cached.
+	 * <p/>
+	 * NOTE : the returned tree is shared between all callers asking for the
+	 * same HQL and should be considered read-only
+	 */
+	SqmSelectStatement resolveSelectStatement(String hql);
+
+	/**
+	 * Asynchronous form of {@link #resolveSelectStatement}.  If the HQL needs to be
+	 * interpreted, it is interpreted using the given executor; the returned future is
+	 * already completed if the interpretation is cached.
+	 * <p/>
+	 * Implementations should interpret the same HQL only once when it is requested
+	 * concurrently (synchronously or not), sharing the one interpretation between all
+	 * requests.  This default implementation does not.
+	 */
+	default CompletableFuture<SqmSelectStatement> resolveSelectStatementAsync(String hql, Executor executor) {
+		return CompletableFuture.supplyAsync( () -> resolveSelectStatement( hql ), executor );
+	}
+
+	/**
+	 * Access to the cache statistics
+	 */
+	Statistics getStatistics();
+
+	/**
+	 * Release all cached interpretations
+	 */
+	void clear();
+
+	/**
+	 * Cache statistics.  The values are live (not a snapshot)
+	 */
+	interface Statistics {
+		/**
+		 * The number of requests resolved from the cache
+		 */
+		long getHitCount();
+
+		/**
+		 * The number of requests which needed to be interpreted
+		 */
+		long getMissCount();
+
+		/**
+		 * The number of interpretations evicted from the cache to
+		 * make room for others
+		 */
+		long getEvictionCount();
+
+		/**
+		 * The number of interpretations currently cached
+		 */
+		int getSize();
+	}
+}
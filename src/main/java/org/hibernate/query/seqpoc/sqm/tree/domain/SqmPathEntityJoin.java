@@ -24,9 +24,26 @@ public class SqmPathEntityJoin extends AbstractSqmQualifiedPathJoin {
 			EntityTypeDescriptor entityDescriptor,
 			SqmJoinType joinType,
 			String explicitAlias) {
+		this(
+				entityDescriptor,
+				joinType,
+				explicitAlias,
+				new NavigablePath( entityDescriptor.getNavigableRole().getFullPath() )
+		);
+	}
+
+	/**
+	 * Creates the join using the given path, e.g. a canonical one
+	 * (see {@link org.hibernate.query.NavigablePathFactory})
+	 */
+	public SqmPathEntityJoin(
+			EntityTypeDescriptor entityDescriptor,
+			SqmJoinType joinType,
+			String explicitAlias,
+			NavigablePath navigablePath) {
 		super(
 				entityDescriptor,
-				new NavigablePath( entityDescriptor.getNavigableRole().getFullPath() ),
+				navigablePath,
 				joinType,
 				explicitAlias
 		);
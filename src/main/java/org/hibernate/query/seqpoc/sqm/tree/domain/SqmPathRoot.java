@@ -24,9 +24,16 @@ public class SqmPathRoot implements SqmFrom {
 	}
 
 	public SqmPathRoot(EntityTypeDescriptor entityDescriptor, String explicitAlias) {
-		this.entityDescriptor = entityDescriptor;
+		this( entityDescriptor, explicitAlias, new NavigablePath( entityDescriptor.getNavigableName() ) );
+	}
 
-		this.navigablePath = new NavigablePath( entityDescriptor.getNavigableName() );
+	/**
+	 * Creates the root using the given path, e.g. a canonical one
+	 * (see {@link org.hibernate.query.NavigablePathFactory})
+	 */
+	public SqmPathRoot(EntityTypeDescriptor entityDescriptor, String explicitAlias, NavigablePath navigablePath) {
+		this.entityDescriptor = entityDescriptor;
+		this.navigablePath = navigablePath;
 
 		setExplicitAlias( explicitAlias );
 	}
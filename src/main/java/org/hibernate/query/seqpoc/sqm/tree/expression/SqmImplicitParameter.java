@@ -0,0 +1,34 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.seqpoc.sqm.tree.expression;
+
+/**
+ * A literal from the query text interpreted as a parameter, so that the sqm can be
+ * shared by all queries of the same shape - see
+ * {@link org.hibernate.query.seqpoc.hql.internal.HqlQueryShape}.  The value to bind
+ * is the shape's literal at {@link #getPosition() position}
+ *
+ * @author Steve Ebersole
+ */
+public class SqmImplicitParameter implements SqmExpression {
+	private final int position;
+
+	public SqmImplicitParameter(int position) {
+		this.position = position;
+	}
+
+	/**
+	 * The (0-based) position of the literal within the query's shape
+	 */
+	public int getPosition() {
+		return position;
+	}
+
+	public String asLoggableText() {
+		return "ImplicitParameter( " + position + ")";
+	}
+}
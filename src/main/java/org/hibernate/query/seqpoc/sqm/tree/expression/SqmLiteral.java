@@ -6,6 +6,8 @@
  */
 package org.hibernate.query.seqpoc.sqm.tree.expression;
 
+import org.hibernate.query.seqpoc.hql.spi.DotIdentifierHandler;
+
 /**
  * Represents a literal value in the sqm, e.g.<ul>
  *     <li>1</li>
@@ -16,7 +18,7 @@ package org.hibernate.query.seqpoc.sqm.tree.expression;
  * </ul>
  * @author Steve Ebersole
  */
-public class SqmLiteral<T> implements SqmExpression {
+public class SqmLiteral<T> implements SqmExpression, DotIdentifierHandler.SequencePart {
 	private T value;
 
 	public SqmLiteral(T value) {
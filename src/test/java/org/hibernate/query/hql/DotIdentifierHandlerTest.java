@@ -0,0 +1,414 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.hql;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.metamodel.model.domain.spi.EntityTypeDescriptor;
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+import org.hibernate.query.NavigablePathFactory;
+import org.hibernate.query.QueryLogger;
+import org.hibernate.query.SemanticException;
+import org.hibernate.query.seqpoc.hql.internal.BasicDotIdentifierHandler;
+import org.hibernate.query.seqpoc.hql.internal.EntityNameTrie;
+import org.hibernate.query.seqpoc.hql.internal.QualifiedJoinPathIdentifierConsumer;
+import org.hibernate.query.seqpoc.hql.internal.QuerySpecProcessingStateStandardImpl;
+import org.hibernate.query.seqpoc.hql.internal.SemanticQueryInterpreter;
+import org.hibernate.query.seqpoc.hql.spi.DotIdentifierHandler;
+import org.hibernate.query.seqpoc.sqm.tree.SqmJoinType;
+import org.hibernate.query.seqpoc.sqm.tree.domain.SqmPath;
+import org.hibernate.query.seqpoc.sqm.tree.domain.SqmPathEntityJoin;
+import org.hibernate.query.seqpoc.sqm.tree.domain.SqmPathRoot;
+import org.hibernate.query.seqpoc.sqm.tree.expression.SqmLiteral;
+import org.hibernate.query.seqpoc.sqm.tree.select.SqmQuerySpec;
+
+import org.hibernate.testing.orm.domain.StandardDomainModel;
+import org.hibernate.testing.orm.junit.DomainModel;
+import org.hibernate.testing.orm.junit.SessionFactory;
+import org.hibernate.testing.orm.junit.SessionFactoryScope;
+import org.hibernate.testing.orm.junit.SessionFactoryScopeAware;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+/**
+ * Asserts that consuming a whole dot-identifier sequence at once resolves the
+ * same as consuming it identifier by identifier
+ *
+ * @author Steve Ebersole
+ */
+@SuppressWarnings("WeakerAccess")
+
+@DomainModel( standardModels = StandardDomainModel.RETAIL )
+@SessionFactory
+public class DotIdentifierHandlerTest implements SessionFactoryScopeAware {
+	private static final String[][] SEQUENCES = new String[][] {
+			{ "o" },
+			{ "o", "salesAssociate" },
+			{ "o", "salesAssociate", "name", "familyName" },
+			{ "salesAssociate", "name" }
+	};
+
+	private SessionFactoryScope sessionFactoryScope;
+	private SemanticQueryInterpreter interpreter;
+
+	@Test
+	public void basicSequenceTest() {
+		for ( String[] sequence : SEQUENCES ) {
+			final QuerySpecProcessingStateStandardImpl processingState = createProcessingState();
+
+			final BasicDotIdentifierHandler perIdentifier = new BasicDotIdentifierHandler(
+					() -> processingState,
+					getInterpreter()
+			);
+			consumeEach( perIdentifier, sequence );
+
+			final BasicDotIdentifierHandler wholeSequence = new BasicDotIdentifierHandler(
+					() -> processingState,
+					getInterpreter()
+			);
+			wholeSequence.consumeIdentifierSequence( sequence );
+
+			assertThat(
+					String.join( ".", sequence ),
+					render( wholeSequence.getConsumedPart() ),
+					is( render( perIdentifier.getConsumedPart() ) )
+			);
+		}
+	}
+
+	@Test
+	public void qualifiedJoinSequenceTest() {
+		final String[][] sequences = new String[][] {
+				{ "o", "salesAssociate" },
+				{ "salesAssociate" },
+				{ "Vendor" }
+		};
+
+		for ( String[] sequence : sequences ) {
+			final DotIdentifierHandler perIdentifier = createJoinConsumer( createProcessingState() );
+			consumeEach( perIdentifier, sequence );
+
+			final DotIdentifierHandler wholeSequence = createJoinConsumer( createProcessingState() );
+			wholeSequence.consumeIdentifierSequence( sequence );
+
+			assertThat(
+					String.join( ".", sequence ),
+					render( wholeSequence.getConsumedPart() ),
+					is( render( perIdentifier.getConsumedPart() ) )
+			);
+		}
+	}
+
+	@Test
+	public void entityJoinTest() {
+		final EntityNameTrie.Node vendorNode = EntityNameTrie.forDomainModel( getDomainModel() ).getRoot().getChild( "Vendor" );
+		assertThat( vendorNode.getEntityName(), notNullValue() );
+		assertThat( getDomainModel().findEntityDescriptor( vendorNode.getEntityName() ), notNullValue() );
+
+		for ( String[] sequence : new String[][] { { "Vendor", "name" }, { "DoesNotExist" } } ) {
+			try {
+				createJoinConsumer( createProcessingState() ).consumeIdentifierSequence( sequence );
+				fail( "Expecting failure resolving join path : " + String.join( ".", sequence ) );
+			}
+			catch (SemanticException expected) {
+				assertThat( expected.getMessage(), containsString( String.join( ".", sequence ) ) );
+			}
+		}
+	}
+
+	@Test
+	public void entityJoinImportTest() {
+		final EntityTypeDescriptor<Object> vendor = getDomainModel().findEntityDescriptor( "Vendor" );
+		final String entityName = vendor.getEntityName();
+		final String packageName = entityName.substring( 0, entityName.lastIndexOf( '.' ) );
+
+		// a domain model which does not import the unqualified `Vendor`, but does import
+		// its package name (which the trie only knows as a prefix) as the Vendor entity
+		final Map<String, String> imports = new HashMap<>();
+		imports.put( "Vendor", null );
+		imports.put( packageName, entityName );
+		final SemanticQueryInterpreter interpreter = new SemanticQueryInterpreter(
+				withImports( getDomainModel(), imports )
+		);
+		assertThat( interpreter.getEntityNameTrie().getRoot().getChild( "Vendor" ), notNullValue() );
+
+		try {
+			createJoinConsumer( createProcessingState(), interpreter ).consumeIdentifierSequence( new String[] { "Vendor" } );
+			fail( "Expecting failure resolving join path : Vendor" );
+		}
+		catch (SemanticException expected) {
+			assertThat( expected.getMessage(), containsString( "Vendor" ) );
+		}
+
+		final String[] sequence = packageName.split( "\\." );
+		final QualifiedJoinPathIdentifierConsumer perIdentifier = createJoinConsumer( createProcessingState(), interpreter );
+		consumeEach( perIdentifier, sequence );
+		assertThat( ( (SqmPathEntityJoin) perIdentifier.getConsumedPart() ).getReferencedNavigable(), sameInstance( vendor ) );
+
+		final QualifiedJoinPathIdentifierConsumer wholeSequence = createJoinConsumer( createProcessingState(), interpreter );
+		wholeSequence.consumeIdentifierSequence( sequence );
+		assertThat( ( (SqmPathEntityJoin) wholeSequence.getConsumedPart() ).getReferencedNavigable(), sameInstance( vendor ) );
+	}
+
+	/**
+	 * The given domain model, but resolving the given names to the entity names they map to
+	 * (none, for {@code null})
+	 */
+	private static MetamodelImplementor withImports(MetamodelImplementor domainModel, Map<String, String> imports) {
+		return (MetamodelImplementor) Proxy.newProxyInstance(
+				DotIdentifierHandlerTest.class.getClassLoader(),
+				new Class[] { MetamodelImplementor.class },
+				(proxy, method, args) -> {
+					switch ( method.getName() ) {
+						case "equals": {
+							return proxy == args[0];
+						}
+						case "hashCode": {
+							return System.identityHashCode( proxy );
+						}
+						case "findEntityDescriptor": {
+							if ( args[0] instanceof String && imports.containsKey( args[0] ) ) {
+								final String entityName = imports.get( args[0] );
+								return entityName == null ? null : domainModel.findEntityDescriptor( entityName );
+							}
+						}
+						default: {
+							try {
+								return method.invoke( domainModel, args );
+							}
+							catch (InvocationTargetException e) {
+								throw e.getCause();
+							}
+						}
+					}
+				}
+		);
+	}
+
+	@Test
+	public void failedResolutionNotInternedTest() {
+		final NavigablePathFactory navigablePathFactory = getInterpreter().getNavigablePathFactory();
+		final EntityTypeDescriptor<Object> order = getDomainModel().findEntityDescriptor( "Order" );
+		final QuerySpecProcessingStateStandardImpl processingState = new QuerySpecProcessingStateStandardImpl(
+				new SqmQuerySpec(),
+				null
+		);
+		processingState.registerFromElement(
+				new SqmPathRoot( order, "o", navigablePathFactory.getRootPath( order.getNavigableName() ) )
+		);
+
+		final int pathCount = navigablePathFactory.getPathCount();
+		final String[] sequence = new String[] { "o", "doesNotExist" };
+		try {
+			consumeEach( new BasicDotIdentifierHandler( () -> processingState, getInterpreter() ), sequence );
+			fail( "Expecting failure resolving path : o.doesNotExist" );
+		}
+		catch (SemanticException expected) {
+		}
+		try {
+			new BasicDotIdentifierHandler( () -> processingState, getInterpreter() ).consumeIdentifierSequence( sequence );
+			fail( "Expecting failure resolving path : o.doesNotExist" );
+		}
+		catch (SemanticException expected) {
+		}
+		assertThat( navigablePathFactory.getPathCount(), is( pathCount ) );
+
+		// whereas resolved paths are canonical
+		final BasicDotIdentifierHandler handler = new BasicDotIdentifierHandler( () -> processingState, getInterpreter() );
+		handler.consumeIdentifierSequence( new String[] { "o", "salesAssociate" } );
+		assertThat( ( (SqmPath) handler.getConsumedPart() ).getNavigablePath().isCanonical(), is( true ) );
+	}
+
+	@Test
+	public void unqualifiedAttributeResolutionPolicyTest() {
+		final SqmPathRoot o = new SqmPathRoot( getDomainModel().findEntityDescriptor( "Order" ), "o" );
+		final SqmPathRoot o2 = new SqmPathRoot( getDomainModel().findEntityDescriptor( "Order" ), "o2" );
+
+		final QuerySpecProcessingStateStandardImpl strict = new QuerySpecProcessingStateStandardImpl(
+				new SqmQuerySpec(),
+				null
+		);
+		strict.registerFromElement( o );
+		strict.registerFromElement( o2 );
+		try {
+			strict.findPathRootByExposedNavigable( "salesAssociate" );
+			fail( "Expecting failure resolving ambiguous unqualified attribute" );
+		}
+		catch (IllegalStateException expected) {
+		}
+
+		final QuerySpecProcessingStateStandardImpl firstMatch = new QuerySpecProcessingStateStandardImpl(
+				new SqmQuerySpec(),
+				null,
+				QuerySpecProcessingStateStandardImpl.UnqualifiedAttributeResolutionPolicy.FIRST_MATCH
+		);
+		firstMatch.registerFromElement( o );
+		firstMatch.registerFromElement( o2 );
+		assertThat( firstMatch.findPathRootByExposedNavigable( "salesAssociate" ), sameInstance( o ) );
+		assertThat( firstMatch.findPathRootByExposedNavigable( "doesNotExist" ), nullValue() );
+
+		// nested query-specs inherit the policy
+		final QuerySpecProcessingStateStandardImpl subQuery = new QuerySpecProcessingStateStandardImpl(
+				new SqmQuerySpec(),
+				firstMatch
+		);
+		assertThat(
+				subQuery.getUnqualifiedAttributeResolutionPolicy(),
+				is( QuerySpecProcessingStateStandardImpl.UnqualifiedAttributeResolutionPolicy.FIRST_MATCH )
+		);
+		assertThat( subQuery.findPathRootByExposedNavigable( "salesAssociate" ), sameInstance( o ) );
+	}
+
+	@Test
+	public void unqualifiedIdentifierAndInheritedAttributeTest() {
+		// the identifier and inherited attributes are not listed by `#getNavigables`, but are still exposed
+		final SqmPathRoot o = new SqmPathRoot( getDomainModel().findEntityDescriptor( "Order" ), "o" );
+		final SqmPathRoot c = new SqmPathRoot( getDomainModel().findEntityDescriptor( "CardPayment" ), "c" );
+
+		final QuerySpecProcessingStateStandardImpl strict = new QuerySpecProcessingStateStandardImpl(
+				new SqmQuerySpec(),
+				null
+		);
+		strict.registerFromElement( o );
+		assertThat( strict.findPathRootByExposedNavigable( "id" ), sameInstance( o ) );
+
+		strict.registerFromElement( c );
+		assertThat( strict.findPathRootByExposedNavigable( "amount" ), sameInstance( c ) );
+		assertThat( strict.findPathRootByExposedNavigable( "transactionId" ), sameInstance( c ) );
+		assertAmbiguous( strict, "id" );
+
+		// and resolve when consumed as an unqualified path
+		final BasicDotIdentifierHandler handler = new BasicDotIdentifierHandler( () -> strict, getInterpreter() );
+		handler.consumeIdentifierSequence( new String[] { "amount" } );
+		assertThat( ( (SqmPath) handler.getConsumedPart() ).getNavigablePath().getParent(), is( c.getNavigablePath() ) );
+	}
+
+	@Test
+	public void declaredAndInheritedAttributeTest() {
+		// `amount` is declared by Payment and inherited by CardPayment
+		final SqmPathRoot p = new SqmPathRoot( getDomainModel().findEntityDescriptor( "Payment" ), "p" );
+		final SqmPathRoot c = new SqmPathRoot( getDomainModel().findEntityDescriptor( "CardPayment" ), "c" );
+
+		for ( SqmPathRoot[] fromElements : new SqmPathRoot[][] { { p, c }, { c, p } } ) {
+			final QuerySpecProcessingStateStandardImpl strict = new QuerySpecProcessingStateStandardImpl(
+					new SqmQuerySpec(),
+					null
+			);
+			final QuerySpecProcessingStateStandardImpl firstMatch = new QuerySpecProcessingStateStandardImpl(
+					new SqmQuerySpec(),
+					null,
+					QuerySpecProcessingStateStandardImpl.UnqualifiedAttributeResolutionPolicy.FIRST_MATCH
+			);
+			for ( SqmPathRoot fromElement : fromElements ) {
+				strict.registerFromElement( fromElement );
+				firstMatch.registerFromElement( fromElement );
+			}
+
+			assertAmbiguous( strict, "amount" );
+			assertAmbiguous( strict, "id" );
+			assertThat( strict.findPathRootByExposedNavigable( "transactionId" ), sameInstance( c ) );
+
+			assertThat( firstMatch.findPathRootByExposedNavigable( "amount" ), sameInstance( fromElements[0] ) );
+			assertThat( firstMatch.findPathRootByExposedNavigable( "id" ), sameInstance( fromElements[0] ) );
+			assertThat( firstMatch.findPathRootByExposedNavigable( "transactionId" ), sameInstance( c ) );
+		}
+	}
+
+	private static void assertAmbiguous(QuerySpecProcessingStateStandardImpl processingState, String navigableName) {
+		try {
+			processingState.findPathRootByExposedNavigable( navigableName );
+			fail( "Expecting failure resolving ambiguous unqualified attribute : " + navigableName );
+		}
+		catch (IllegalStateException expected) {
+		}
+	}
+
+	@Test
+	public void pathSoFarTest() {
+		assumeFalse( QueryLogger.QUERY_LOGGER.isTraceEnabled(), "the whole path is rendered when tracing" );
+
+		final QuerySpecProcessingStateStandardImpl processingState = createProcessingState();
+		final BasicDotIdentifierHandler handler = new BasicDotIdentifierHandler( () -> processingState, getInterpreter() );
+
+		// not rendered past the alias, which resolved the sequence to a domain path
+		consumeEach( handler, new String[] { "o", "salesAssociate", "name", "familyName" } );
+		assertThat(
+				( (SqmPath) handler.getConsumedPart() ).getNavigablePath().getFullPath(),
+				containsString( ".salesAssociate.name.familyName" )
+		);
+		assertThat( handler.getPathSoFar(), is( "o" ) );
+
+		// whereas an unresolved sequence is rendered whole, to look up as a Java constant
+		consumeEach( handler, new String[] { "java", "util", "concurrent", "TimeUnit", "SECONDS" } );
+		assertThat( ( (SqmLiteral<?>) handler.getConsumedPart() ).getLiteralValue(), is( TimeUnit.SECONDS ) );
+		assertThat( handler.getPathSoFar(), is( "java.util.concurrent.TimeUnit.SECONDS" ) );
+	}
+
+	private static void consumeEach(DotIdentifierHandler handler, String[] sequence) {
+		for ( int i = 0; i < sequence.length; i++ ) {
+			handler.consumeIdentifier( sequence[i], i == 0, i == sequence.length - 1 );
+		}
+	}
+
+	private QuerySpecProcessingStateStandardImpl createProcessingState() {
+		final QuerySpecProcessingStateStandardImpl processingState = new QuerySpecProcessingStateStandardImpl(
+				new SqmQuerySpec(),
+				null
+		);
+		processingState.registerFromElement( new SqmPathRoot( getDomainModel().findEntityDescriptor( "Order" ), "o" ) );
+		return processingState;
+	}
+
+	private QualifiedJoinPathIdentifierConsumer createJoinConsumer(QuerySpecProcessingStateStandardImpl processingState) {
+		return createJoinConsumer( processingState, getInterpreter() );
+	}
+
+	private static QualifiedJoinPathIdentifierConsumer createJoinConsumer(
+			QuerySpecProcessingStateStandardImpl processingState,
+			SemanticQueryInterpreter interpreter) {
+		return new QualifiedJoinPathIdentifierConsumer(
+				SqmJoinType.INNER,
+				false,
+				"j",
+				processingState,
+				interpreter
+		);
+	}
+
+	private static String render(DotIdentifierHandler.SequencePart part) {
+		final SqmPath path = (SqmPath) part;
+		return path.getClass().getSimpleName() + "(" + path.getNavigablePath().getFullPath() + " " + path.getExplicitAlias() + ")";
+	}
+
+	private SemanticQueryInterpreter getInterpreter() {
+		if ( interpreter == null ) {
+			interpreter = new SemanticQueryInterpreter( getDomainModel() );
+		}
+		return interpreter;
+	}
+
+	private MetamodelImplementor getDomainModel() {
+		return sessionFactoryScope.getSessionFactory().getMetamodel();
+	}
+
+	@Override
+	public void injectSessionFactoryScope(SessionFactoryScope scope) {
+		sessionFactoryScope = scope;
+	}
+}
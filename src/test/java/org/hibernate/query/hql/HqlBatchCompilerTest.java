@@ -0,0 +1,93 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.hql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.hibernate.query.SemanticException;
+import org.hibernate.query.SyntaxException;
+import org.hibernate.query.seqpoc.hql.internal.HqlBatchCompiler;
+
+import org.hibernate.testing.orm.domain.StandardDomainModel;
+import org.hibernate.testing.orm.junit.DomainModel;
+import org.hibernate.testing.orm.junit.SessionFactory;
+import org.hibernate.testing.orm.junit.SessionFactoryScope;
+import org.hibernate.testing.orm.junit.SessionFactoryScopeAware;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Steve Ebersole
+ */
+@SuppressWarnings("WeakerAccess")
+
+@DomainModel( standardModels = StandardDomainModel.RETAIL )
+@SessionFactory
+public class HqlBatchCompilerTest implements SessionFactoryScopeAware {
+	private SessionFactoryScope sessionFactoryScope;
+
+	@Test
+	public void batchCompileTest() {
+		final List<String> valid = Arrays.asList(
+				"from Order as o",
+				"select e from Order as e, Order as e2",
+				"from Order as e join e.salesAssociate n on n.name.familyName = 'Smith'",
+				"from Order as e left outer join fetch e.salesAssociate"
+		);
+		final String invalid = "from Order as e join e.doesNotExist";
+		final String malformed = "from Order as e join";
+		final String unrecognizedCharacter = "from Order as e where e.id = #1";
+
+		final List<String> queries = new ArrayList<>();
+		for ( int i = 0; i < 50; i++ ) {
+			queries.add( "from Order as o" + i + " join o" + i + ".salesAssociate s" );
+		}
+		queries.addAll( valid );
+		queries.add( invalid );
+		queries.add( malformed );
+		queries.add( unrecognizedCharacter );
+
+		final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+		try {
+			final HqlBatchCompiler compiler = new HqlBatchCompiler(
+					sessionFactoryScope.getSessionFactory().getMetamodel(),
+					executor,
+					4
+			);
+
+			final HqlBatchCompiler.Result result = compiler.compile( queries );
+
+			for ( String query : valid ) {
+				assertThat( query, result.getStatements().get( query ), notNullValue() );
+			}
+
+			assertThat( result.hasErrors(), is( true ) );
+			assertThat( result.getErrors().get( invalid ), instanceOf( SemanticException.class ) );
+			// not recovered from
+			assertThat( result.getErrors().get( malformed ), instanceOf( SyntaxException.class ) );
+			assertThat( result.getErrors().get( unrecognizedCharacter ), instanceOf( SyntaxException.class ) );
+			assertThat( result.getErrors().size(), is( 3 ) );
+			assertThat( result.getStatements().size() + result.getErrors().size(), is( queries.size() ) );
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Override
+	public void injectSessionFactoryScope(SessionFactoryScope scope) {
+		sessionFactoryScope = scope;
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.hql;
+
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+import org.hibernate.query.seqpoc.hql.internal.HqlCompilationEvents;
+import org.hibernate.query.seqpoc.hql.internal.HqlInterpretationCacheStandardImpl;
+import org.hibernate.query.seqpoc.hql.internal.HqlQueryShape;
+
+import org.hibernate.testing.orm.domain.StandardDomainModel;
+import org.hibernate.testing.orm.junit.DomainModel;
+import org.hibernate.testing.orm.junit.SessionFactory;
+import org.hibernate.testing.orm.junit.SessionFactoryScope;
+import org.hibernate.testing.orm.junit.SessionFactoryScopeAware;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.endsWith;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * The JFR API is not available to (Java 8) sources, so recordings are made and read
+ * reflectively
+ *
+ * @author Steve Ebersole
+ */
+@SuppressWarnings("WeakerAccess")
+
+@DomainModel( standardModels = StandardDomainModel.RETAIL )
+@SessionFactory
+public class HqlCompilationEventsTest implements SessionFactoryScopeAware {
+	private static final String HQL = "from Order as e join e.salesAssociate n on n.name.familyName = 'Smith'";
+
+	private static final HqlCompilationEvents.EventType[] EVENT_TYPES = new HqlCompilationEvents.EventType[] {
+			HqlCompilationEvents.PARSE,
+			HqlCompilationEvents.INTERPRETATION,
+			HqlCompilationEvents.ROOT_RESOLUTION,
+			HqlCompilationEvents.JOIN_RESOLUTION,
+			HqlCompilationEvents.CACHE_LOOKUP
+	};
+
+	private SessionFactoryScope sessionFactoryScope;
+
+	@Test
+	public void noRecordingTest() {
+		// whether or not JFR is available, nothing is timed unless a recording is running
+		for ( HqlCompilationEvents.EventType eventType : EVENT_TYPES ) {
+			assertThat( eventType.getName(), eventType.isEnabled(), is( false ) );
+			assertThat( eventType.getName(), eventType.begin(), nullValue() );
+		}
+
+		assertThat( createCache().resolveSelectStatement( HQL ), notNullValue() );
+	}
+
+	@Test
+	public void recordingTest() throws Exception {
+		assumeTrue( HqlCompilationEvents.isAvailable(), "JFR is not available" );
+
+		final Class<?> recordingClass = Class.forName( "jdk.jfr.Recording" );
+		final Object recording = recordingClass.getConstructor().newInstance();
+		final Path dump = Files.createTempFile( "HqlCompilationEventsTest", ".jfr" );
+		final List<Object> recordedEvents;
+		try {
+			final Method withThreshold = Class.forName( "jdk.jfr.EventSettings" ).getMethod( "withThreshold", Duration.class );
+			for ( HqlCompilationEvents.EventType eventType : EVENT_TYPES ) {
+				withThreshold.invoke(
+						recordingClass.getMethod( "enable", String.class ).invoke( recording, eventType.getName() ),
+						Duration.ZERO
+				);
+			}
+
+			recordingClass.getMethod( "start" ).invoke( recording );
+			for ( HqlCompilationEvents.EventType eventType : EVENT_TYPES ) {
+				assertThat( eventType.getName(), eventType.isEnabled(), is( true ) );
+			}
+
+			createCache().resolveSelectStatement( HQL );
+
+			recordingClass.getMethod( "stop" ).invoke( recording );
+			recordingClass.getMethod( "dump", Path.class ).invoke( recording, dump );
+
+			recordedEvents = new ArrayList<>(
+					(List<?>) Class.forName( "jdk.jfr.consumer.RecordingFile" )
+							.getMethod( "readAllEvents", Path.class )
+							.invoke( null, dump )
+			);
+		}
+		finally {
+			recordingClass.getMethod( "close" ).invoke( recording );
+			Files.deleteIfExists( dump );
+		}
+
+		final Map<String, Object> eventsByName = new HashMap<>();
+		final Method getEventType = Class.forName( "jdk.jfr.consumer.RecordedEvent" ).getMethod( "getEventType" );
+		final Method getName = Class.forName( "jdk.jfr.EventType" ).getMethod( "getName" );
+		for ( Object recordedEvent : recordedEvents ) {
+			eventsByName.put( (String) getName.invoke( getEventType.invoke( recordedEvent ) ), recordedEvent );
+		}
+
+		final int queryShapeHash = HqlCompilationEvents.queryShapeHash( HqlQueryShape.of( HQL ) );
+		for ( HqlCompilationEvents.EventType eventType : EVENT_TYPES ) {
+			final Object recordedEvent = eventsByName.get( eventType.getName() );
+			assertThat( eventType.getName(), recordedEvent, notNullValue() );
+			assertThat( eventType.getName(), getValue( recordedEvent, "queryShapeHash" ), is( queryShapeHash ) );
+		}
+
+		final String orderEntityName = getDomainModel().findEntityDescriptor( "Order" ).getEntityName();
+		final Object interpretation = eventsByName.get( HqlCompilationEvents.INTERPRETATION.getName() );
+		assertThat( getValue( interpretation, "entityNames" ), is( orderEntityName ) );
+
+		final Object rootResolution = eventsByName.get( HqlCompilationEvents.ROOT_RESOLUTION.getName() );
+		assertThat( getValue( rootResolution, "entityName" ), is( orderEntityName ) );
+		assertThat( getValue( rootResolution, "alias" ), is( "e" ) );
+
+		final Object joinResolution = eventsByName.get( HqlCompilationEvents.JOIN_RESOLUTION.getName() );
+		assertThat( (String) getValue( joinResolution, "path" ), endsWith( ".salesAssociate" ) );
+		assertThat( getValue( joinResolution, "alias" ), is( "n" ) );
+
+		final Object cacheLookup = eventsByName.get( HqlCompilationEvents.CACHE_LOOKUP.getName() );
+		assertThat( getValue( cacheLookup, "outcome" ), is( HqlCompilationEvents.CacheOutcome.MISS.name() ) );
+	}
+
+	private static Object getValue(Object recordedEvent, String name) throws Exception {
+		return recordedEvent.getClass().getMethod( "getValue", String.class ).invoke( recordedEvent, name );
+	}
+
+	private HqlInterpretationCacheStandardImpl createCache() {
+		return new HqlInterpretationCacheStandardImpl( getDomainModel() );
+	}
+
+	private MetamodelImplementor getDomainModel() {
+		return sessionFactoryScope.getSessionFactory().getMetamodel();
+	}
+
+	@Override
+	public void injectSessionFactoryScope(SessionFactoryScope scope) {
+		sessionFactoryScope = scope;
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.hql;
+
+import java.lang.management.ManagementFactory;
+import javax.management.openmbean.CompositeData;
+
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+import org.hibernate.query.seqpoc.hql.internal.HqlCompilationMetricsJmxImpl;
+import org.hibernate.query.seqpoc.hql.internal.HqlInterpretationCacheStandardImpl;
+import org.hibernate.query.seqpoc.hql.internal.HqlParseTreeBuilder;
+import org.hibernate.query.seqpoc.hql.internal.HqlParserPool;
+import org.hibernate.query.seqpoc.hql.internal.SemanticQueryInterpreter;
+import org.hibernate.query.seqpoc.hql.spi.HqlCompilationMetrics;
+
+import org.hibernate.testing.orm.domain.StandardDomainModel;
+import org.hibernate.testing.orm.junit.DomainModel;
+import org.hibernate.testing.orm.junit.SessionFactory;
+import org.hibernate.testing.orm.junit.SessionFactoryScope;
+import org.hibernate.testing.orm.junit.SessionFactoryScopeAware;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Steve Ebersole
+ */
+@SuppressWarnings("WeakerAccess")
+
+@DomainModel( standardModels = StandardDomainModel.RETAIL )
+@SessionFactory
+public class HqlCompilationMetricsTest implements SessionFactoryScopeAware {
+	private SessionFactoryScope sessionFactoryScope;
+
+	@Test
+	public void metricsTest() throws Exception {
+		final HqlCompilationMetricsJmxImpl metrics = new HqlCompilationMetricsJmxImpl().register( "metricsTest" );
+		try {
+			final HqlInterpretationCacheStandardImpl cache = createCache( metrics );
+
+			cache.resolveSelectStatement( "from Order as e join e.salesAssociate n on n.name.familyName = 'Smith'" );
+			cache.resolveSelectStatement( "from Order as e join e.salesAssociate n on n.name.familyName = 'Smith'" );
+			cache.resolveSelectStatement( "select salesAssociate from Order as e" );
+
+			assertThat( metrics.getCacheHits(), is( 1L ) );
+			assertThat( metrics.getCacheMisses(), is( 2L ) );
+			assertThat( metrics.getLexLatency().getCount(), is( 2L ) );
+			assertThat( metrics.getParseLatency().getCount(), is( 2L ) );
+			assertThat( metrics.getFromClauseLatency().getCount(), is( 2L ) );
+			assertThat( metrics.getSelectClauseLatency().getCount(), is( 2L ) );
+			assertThat( metrics.getInterpretationLatency().getCount(), is( 2L ) );
+
+			// `e.salesAssociate`, `n.name.familyName` and `salesAssociate`
+			assertThat( metrics.getIdentifiersConsumed(), is( 6L ) );
+			assertThat( metrics.getFromElementsRegistered(), is( 3L ) );
+			assertThat( metrics.getUnqualifiedAttributeScans(), is( 1L ) );
+
+			final CompositeData parseLatency = (CompositeData) ManagementFactory.getPlatformMBeanServer().getAttribute(
+					metrics.getObjectName(),
+					"ParseLatency"
+			);
+			assertThat( parseLatency.get( "count" ), is( 2L ) );
+			assertThat( ManagementFactory.getPlatformMBeanServer().getAttribute( metrics.getObjectName(), "CacheHits" ), is( 1L ) );
+
+			metrics.reset();
+			assertThat( metrics.getParseLatency().getCount(), is( 0L ) );
+			assertThat( metrics.getCacheHits(), is( 0L ) );
+		}
+		finally {
+			metrics.unregister();
+		}
+	}
+
+	@Test
+	public void unparsedInterpretationMetricsTest() {
+		final HqlCompilationMetricsJmxImpl metrics = new HqlCompilationMetricsJmxImpl();
+		final HqlParseTreeBuilder parseTreeBuilder = createParseTreeBuilder();
+
+		// a trivial query, not parsed at all
+		createCache( metrics ).resolveSelectStatement( "from Order o" );
+		assertThat( metrics.getCacheMisses(), is( 1L ) );
+		assertThat( metrics.getTrivialInterpretations(), is( 1L ) );
+		assertThat( metrics.getInterpretationLatency().getCount(), is( 1L ) );
+		assertThat( metrics.getLexLatency().getCount(), is( 0L ) );
+		assertThat( metrics.getParseLatency().getCount(), is( 0L ) );
+
+		// parsed and interpreted in a single pass
+		parseTreeBuilder.buildSelectStatement(
+				"select salesAssociate from Order as e",
+				new SemanticQueryInterpreter( getDomainModel(), parseTreeBuilder, metrics )
+		);
+		assertThat( metrics.getSinglePassInterpretations(), is( 1L ) );
+		assertThat( metrics.getInterpretationLatency().getCount(), is( 2L ) );
+		assertThat( metrics.getLexLatency().getCount(), is( 0L ) );
+		assertThat( metrics.getParseLatency().getCount(), is( 0L ) );
+	}
+
+	@Test
+	public void disabledMetricsTest() {
+		assertThat( new SemanticQueryInterpreter( getDomainModel() ).getMetrics(), is( HqlCompilationMetrics.DISABLED ) );
+		assertThat(
+				new SemanticQueryInterpreter( getDomainModel(), createParseTreeBuilder() ).getMetrics().isEnabled(),
+				is( false )
+		);
+	}
+
+	private HqlInterpretationCacheStandardImpl createCache(HqlCompilationMetrics metrics) {
+		return new HqlInterpretationCacheStandardImpl(
+				getDomainModel(),
+				HqlInterpretationCacheStandardImpl.DEFAULT_MAX_SIZE,
+				createParseTreeBuilder(),
+				metrics
+		);
+	}
+
+	private static HqlParseTreeBuilder createParseTreeBuilder() {
+		return new HqlParseTreeBuilder(
+				HqlParseTreeBuilder.PredictionStrategy.LL,
+				HqlParseTreeBuilder.LexerStrategy.GENERATED,
+				HqlParserPool.DEFAULT_MAX_IDLE
+		);
+	}
+
+	private MetamodelImplementor getDomainModel() {
+		return sessionFactoryScope.getSessionFactory().getMetamodel();
+	}
+
+	@Override
+	public void injectSessionFactoryScope(SessionFactoryScope scope) {
+		sessionFactoryScope = scope;
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.hql;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.hibernate.query.seqpoc.hql.internal.HqlGrammarWarmUp;
+import org.hibernate.query.seqpoc.hql.internal.HqlLexer;
+import org.hibernate.query.seqpoc.hql.internal.HqlParser;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * The DFA is shared by the whole JVM, so each test starts by clearing it
+ *
+ * @author Steve Ebersole
+ */
+@SuppressWarnings("WeakerAccess")
+public class HqlGrammarWarmUpTest {
+	private static final List<String> QUERIES = Arrays.asList(
+			"from Order as o",
+			"select e.salesAssociate from Order as e",
+			"from Order as e join e.salesAssociate n on n.name.familyName = 'Smith'",
+			"from Order as e left outer join fetch e.salesAssociate",
+			// adds no new states
+			"from Order as o"
+	);
+
+	@Test
+	public void warmUpTest() {
+		clearDfa();
+
+		final HqlGrammarWarmUp.Result result = new HqlGrammarWarmUp().warmUp( QUERIES );
+
+		assertThat( result.getQueryCount(), is( QUERIES.size() ) );
+		assertThat( result.getFailureCount(), is( 0 ) );
+		assertThat( result.getInitialCoverage().getTotalStateCount(), is( 0 ) );
+		assertThat( result.getInitialCoverage().getParserWarmDecisionCount(), is( 0 ) );
+
+		final HqlGrammarWarmUp.DfaCoverage coverage = result.getCoverage();
+		assertThat( coverage.getParserStateCount() > 0, is( true ) );
+		assertThat( coverage.getLexerStateCount() > 0, is( true ) );
+		assertThat( coverage.getParserWarmDecisionCount() > 0, is( true ) );
+		assertThat( coverage.getParserDecisionCount(), is( HqlParser._ATN.getNumberOfDecisions() ) );
+		assertThat( coverage.getParserDecisionCoverage() > 0, is( true ) );
+		assertThat( HqlGrammarWarmUp.DfaCoverage.capture().getTotalStateCount(), is( coverage.getTotalStateCount() ) );
+
+		// the repeated query did not contribute
+		assertThat( result.getContributingQueries().contains( "from Order as o" ), is( true ) );
+		assertThat( result.getContributingQueries().size() < QUERIES.size(), is( true ) );
+
+		// warming again adds nothing
+		final HqlGrammarWarmUp.Result again = new HqlGrammarWarmUp().warmUp( QUERIES );
+		assertThat( again.getContributingQueries().isEmpty(), is( true ) );
+		assertThat( again.getCoverage().getTotalStateCount(), is( coverage.getTotalStateCount() ) );
+	}
+
+	@Test
+	public void snapshotRoundTripTest() throws Exception {
+		clearDfa();
+		final HqlGrammarWarmUp.Result result = new HqlGrammarWarmUp().warmUp( QUERIES );
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		HqlGrammarWarmUp.writeSnapshot( QUERIES, bytes );
+		assertThat( HqlGrammarWarmUp.readSnapshot( new ByteArrayInputStream( bytes.toByteArray() ) ), is( QUERIES ) );
+
+		final Path snapshotFile = Files.createTempFile( "HqlGrammarWarmUpTest", ".snapshot" );
+		try {
+			HqlGrammarWarmUp.writeSnapshot( result, snapshotFile );
+			assertThat( HqlGrammarWarmUp.readSnapshot( snapshotFile ), is( result.getContributingQueries() ) );
+
+			// "restart" and replay just the contributing queries
+			clearDfa();
+			final HqlGrammarWarmUp.Result restored = new HqlGrammarWarmUp().warmUp( snapshotFile );
+
+			assertThat( restored.getQueryCount(), is( result.getContributingQueries().size() ) );
+			assertThat( restored.getContributingQueries(), is( result.getContributingQueries() ) );
+
+			final HqlGrammarWarmUp.DfaCoverage expected = result.getCoverage();
+			final HqlGrammarWarmUp.DfaCoverage actual = restored.getCoverage();
+			assertThat( actual.getParserStateCount(), is( expected.getParserStateCount() ) );
+			assertThat( actual.getParserWarmDecisionCount(), is( expected.getParserWarmDecisionCount() ) );
+			assertThat( actual.getLexerStateCount(), is( expected.getLexerStateCount() ) );
+			assertThat( actual.getLexerWarmDecisionCount(), is( expected.getLexerWarmDecisionCount() ) );
+		}
+		finally {
+			Files.deleteIfExists( snapshotFile );
+		}
+	}
+
+	private static void clearDfa() {
+		final HqlLexer lexer = new HqlLexer( CharStreams.fromString( "" ) );
+		lexer.getInterpreter().clearDFA();
+		new HqlParser( new CommonTokenStream( lexer ) ).getInterpreter().clearDFA();
+	}
+}
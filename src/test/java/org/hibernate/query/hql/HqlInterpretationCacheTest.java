@@ -0,0 +1,195 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.hql;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.hibernate.query.SemanticException;
+import org.hibernate.query.seqpoc.hql.internal.HqlInterpretationCacheStandardImpl;
+import org.hibernate.query.seqpoc.hql.spi.HqlInterpretationCache;
+import org.hibernate.query.seqpoc.hql.internal.HqlQueryShape;
+import org.hibernate.query.seqpoc.sqm.tree.SqmSelectStatement;
+import org.hibernate.query.seqpoc.sqm.tree.expression.SqmImplicitParameter;
+import org.hibernate.query.seqpoc.sqm.tree.expression.SqmLiteral;
+import org.hibernate.query.seqpoc.sqm.tree.predicate.SqmComparisonPredicate;
+
+import org.hibernate.testing.orm.domain.StandardDomainModel;
+import org.hibernate.testing.orm.junit.DomainModel;
+import org.hibernate.testing.orm.junit.SessionFactory;
+import org.hibernate.testing.orm.junit.SessionFactoryScope;
+import org.hibernate.testing.orm.junit.SessionFactoryScopeAware;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * @author Steve Ebersole
+ */
+@SuppressWarnings("WeakerAccess")
+
+@DomainModel( standardModels = StandardDomainModel.RETAIL )
+@SessionFactory
+public class HqlInterpretationCacheTest implements SessionFactoryScopeAware {
+	private SessionFactoryScope sessionFactoryScope;
+
+	@Test
+	public void cacheHitTest() {
+		final HqlInterpretationCache cache = createCache();
+
+		final SqmSelectStatement first = cache.resolveSelectStatement( "from Order as o" );
+		final SqmSelectStatement second = cache.resolveSelectStatement( "from Order as o" );
+		final SqmSelectStatement other = cache.resolveSelectStatement( "from Order as e join e.salesAssociate n" );
+
+		assertThat( second, sameInstance( first ) );
+		assertThat( other, not( sameInstance( first ) ) );
+
+		assertThat( cache.getStatistics().getHitCount(), is( 1L ) );
+		assertThat( cache.getStatistics().getMissCount(), is( 2L ) );
+		assertThat( cache.getStatistics().getSize(), is( 2 ) );
+
+		cache.clear();
+		assertThat( cache.getStatistics().getSize(), is( 0 ) );
+	}
+
+	@Test
+	public void failedInterpretationNotCachedTest() {
+		final HqlInterpretationCache cache = createCache();
+
+		for ( int i = 0; i < 2; i++ ) {
+			try {
+				cache.resolveSelectStatement( "from Order as e join e.doesNotExist" );
+				fail();
+			}
+			catch (SemanticException expected) {
+			}
+		}
+
+		assertThat( cache.getStatistics().getHitCount(), is( 0L ) );
+		assertThat( cache.getStatistics().getMissCount(), is( 2L ) );
+		assertThat( cache.getStatistics().getSize(), is( 0 ) );
+	}
+
+	@Test
+	public void singleFlightAsyncTest() throws Exception {
+		final HqlInterpretationCache cache = createCache();
+
+		// queue the interpretations rather than running them, to control when they happen
+		final List<Runnable> tasks = new ArrayList<>();
+
+		final CompletableFuture<SqmSelectStatement> first = cache.resolveSelectStatementAsync( "from Order as o", tasks::add );
+		final CompletableFuture<SqmSelectStatement> second = cache.resolveSelectStatementAsync( "from Order as o", tasks::add );
+		// each request gets its own future - cancelling one does not affect the other
+		assertThat( second, not( sameInstance( first ) ) );
+		second.cancel( false );
+		assertThat( tasks.size(), is( 1 ) );
+		assertThat( first.isDone(), is( false ) );
+
+		tasks.get( 0 ).run();
+		assertThat( first.isDone(), is( true ) );
+		assertThat( first.isCancelled(), is( false ) );
+		assertThat( cache.resolveSelectStatementAsync( "from Order as o", tasks::add ).get(), sameInstance( first.get() ) );
+		assertThat( cache.resolveSelectStatement( "from Order as o" ), sameInstance( first.get() ) );
+		assertThat( tasks.size(), is( 1 ) );
+
+		assertThat( cache.getStatistics().getHitCount(), is( 2L ) );
+		assertThat( cache.getStatistics().getMissCount(), is( 2L ) );
+		assertThat( cache.getStatistics().getSize(), is( 1 ) );
+
+		final CompletableFuture<SqmSelectStatement> failed = cache.resolveSelectStatementAsync(
+				"from Order as e join e.doesNotExist",
+				Runnable::run
+		);
+		try {
+			failed.get();
+			fail();
+		}
+		catch (ExecutionException expected) {
+			assertThat( expected.getCause() instanceof SemanticException, is( true ) );
+		}
+		assertThat( cache.getStatistics().getSize(), is( 1 ) );
+	}
+
+	@Test
+	public void queuedAsyncInterpretationTest() throws Exception {
+		final HqlInterpretationCache cache = createCache();
+
+		// the executor never gets to run the interpretation
+		final List<Runnable> tasks = new ArrayList<>();
+		final CompletableFuture<SqmSelectStatement> async = cache.resolveSelectStatementAsync( "from Order as o", tasks::add );
+		assertThat( tasks.size(), is( 1 ) );
+
+		// interpreted in this thread rather than waiting for the queued task, completing the async request too
+		final SqmSelectStatement statement = cache.resolveSelectStatement( "from Order as o" );
+		assertThat( async.isDone(), is( true ) );
+		assertThat( async.get(), sameInstance( statement ) );
+
+		// nothing left for the task to do
+		tasks.get( 0 ).run();
+		assertThat( cache.getStatistics().getMissCount(), is( 2L ) );
+		assertThat( cache.getStatistics().getSize(), is( 1 ) );
+	}
+
+	@Test
+	public void implicitParameterTest() {
+		final HqlInterpretationCacheStandardImpl cache = createCache();
+
+		final HqlQueryShape smithShape = HqlQueryShape.of(
+				"from Order as e join e.salesAssociate n on n.name.familyName = 'Smith'"
+		);
+		final SqmSelectStatement smith = cache.resolveSelectStatement( smithShape );
+		final HqlQueryShape jonesShape = HqlQueryShape.of(
+				"from Order as e join e.salesAssociate n on n.name.familyName = 'Jones'"
+		);
+		assertThat( cache.resolveSelectStatement( jonesShape ), sameInstance( smith ) );
+		assertThat( smithShape.getLiteralValue( 0 ), is( "Smith" ) );
+		assertThat( jonesShape.getLiteralValue( 0 ), is( "Jones" ) );
+
+		final SqmComparisonPredicate joinPredicate = (SqmComparisonPredicate) smith.getQuerySpec()
+				.getFromClause()
+				.getSpaces()
+				.get( 0 )
+				.getJoins()
+				.get( 0 )
+				.getJoinPredicate();
+		assertThat( joinPredicate.getRightHandExpression() instanceof SqmImplicitParameter, is( true ) );
+		assertThat( ( (SqmImplicitParameter) joinPredicate.getRightHandExpression() ).getPosition(), is( 0 ) );
+
+		assertThat( cache.getStatistics().getHitCount(), is( 1L ) );
+		assertThat( cache.getStatistics().getMissCount(), is( 1L ) );
+		assertThat( cache.getStatistics().getSize(), is( 1 ) );
+
+		// by the query string, the literal stays a literal - there would be no values to bind
+		final SqmSelectStatement literal = cache.resolveSelectStatement(
+				"from Order as e join e.salesAssociate n on n.name.familyName = 'Smith'"
+		);
+		assertThat( literal, not( sameInstance( smith ) ) );
+		final SqmComparisonPredicate literalJoinPredicate = (SqmComparisonPredicate) literal.getQuerySpec()
+				.getFromClause()
+				.getSpaces()
+				.get( 0 )
+				.getJoins()
+				.get( 0 )
+				.getJoinPredicate();
+		assertThat( literalJoinPredicate.getRightHandExpression() instanceof SqmLiteral, is( true ) );
+	}
+
+	private HqlInterpretationCacheStandardImpl createCache() {
+		return new HqlInterpretationCacheStandardImpl( sessionFactoryScope.getSessionFactory().getMetamodel() );
+	}
+
+	@Override
+	public void injectSessionFactoryScope(SessionFactoryScope scope) {
+		sessionFactoryScope = scope;
+	}
+}
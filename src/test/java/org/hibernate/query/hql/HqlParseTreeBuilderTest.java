@@ -0,0 +1,165 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.hql;
+
+import java.util.Arrays;
+
+import org.hibernate.query.seqpoc.hql.internal.FrozenHqlDfa;
+import org.hibernate.query.seqpoc.hql.internal.HqlGrammarProfiler;
+import org.hibernate.query.seqpoc.hql.internal.HqlGrammarWarmUp;
+import org.hibernate.query.seqpoc.hql.internal.HqlLexer;
+import org.hibernate.query.seqpoc.hql.internal.HqlParseTreeBuilder;
+import org.hibernate.query.seqpoc.hql.internal.HqlParser;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.Token;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Steve Ebersole
+ */
+public class HqlParseTreeBuilderTest {
+	private static final String[] QUERIES = new String[] {
+			"from Order as o",
+			"select e from Order as e, Order as e2",
+			"select e.salesAssociate from Order as e",
+			"from Order as e join e.salesAssociate n on n.name.familyName = 'Smith'",
+			"from Order as e left outer join fetch e.salesAssociate",
+			"from Order as e join Vendor as v",
+			"from Order as order join order.select"
+	};
+
+	@Test
+	public void twoStagePredictionTest() {
+		final HqlParseTreeBuilder llBuilder = new HqlParseTreeBuilder( HqlParseTreeBuilder.PredictionStrategy.LL );
+		final HqlParseTreeBuilder twoStageBuilder = new HqlParseTreeBuilder( HqlParseTreeBuilder.PredictionStrategy.TWO_STAGE );
+
+		for ( String query : QUERIES ) {
+			final HqlParser.SelectStatementContext llTree = llBuilder.parseSelectStatement( query );
+			final HqlParser.SelectStatementContext twoStageTree = twoStageBuilder.parseSelectStatement( query );
+
+			assertThat( twoStageTree.toStringTree(), is( llTree.toStringTree() ) );
+		}
+
+		assertThat( twoStageBuilder.getLlFallbackCount(), is( 0L ) );
+	}
+
+	@Test
+	public void twoStageFallbackTest() {
+		final HqlParseTreeBuilder twoStageBuilder = new HqlParseTreeBuilder( HqlParseTreeBuilder.PredictionStrategy.TWO_STAGE );
+
+		// syntax error - SLL bails out and LL re-parses with standard error reporting / recovery
+		final HqlParser.SelectStatementContext tree = twoStageBuilder.parseSelectStatement( "from Order as o join" );
+
+		assertThat( tree.querySpec().fromClause() != null, is( true ) );
+		assertThat( twoStageBuilder.getLlFallbackCount(), is( 1L ) );
+	}
+
+	@Test
+	public void grammarProfileTest() throws Exception {
+		final HqlGrammarProfiler profiler = new HqlGrammarProfiler( HqlParseTreeBuilder.PredictionStrategy.TWO_STAGE );
+		final HqlGrammarProfiler.Report report = profiler.profile( Arrays.asList( QUERIES ) );
+		assertThat( report.getQueryCount(), is( QUERIES.length ) );
+		assertThat( report.getFailureCount(), is( 0 ) );
+		assertThat( report.getRuleInvocations( HqlParser.RULE_selectStatement ), is( (long) QUERIES.length ) );
+		assertThat( report.getDecisionInfo().length, is( HqlParser._ATN.getNumberOfDecisions() ) );
+
+		final StringBuilder rules = new StringBuilder();
+		report.writeRules( rules );
+		// header plus one row per rule
+		assertThat( rules.toString().split( "\n" ).length, is( HqlParser.ruleNames.length + 1 ) );
+	}
+
+	@Test
+	public void grammarProfileDfaTest() {
+		final HqlGrammarWarmUp.DfaCoverage coverage = HqlGrammarWarmUp.DfaCoverage.capture();
+
+		// a query not parsed elsewhere, to grow the DFAs
+		new HqlGrammarProfiler( HqlParseTreeBuilder.PredictionStrategy.LL ).profile(
+				Arrays.asList( "select e from Order as e where e.total >= 12.5e3 or e.code = 'profiled' order by e.total desc" )
+		);
+
+		// profiled with private DFAs
+		final HqlGrammarWarmUp.DfaCoverage profiledCoverage = HqlGrammarWarmUp.DfaCoverage.capture();
+		assertThat( profiledCoverage.getLexerStateCount(), is( coverage.getLexerStateCount() ) );
+		assertThat( profiledCoverage.getParserStateCount(), is( coverage.getParserStateCount() ) );
+	}
+
+	@Test
+	public void pooledParserReuseTest() {
+		final HqlParseTreeBuilder builder = new HqlParseTreeBuilder( HqlParseTreeBuilder.PredictionStrategy.LL, 1 );
+
+		final HqlParser.SelectStatementContext first = builder.parseSelectStatement( "from Order as o" );
+		final HqlParser.SelectStatementContext second = builder.parseSelectStatement( "from Vendor as v" );
+
+		// the pooled parser was re-used for the second query, the first tree must be unaffected
+		assertThat( first.getText(), is( "fromOrderaso" ) );
+		assertThat( second.getText(), is( "fromVendorasv" ) );
+	}
+
+	@Test
+	public void frozenDfaTest() {
+		final HqlParseTreeBuilder builder = new HqlParseTreeBuilder( HqlParseTreeBuilder.PredictionStrategy.TWO_STAGE );
+		final String[] queries = Arrays.copyOf( QUERIES, QUERIES.length + 1 );
+		// the lexer does not cache edges for non-ASCII characters
+		queries[QUERIES.length] = "from Order as e join e.salesAssociate n on n.name.familyName = 'M\u00fcller'";
+
+		new HqlGrammarWarmUp( builder ).warmUp( Arrays.asList( queries ) );
+		final String[] expectedTrees = new String[queries.length];
+		for ( int i = 0; i < queries.length; i++ ) {
+			expectedTrees[i] = builder.parseSelectStatement( queries[i] ).toStringTree();
+		}
+
+		final FrozenHqlDfa frozen = FrozenHqlDfa.freeze();
+		try {
+			assertThat( FrozenHqlDfa.getCurrent(), is( frozen ) );
+			assertThat( frozen.getParserStateCount() > 0, is( true ) );
+			assertThat( frozen.getLexerStateCount() > 0, is( true ) );
+
+			for ( int i = 0; i < queries.length; i++ ) {
+				assertThat( builder.parseSelectStatement( queries[i] ).toStringTree(), is( expectedTrees[i] ) );
+			}
+			// every state was found in the snapshot
+			assertThat( frozen.getMissCount(), is( 0L ) );
+		}
+		finally {
+			FrozenHqlDfa.thaw();
+		}
+	}
+
+	@Test
+	public void perfectHashLexerTest() {
+		final String[] queries = new String[] {
+				"SELECT e FROM Order AS e WHERE e.id = 1L and e.name <> 'it''s'",
+				"from Order as e\n\tLeft Outer Join FETCH e.bit_length where e.x_selected = 1.5e3",
+				"select count(*) from Order o where o.$name is not null and o.\u00e9t\u00e9 = true"
+		};
+
+		for ( String query : QUERIES ) {
+			assertThat( tokens( HqlParseTreeBuilder.LexerStrategy.PERFECT_HASH_KEYWORDS, query ), is( tokens( HqlParseTreeBuilder.LexerStrategy.GENERATED, query ) ) );
+		}
+		for ( String query : queries ) {
+			assertThat( tokens( HqlParseTreeBuilder.LexerStrategy.PERFECT_HASH_KEYWORDS, query ), is( tokens( HqlParseTreeBuilder.LexerStrategy.GENERATED, query ) ) );
+		}
+	}
+
+	private static String tokens(HqlParseTreeBuilder.LexerStrategy lexerStrategy, String query) {
+		final HqlLexer lexer = lexerStrategy.createLexer( CharStreams.fromString( query ) );
+		final StringBuilder buffer = new StringBuilder();
+		Token token;
+		do {
+			token = lexer.nextToken();
+			buffer.append( token.getType() ).append( ':' ).append( token.getText() )
+					.append( '@' ).append( token.getLine() ).append( ':' ).append( token.getCharPositionInLine() )
+					.append( ' ' );
+		} while ( token.getType() != Token.EOF );
+		return buffer.toString();
+	}
+}
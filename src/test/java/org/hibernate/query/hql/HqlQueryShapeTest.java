@@ -0,0 +1,61 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.hql;
+
+import java.math.BigDecimal;
+
+import org.hibernate.query.seqpoc.hql.internal.HqlQueryShape;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Steve Ebersole
+ */
+public class HqlQueryShapeTest {
+	@Test
+	public void literalStrippingTest() {
+		final HqlQueryShape smith = HqlQueryShape.of( "from Order as e join e.salesAssociate n on n.name.familyName = 'Smith'" );
+		final HqlQueryShape obrien = HqlQueryShape.of( "from Order as e  join e.salesAssociate n\n\ton n.name.familyName = 'O''Brien'" );
+
+		assertThat( obrien.getKey(), is( smith.getKey() ) );
+		assertThat( smith.getLiteralCount(), is( 1 ) );
+		assertThat( smith.getLiteralValue( 0 ), is( "Smith" ) );
+		assertThat( obrien.getLiteralValue( 0 ), is( "O'Brien" ) );
+		assertThat( smith.getLiteralPosition( smith.getHql().indexOf( '\'' ) ), is( 0 ) );
+		assertThat( smith.getLiteralPosition( 0 ), is( -1 ) );
+
+		// the literal type is part of the shape
+		assertThat( HqlQueryShape.of( "from Order o where o.id = 1" ).getKey(), not( HqlQueryShape.of( "from Order o where o.id = '1'" ).getKey() ) );
+		// as is everything else
+		assertThat( HqlQueryShape.of( "from Order o where o.id = ?" ).getKey(), not( HqlQueryShape.of( "from Order o where o.id = 1" ).getKey() ) );
+
+		final HqlQueryShape numeric = HqlQueryShape.of( "from Order o where o.a = 1 and o.b = 2L and o.c = 1.5bd and o.d = 3000000000" );
+		assertThat( numeric.getLiteralCount(), is( 4 ) );
+		assertThat( numeric.getLiteralValue( 0 ), is( (Object) 1 ) );
+		assertThat( numeric.getLiteralValue( 1 ), is( (Object) 2L ) );
+		assertThat( numeric.getLiteralValue( 2 ), is( (Object) new BigDecimal( "1.5" ) ) );
+		assertThat( numeric.getLiteralValue( 3 ), is( (Object) 3000000000L ) );
+	}
+
+	@Test
+	public void nonExpressionLiteralsTest() {
+		// literals which could not be parameters remain part of the shape
+		assertShapeKept( "from Order o where o.id = ?1", "from Order o where o.id = ?2" );
+		assertShapeKept( "from Order o where o.placed = {d '2019-01-01'}", "from Order o where o.placed = {d '2019-01-02'}" );
+		assertShapeKept( "from Order o where o.name like 'S!%' escape '!'", "from Order o where o.name like 'S!%' escape '#'" );
+		assertShapeKept( "from Order o where trim(leading 'x' from o.name) = o.code", "from Order o where trim(leading 'y' from o.name) = o.code" );
+		assertShapeKept( "from Order o where function('f1', o.name) = o.code", "from Order o where function('f2', o.name) = o.code" );
+	}
+
+	private static void assertShapeKept(String query, String otherQuery) {
+		assertThat( HqlQueryShape.of( query ).getKey(), not( HqlQueryShape.of( otherQuery ).getKey() ) );
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.hql;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.query.seqpoc.hql.internal.JavaConstantIndex;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Steve Ebersole
+ */
+public class JavaConstantIndexTest {
+	@Test
+	public void resolutionTest() {
+		final JavaConstantIndex index = new JavaConstantIndex( getClass().getClassLoader() );
+
+		// enum value
+		assertThat( index.resolveLiteral( "java.util.concurrent.TimeUnit.SECONDS" ).getLiteralValue(), is( TimeUnit.SECONDS ) );
+		// static final field
+		assertThat( index.resolveLiteral( "java.lang.Integer.MAX_VALUE" ).getLiteralValue(), is( Integer.MAX_VALUE ) );
+		// value of a nested enum
+		assertThat(
+				index.resolveLiteral( "java.lang.Character.UnicodeScript.LATIN" ).getLiteralValue(),
+				is( Character.UnicodeScript.LATIN )
+		);
+
+		// resolved again from the cache
+		assertThat( index.resolveLiteral( "java.util.concurrent.TimeUnit.SECONDS" ).getLiteralValue(), is( TimeUnit.SECONDS ) );
+
+		assertThat( index.resolveLiteral( "java.util.concurrent.TimeUnit.FORTNIGHTS" ), nullValue() );
+		assertThat( index.resolveLiteral( "java.lang.Integer.valueOf" ), nullValue() );
+		assertThat( index.resolveLiteral( "org.example.DoesNotExist.VALUE" ), nullValue() );
+		assertThat( index.resolveLiteral( "VALUE" ), nullValue() );
+	}
+
+	@Test
+	public void classInitializationTest() {
+		final JavaConstantIndex index = new JavaConstantIndex( getClass().getClassLoader() );
+
+		// the class is found, but not initialized as the reference does not name one of its constants
+		assertThat( index.resolveLiteral( "org.hibernate.query.hql.JavaConstantIndexTest.Guarded.NOT_A_CONSTANT" ), nullValue() );
+		assertThat( guardedInitialized, is( false ) );
+
+		assertThat(
+				index.resolveLiteral( "org.hibernate.query.hql.JavaConstantIndexTest.Guarded.CONSTANT" ).getLiteralValue(),
+				is( "guarded" )
+		);
+		assertThat( guardedInitialized, is( true ) );
+
+		// not looked up at all - not a (conventional) class name
+		assertThat( index.resolveLiteral( "org.hibernate.query.hql.JavaConstantIndexTest.unconventional.VALUE" ), nullValue() );
+	}
+
+	private static boolean guardedInitialized;
+
+	public static class Guarded {
+		public static final String CONSTANT = String.valueOf( "guarded" );
+
+		static {
+			guardedInitialized = true;
+		}
+	}
+
+	@SuppressWarnings("unused")
+	public static class unconventional {
+		public static final String VALUE = "unconventional";
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.hql;
+
+import org.hibernate.query.NavigablePath;
+import org.hibernate.query.NavigablePathFactory;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Steve Ebersole
+ */
+public class NavigablePathFactoryTest {
+	@Test
+	public void canonicalPathTest() {
+		final NavigablePathFactory factory = new NavigablePathFactory();
+
+		final NavigablePath path = factory.getRootPath( "Order" ).appendResolved( "salesAssociate" ).appendResolved( "name" );
+		assertThat( path.isCanonical(), is( true ) );
+		assertThat( path.getFullPath(), is( "Order.salesAssociate.name" ) );
+
+		assertThat( factory.getRootPath( "Order" ).appendResolved( "salesAssociate" ).appendResolved( "name" ), sameInstance( path ) );
+		assertThat( path.getParent(), sameInstance( factory.getRootPath( "Order" ).appendResolved( "salesAssociate" ) ) );
+		assertThat( factory.getRootPath( "Order" ).appendResolved( "salesAssociate" ), not( path ) );
+
+		// still equal to a non-canonical path
+		final NavigablePath plain = new NavigablePath( "Order" ).append( "salesAssociate" ).append( "name" );
+		assertThat( plain.isCanonical(), is( false ) );
+		assertThat( plain, is( path ) );
+		assertThat( path, is( plain ) );
+		assertThat( plain.hashCode(), is( path.hashCode() ) );
+
+		// other factories (domain models) have their own paths
+		assertThat( new NavigablePathFactory().getRootPath( "Order" ), not( sameInstance( factory.getRootPath( "Order" ) ) ) );
+
+		// a plain append finds the canonical path, but does not create one
+		assertThat( factory.getRootPath( "Order" ).append( "salesAssociate" ), sameInstance( path.getParent() ) );
+		final int pathCount = factory.getPathCount();
+		final NavigablePath unresolved = factory.getRootPath( "Order" ).append( "doesNotExist" );
+		assertThat( unresolved.isCanonical(), is( false ) );
+		assertThat( unresolved.getFullPath(), is( "Order.doesNotExist" ) );
+		assertThat( factory.getPathCount(), is( pathCount ) );
+	}
+
+	@Test
+	public void limitsTest() {
+		final NavigablePathFactory factory = new NavigablePathFactory( 3, 4 );
+
+		// e.g. a cyclic association - no canonical paths beyond the maximum depth
+		final NavigablePath path = factory.getRootPath( "Person" ).appendResolved( "manager" ).appendResolved( "manager" );
+		assertThat( path.isCanonical(), is( true ) );
+		final NavigablePath deeper = path.appendResolved( "manager" );
+		assertThat( deeper.isCanonical(), is( false ) );
+		assertThat( deeper.getFullPath(), is( "Person.manager.manager.manager" ) );
+		assertThat( factory.getPathCount(), is( 3 ) );
+
+		// nor beyond the maximum number of paths
+		assertThat( factory.getRootPath( "Order" ).isCanonical(), is( true ) );
+		final NavigablePath beyondSize = factory.getRootPath( "Vendor" );
+		assertThat( beyondSize.isCanonical(), is( false ) );
+		assertThat( beyondSize, is( new NavigablePath( "Vendor" ) ) );
+		assertThat( factory.getRootPath( "Order" ).appendResolved( "salesAssociate" ).isCanonical(), is( false ) );
+		assertThat( factory.getPathCount(), is( 4 ) );
+	}
+}
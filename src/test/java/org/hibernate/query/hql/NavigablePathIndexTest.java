@@ -0,0 +1,76 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.hql;
+
+import org.hibernate.metamodel.model.domain.spi.EntityTypeDescriptor;
+import org.hibernate.metamodel.model.domain.spi.Navigable;
+import org.hibernate.metamodel.model.domain.spi.NavigableContainer;
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+import org.hibernate.query.seqpoc.hql.internal.NavigablePathIndex;
+
+import org.hibernate.testing.orm.domain.StandardDomainModel;
+import org.hibernate.testing.orm.junit.DomainModel;
+import org.hibernate.testing.orm.junit.SessionFactory;
+import org.hibernate.testing.orm.junit.SessionFactoryScope;
+import org.hibernate.testing.orm.junit.SessionFactoryScopeAware;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Steve Ebersole
+ */
+@SuppressWarnings("WeakerAccess")
+
+@DomainModel( standardModels = StandardDomainModel.RETAIL )
+@SessionFactory
+public class NavigablePathIndexTest implements SessionFactoryScopeAware {
+	private SessionFactoryScope sessionFactoryScope;
+
+	@Test
+	public void resolutionTest() {
+		final MetamodelImplementor domainModel = sessionFactoryScope.getSessionFactory().getMetamodel();
+		final NavigablePathIndex index = new NavigablePathIndex();
+		// nothing is indexed until first needed
+		assertThat( index.getPathCount(), is( 0L ) );
+
+		final EntityTypeDescriptor<Object> order = domainModel.findEntityDescriptor( "Order" );
+		final String[] sequence = new String[] { "o", "salesAssociate", "name", "familyName" };
+
+		final Navigable<?>[] navigables = index.resolve( order, sequence, 1 );
+		assertThat( navigables, notNullValue() );
+		assertThat( navigables.length, is( 3 ) );
+
+		// the same Navigables as resolving the path identifier by identifier
+		NavigableContainer<?> container = order;
+		for ( int i = 1; i < sequence.length; i++ ) {
+			final Navigable<?> navigable = container.findNavigable( sequence[i] );
+			assertThat( navigables[i - 1], sameInstance( navigable ) );
+			if ( navigable instanceof NavigableContainer ) {
+				container = (NavigableContainer<?>) navigable;
+			}
+		}
+
+		assertThat( index.resolve( order, new String[] { "salesAssociate", "doesNotExist" }, 0 ), nullValue() );
+
+		// only `Order` has been indexed
+		final long pathCount = index.getPathCount();
+		assertThat( pathCount > 0, is( true ) );
+		assertThat( index.getEstimatedMemoryFootprint() > 0, is( true ) );
+		assertThat( index.resolve( order, new String[] { "salesAssociate" }, 0 ), notNullValue() );
+		assertThat( index.getPathCount(), is( pathCount ) );
+	}
+
+	@Override
+	public void injectSessionFactoryScope(SessionFactoryScope scope) {
+		sessionFactoryScope = scope;
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.hql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.hibernate.query.NavigablePath;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author Steve Ebersole
+ */
+public class NavigablePathTest {
+	@Test
+	public void fullPathTest() {
+		final NavigablePath path = new NavigablePath( "Order" ).append( "salesAssociate" ).append( "name" );
+		assertThat( path.getFullPath(), is( "Order.salesAssociate.name" ) );
+		assertThat( path.hashCode(), is( "Order.salesAssociate.name".hashCode() ) );
+
+		// an empty root is not rendered
+		final NavigablePath fromEmptyRoot = new NavigablePath().append( "Order" ).append( "salesAssociate" );
+		assertThat( fromEmptyRoot.getFullPath(), is( "Order.salesAssociate" ) );
+		assertThat( fromEmptyRoot, is( path.getParent() ) );
+		assertThat( fromEmptyRoot.hashCode(), is( path.getParent().hashCode() ) );
+
+		// the same full path, segmented differently
+		final NavigablePath segmentedDifferently = new NavigablePath( "Order.salesAssociate" ).append( "name" );
+		assertThat( segmentedDifferently, is( path ) );
+		assertThat( segmentedDifferently.hashCode(), is( path.hashCode() ) );
+
+		assertThat( new NavigablePath( "Order" ).append( "salesAssociate" ).append( "nam" ), not( path ) );
+	}
+
+	@Test
+	public void visitPartsTest() {
+		final NavigablePath path = new NavigablePath( "Order" ).append( "salesAssociate" ).append( "name" );
+
+		final List<String> rootFirst = new ArrayList<>();
+		path.visitPartsRootFirst( rootFirst::add );
+		assertThat( rootFirst, is( Arrays.asList( "Order", "salesAssociate", "name" ) ) );
+
+		final List<String> terminalFirst = new ArrayList<>();
+		path.visitPartsTerminalFirst( terminalFirst::add );
+		assertThat( terminalFirst, is( Arrays.asList( "name", "salesAssociate", "Order" ) ) );
+
+		assertThat( path.getRoot().getLocalName(), is( "Order" ) );
+	}
+}
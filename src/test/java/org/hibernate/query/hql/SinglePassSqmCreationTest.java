@@ -0,0 +1,201 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * License: GNU Lesser General Public License (LGPL), version 2.1 or later
+ * See the lgpl.txt file in the root directory or http://www.gnu.org/licenses/lgpl-2.1.html
+ */
+package org.hibernate.query.hql;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+import org.hibernate.query.seqpoc.hql.internal.HqlParseTreeBuilder;
+import org.hibernate.query.seqpoc.hql.internal.SemanticQueryBuilder;
+import org.hibernate.query.seqpoc.hql.internal.SemanticQueryInterpreter;
+import org.hibernate.query.seqpoc.hql.internal.TrivialHqlRecognizer;
+import org.hibernate.query.seqpoc.sqm.tree.SqmSelectStatement;
+import org.hibernate.query.seqpoc.sqm.tree.domain.SqmFromClauseSpace;
+import org.hibernate.query.seqpoc.sqm.tree.domain.SqmPath;
+import org.hibernate.query.seqpoc.sqm.tree.domain.SqmPathJoin;
+import org.hibernate.query.seqpoc.sqm.tree.domain.SqmQualifiedPathJoin;
+import org.hibernate.query.seqpoc.sqm.tree.expression.SqmLiteral;
+import org.hibernate.query.seqpoc.sqm.tree.predicate.SqmComparisonPredicate;
+import org.hibernate.query.seqpoc.sqm.tree.select.SqmSelection;
+
+import org.hibernate.testing.orm.domain.StandardDomainModel;
+import org.hibernate.testing.orm.junit.DomainModel;
+import org.hibernate.testing.orm.junit.SessionFactory;
+import org.hibernate.testing.orm.junit.SessionFactoryScope;
+import org.hibernate.testing.orm.junit.SessionFactoryScopeAware;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Asserts that single-pass SQM creation, the trivial-query fast path and a shared
+ * {@link SemanticQueryInterpreter} produce the same SQM as {@link SemanticQueryBuilder}
+ *
+ * @author Steve Ebersole
+ */
+@SuppressWarnings("WeakerAccess")
+
+@DomainModel( standardModels = StandardDomainModel.RETAIL )
+@SessionFactory
+public class SinglePassSqmCreationTest implements SessionFactoryScopeAware {
+	private static final String[] QUERIES = new String[] {
+			"from Order as o",
+			"select e from Order as e, Order as e2",
+			"select e.salesAssociate s from Order as e",
+			"from Order as e join e.salesAssociate n on n.name.familyName = 'Smith'",
+			"from Order as e left outer join fetch e.salesAssociate",
+			"from Order as e join Vendor as v",
+			"from Order as order join order.salesAssociate where order.id = 1"
+	};
+
+	private static final String[] TRIVIAL_QUERIES = new String[] {
+			"from Order",
+			"from Order o",
+			"FROM Order AS o",
+			"from Order as order",
+			"select o from Order o",
+			" select o\n from Order as o ",
+			"from Order \u00e9t\u00e9"
+	};
+
+	private static final String[] NON_TRIVIAL_QUERIES = new String[] {
+			"from Order order",
+			"select distinct o from Order o",
+			"select o.id from Order o",
+			"select o from Order p",
+			"from Order as o, Order as o2",
+			"from Order as o where o.id = 1",
+			"from UnknownEntity",
+			// the lexer does not accept characters outside the BMP (here surrogate pairs) in identifiers
+			"from Order o\ud835\udc9c",
+			"select \ud835\udc9c from Order \ud835\udc9c"
+	};
+
+	private SessionFactoryScope sessionFactoryScope;
+
+	@Test
+	public void singlePassTest() {
+		final MetamodelImplementor domainModel = sessionFactoryScope.getSessionFactory().getMetamodel();
+
+		for ( HqlParseTreeBuilder.PredictionStrategy strategy : HqlParseTreeBuilder.PredictionStrategy.values() ) {
+			final HqlParseTreeBuilder parseTreeBuilder = new HqlParseTreeBuilder( strategy );
+			final SemanticQueryInterpreter interpreter = new SemanticQueryInterpreter( domainModel, parseTreeBuilder );
+
+			for ( String query : QUERIES ) {
+				final SqmSelectStatement visited = interpreter.interpret( parseTreeBuilder.parseSelectStatement( query ) );
+				final SqmSelectStatement singlePass = parseTreeBuilder.buildSelectStatement( query, interpreter );
+
+				assertThat( query, render( singlePass ), is( render( visited ) ) );
+			}
+		}
+	}
+
+	@Test
+	public void trivialQueryTest() {
+		final MetamodelImplementor domainModel = sessionFactoryScope.getSessionFactory().getMetamodel();
+
+		final SemanticQueryInterpreter interpreter = new SemanticQueryInterpreter( domainModel );
+
+		for ( String query : TRIVIAL_QUERIES ) {
+			final SqmSelectStatement trivial = TrivialHqlRecognizer.interpret( query, domainModel );
+			assertThat( query, trivial, notNullValue() );
+
+			final SqmSelectStatement visited = interpreter.interpret(
+					HqlParseTreeBuilder.INSTANCE.parseSelectStatement( query )
+			);
+			assertThat( query, render( trivial ), is( render( visited ) ) );
+		}
+
+		for ( String query : NON_TRIVIAL_QUERIES ) {
+			assertThat( query, TrivialHqlRecognizer.interpret( query, domainModel ), nullValue() );
+		}
+	}
+
+	@Test
+	public void sharedInterpreterTest() throws Exception {
+		final MetamodelImplementor domainModel = sessionFactoryScope.getSessionFactory().getMetamodel();
+		final SemanticQueryInterpreter interpreter = new SemanticQueryInterpreter( domainModel );
+
+		final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+		try {
+			final List<Future<String>> interpretations = new ArrayList<>();
+			for ( int i = 0; i < 10; i++ ) {
+				for ( String query : QUERIES ) {
+					interpretations.add( executor.submit( () -> render( interpreter.interpret( query ) ) ) );
+				}
+			}
+
+			for ( int i = 0; i < interpretations.size(); i++ ) {
+				final String query = QUERIES[ i % QUERIES.length ];
+				final SqmSelectStatement visited = new SemanticQueryBuilder( interpreter ).visitSelectStatement(
+						HqlParseTreeBuilder.INSTANCE.parseSelectStatement( query )
+				);
+				assertThat( query, interpretations.get( i ).get(), is( render( visited ) ) );
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	private static String render(SqmSelectStatement statement) {
+		final StringBuilder buffer = new StringBuilder( "select" );
+		if ( statement.getQuerySpec().getSelectClause().isDistinct() ) {
+			buffer.append( " distinct" );
+		}
+		for ( SqmSelection selection : statement.getQuerySpec().getSelectClause().getSelections() ) {
+			buffer.append( ' ' ).append( render( selection.getSelectableNode() ) ).append( ' ' ).append( selection.getAlias() );
+		}
+
+		buffer.append( " from" );
+		for ( SqmFromClauseSpace space : statement.getQuerySpec().getFromClause().getSpaces() ) {
+			buffer.append( " {" ).append( render( space.getRoot() ) );
+			for ( SqmPathJoin join : space.getJoins() ) {
+				buffer.append( " join " ).append( render( join ) );
+			}
+			buffer.append( '}' );
+		}
+
+		return buffer.toString();
+	}
+
+	private static String render(Object node) {
+		if ( node instanceof SqmQualifiedPathJoin ) {
+			final SqmQualifiedPathJoin join = (SqmQualifiedPathJoin) node;
+			return join.getJoinType() + ( join.isFetched() ? " fetch " : " " )
+					+ render( (SqmPath) join ) + " on " + render( join.getJoinPredicate() );
+		}
+
+		if ( node instanceof SqmPath ) {
+			final SqmPath path = (SqmPath) node;
+			return node.getClass().getSimpleName() + "(" + path.getNavigablePath().getFullPath() + " " + path.getExplicitAlias() + ")";
+		}
+
+		if ( node instanceof SqmLiteral ) {
+			return "literal(" + ( (SqmLiteral) node ).getLiteralValue() + ")";
+		}
+
+		if ( node instanceof SqmComparisonPredicate ) {
+			final SqmComparisonPredicate predicate = (SqmComparisonPredicate) node;
+			return render( predicate.getLeftHandExpression() ) + " " + predicate.getOperator() + " " + render( predicate.getRightHandExpression() );
+		}
+
+		return String.valueOf( node );
+	}
+
+	@Override
+	public void injectSessionFactoryScope(SessionFactoryScope scope) {
+		sessionFactoryScope = scope;
+	}
+}
@@ -10,6 +10,7 @@ import org.hibernate.query.SemanticException;
 import org.hibernate.query.seqpoc.hql.internal.HqlParseTreeBuilder;
 import org.hibernate.query.seqpoc.hql.internal.HqlParser;
 import org.hibernate.query.seqpoc.hql.internal.SemanticQueryBuilder;
+import org.hibernate.query.seqpoc.hql.internal.SemanticQueryInterpreter;
 import org.hibernate.query.seqpoc.sqm.tree.SqmSelectStatement;
 import org.hibernate.query.seqpoc.sqm.tree.domain.SqmFromClause;
 import org.hibernate.query.seqpoc.sqm.tree.domain.SqmFromClauseSpace;
@@ -48,6 +49,7 @@ import static org.junit.jupiter.api.Assertions.fail;
 @SessionFactory
 public class TheTest implements SessionFactoryScopeAware {
 	private SessionFactoryScope sessionFactoryScope;
+	private SemanticQueryInterpreter interpreter;
 
 	@Test
 	public void basicTest() {
@@ -237,8 +239,40 @@ public class TheTest implements SessionFactoryScopeAware {
 		assertThat( selection.getAlias(), nullValue() );
 	}
 
+	@Test
+	public void javaConstantTest() {
+		final HqlParser hqlParser = HqlParseTreeBuilder.INSTANCE.parseHql(
+				"select org.hibernate.query.hql.TheTest.Sex.MALE, java.lang.Integer.MAX_VALUE from Order as e"
+		);
+
+		final SemanticQueryBuilder builder = createSemanticQueryBuilder();
+		final SqmSelectStatement statement = builder.visitSelectStatement( hqlParser.selectStatement() );
+
+		final SqmSelectClause selectClause = statement.getQuerySpec().getSelectClause();
+
+		assertThat( selectClause.getSelections().size(), is( 2 ) );
+
+		// enum value (of a nested enum)
+		final SqmSelection enumSelection = selectClause.getSelections().get( 0 );
+		assertThat( enumSelection.getSelectableNode(), instanceOf( SqmLiteral.class ) );
+		assertThat( ( (SqmLiteral) enumSelection.getSelectableNode() ).getLiteralValue(), is( Sex.MALE ) );
+
+		// static field
+		final SqmSelection fieldSelection = selectClause.getSelections().get( 1 );
+		assertThat( fieldSelection.getSelectableNode(), instanceOf( SqmLiteral.class ) );
+		assertThat( ( (SqmLiteral) fieldSelection.getSelectableNode() ).getLiteralValue(), is( Integer.MAX_VALUE ) );
+	}
+
+	public enum Sex {
+		MALE,
+		FEMALE
+	}
+
 	private SemanticQueryBuilder createSemanticQueryBuilder() {
-		return new SemanticQueryBuilder( sessionFactoryScope.getSessionFactory().getMetamodel() );
+		if ( interpreter == null ) {
+			interpreter = new SemanticQueryInterpreter( sessionFactoryScope.getSessionFactory().getMetamodel() );
+		}
+		return new SemanticQueryBuilder( interpreter );
 	}
 
 	@Override